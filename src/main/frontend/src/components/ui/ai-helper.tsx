@@ -294,24 +294,63 @@ export function AIHelper() {
     setIsLoading(true)
 
     try {
-      // Вызываем реальный API бэкенда
-      const response = await fetch('/api/ai/chat', {
+      // Ответ приходит по частям (Server-Sent Events) и дописывается в сообщение по мере генерации
+      const response = await fetch('/api/ai/chat/stream', {
         method: 'POST',
         headers: {
           'Content-Type': 'application/json',
+          'Accept': 'text/event-stream',
         },
         body: JSON.stringify({ question: input })
       })
 
-      if (response.ok) {
-        const data = await response.json()
-        const aiMessage: Message = {
-          id: (Date.now() + 1).toString(),
-          content: data.response || 'Извините, не удалось получить ответ от AI.',
+      if (response.ok && response.body) {
+        const aiMessageId = (Date.now() + 1).toString()
+        setMessages(prev => [...prev, {
+          id: aiMessageId,
+          content: '',
           isUser: false,
           timestamp: new Date()
+        }])
+        setIsLoading(false)
+
+        const appendToMessage = (text: string) => {
+          setMessages(prev => prev.map(message =>
+            message.id === aiMessageId ? { ...message, content: message.content + text } : message
+          ))
+        }
+
+        const reader = response.body.getReader()
+        const decoder = new TextDecoder()
+        let buffer = ''
+        let received = false
+        while (true) {
+          const { done, value } = await reader.read()
+          if (done) break
+          buffer += decoder.decode(value, { stream: true })
+
+          // События SSE разделены пустой строкой
+          let boundary = buffer.indexOf('\n\n')
+          while (boundary >= 0) {
+            const rawEvent = buffer.slice(0, boundary)
+            buffer = buffer.slice(boundary + 2)
+            boundary = buffer.indexOf('\n\n')
+
+            let eventName = 'message'
+            let data = ''
+            for (const line of rawEvent.split('\n')) {
+              if (line.startsWith('event:')) eventName = line.slice(6).trim()
+              else if (line.startsWith('data:')) data += line.slice(5)
+            }
+            if (eventName === 'chunk' && data) {
+              received = true
+              appendToMessage(JSON.parse(data).text)
+            } else if (eventName === 'error') {
+              appendToMessage(received ? '\n\n' : '')
+              appendToMessage(data ? JSON.parse(data).message : 'Извините, не удалось получить ответ от AI.')
+            }
+          }
         }
-        setMessages(prev => [...prev, aiMessage])
       } else {
         // В случае ошибки показываем сообщение об ошибке
         let errorMessage = 'Извините, произошла ошибка при получении ответа от AI.'
@@ -1,10 +1,39 @@
-import React, { useState, useEffect } from 'react';
-import { Task, TaskResult } from '../../../types/sql-trainer';
+import React, { useState, useEffect, useRef } from 'react';
+import { ResultTable, SubmissionResult, Task, TaskResult } from '../../../types/sql-trainer';
 
 interface SQLTrainerProps {
   userId: string;
 }
 
+// Сервер присылает только первые строки результата, полный размер - в totalRows
+const ResultTableView: React.FC<{ table: ResultTable; className: string }> = ({ table, className }) => (
+  <div className="bg-gray-900 rounded p-3 max-h-40 overflow-auto">
+    <table className={`text-xs font-mono ${className}`}>
+      <thead>
+        <tr>
+          {table.columns.map((column) => (
+            <th key={column} className="text-left pr-3">{column}</th>
+          ))}
+        </tr>
+      </thead>
+      <tbody>
+        {table.rows.map((row, rowIndex) => (
+          <tr key={rowIndex}>
+            {row.map((value, columnIndex) => (
+              <td key={columnIndex} className="pr-3">{value === null ? 'NULL' : String(value)}</td>
+            ))}
+          </tr>
+        ))}
+      </tbody>
+    </table>
+    {table.truncated && (
+      <p className="text-xs text-gray-400 mt-2">
+        Показано {table.rows.length} из {table.totalRows} строк
+      </p>
+    )}
+  </div>
+);
+
 const SQLTrainer: React.FC<SQLTrainerProps> = ({ userId }) => {
   const [currentLevel, setCurrentLevel] = useState(1);
   const [currentTask, setCurrentTask] = useState(1);
@@ -15,6 +44,7 @@ const SQLTrainer: React.FC<SQLTrainerProps> = ({ userId }) => {
   const [showHint, setShowHint] = useState(false);
   const [progress, setProgress] = useState<any>(null);
   const [unlockedLevels, setUnlockedLevels] = useState<number[]>([1]);
+  const submissionRef = useRef<{ signature: string; key: string } | null>(null);
 
   useEffect(() => {
     loadTask(currentLevel, currentTask);
@@ -64,39 +94,53 @@ const SQLTrainer: React.FC<SQLTrainerProps> = ({ userId }) => {
   const submitQuery = async () => {
     if (!userQuery.trim()) return;
 
+    // Один ключ на одну и ту же отправку: ретрай не засчитает задачу дважды
+    const signature = `${currentLevel}/${currentTask}/${userQuery}`;
+    if (submissionRef.current?.signature !== signature) {
+      submissionRef.current = { signature, key: crypto.randomUUID() };
+    }
+    const idempotencyKey = submissionRef.current.key;
+
+    const send = () => fetch('/api/sql-trainer/submit', {
+      method: 'POST',
+      headers: {
+        'Content-Type': 'application/json',
+        'Idempotency-Key': idempotencyKey,
+      },
+      body: JSON.stringify({
+        userId,
+        query: userQuery,
+        level: currentLevel,
+        taskNumber: currentTask,
+      }),
+    });
+
     setIsLoading(true);
     try {
-      const response = await fetch('/api/sql-trainer/check', {
-        method: 'POST',
-        headers: {
-          'Content-Type': 'application/json',
-        },
-        body: JSON.stringify({
-          query: userQuery,
-          level: currentLevel,
-          taskNumber: currentTask,
-        }),
-      });
+      let response: Response;
+      try {
+        response = await send();
+      } catch (networkError) {
+        // Сеть оборвалась до ответа - повторяем с тем же ключом
+        response = await send();
+      }
 
       if (response.ok) {
-        const resultData = await response.json();
-        setResult(resultData);
-
-        if (resultData.isCorrect) {
-          // Отмечаем задачу как выполненную
-          await fetch(`/api/progress/${userId}/complete`, {
-            method: 'POST',
-            headers: {
-              'Content-Type': 'application/json',
-            },
-            body: JSON.stringify({
-              level: currentLevel,
-              taskNumber: currentTask,
-            }),
-          });
-
-          // Обновляем прогресс
-          loadProgress();
+        const submissionData: SubmissionResult = await response.json();
+        setResult(submissionData.result);
+
+        if (submissionData.completed) {
+          // Сервер уже засчитал задачу и вернул прогресс - отдельные запросы не нужны
+          setProgress((prev: any) => ({
+            ...prev,
+            overallProgress: submissionData.overallProgress,
+            totalCompleted: submissionData.totalCompleted,
+            currentLevel: submissionData.currentLevel,
+            currentTask: submissionData.currentTask,
+          }));
+          if (submissionData.firstCompletion) {
+            loadUnlockedLevels();
+          }
         }
       }
     } catch (error) {
@@ -330,26 +374,40 @@ const SQLTrainer: React.FC<SQLTrainerProps> = ({ userId }) => {
             )}
 
             {/* Результаты запросов */}
-            {result.expectedResult && result.actualResult && (
+            {result.expected && result.actual && (
               <div className="grid grid-cols-1 md:grid-cols-2 gap-4">
                 <div>
                   <h4 className="font-semibold text-green-300 mb-2">Ожидаемый результат</h4>
-                  <div className="bg-gray-900 rounded p-3 max-h-40 overflow-y-auto">
-                    <pre className="text-xs text-green-300">
-                      {JSON.stringify(result.expectedResult, null, 2)}
-                    </pre>
-                  </div>
+                  <ResultTableView table={result.expected} className="text-green-300" />
                 </div>
                 <div>
                   <h4 className="font-semibold text-blue-300 mb-2">Ваш результат</h4>
-                  <div className="bg-gray-900 rounded p-3 max-h-40 overflow-y-auto">
-                    <pre className="text-xs text-blue-300">
-                      {JSON.stringify(result.actualResult, null, 2)}
-                    </pre>
-                  </div>
+                  <ResultTableView table={result.actual} className="text-blue-300" />
                 </div>
               </div>
             )}
+
+            {/* Разница строк: чего не хватает и что лишнее */}
+            {result.diff && (result.diff.missing.totalRows > 0 || result.diff.extra.totalRows > 0) && (
+              <div className="grid grid-cols-1 md:grid-cols-2 gap-4 mt-4">
+                {result.diff.missing.totalRows > 0 && (
+                  <div>
+                    <h4 className="font-semibold text-yellow-300 mb-2">
+                      Не хватает строк: {result.diff.missing.totalRows}
+                    </h4>
+                    <ResultTableView table={result.diff.missing} className="text-yellow-300" />
+                  </div>
+                )}
+                {result.diff.extra.totalRows > 0 && (
+                  <div>
+                    <h4 className="font-semibold text-red-300 mb-2">
+                      Лишние строки: {result.diff.extra.totalRows}
+                    </h4>
+                    <ResultTableView table={result.diff.extra} className="text-red-300" />
+                  </div>
+                )}
+              </div>
+            )}
           </div>
         )}
 
@@ -15,17 +15,42 @@ export interface TaskSubmission {
   query: string;
   level: number;
   taskNumber: number;
+  userId?: string;
+}
+
+// Таблица результата: заголовок колонок и первые строки в виде массивов значений
+export interface ResultTable {
+  columns: string[];
+  rows: unknown[][];
+  totalRows: number;
+  truncated: boolean;
+}
+
+export interface ResultDiff {
+  missing: ResultTable;
+  extra: ResultTable;
 }
 
 export interface TaskResult {
   isCorrect: boolean;
   message: string;
   hint?: string;
-  expectedResult?: any[];
-  actualResult?: any[];
+  expected?: ResultTable;
+  actual?: ResultTable;
+  diff?: ResultDiff;
   errorMessage?: string;
 }
 
+export interface SubmissionResult {
+  result: TaskResult;
+  completed: boolean;
+  firstCompletion: boolean;
+  currentLevel: number;
+  currentTask: number;
+  totalCompleted: number;
+  overallProgress: number;
+}
+
 export interface Progress {
   userId: string;
   completedTasks: string[];
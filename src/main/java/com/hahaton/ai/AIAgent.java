@@ -3,21 +3,63 @@ package com.hahaton.ai;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 @Service
 public class AIAgent {
     
+    /**
+     * Ключевые слова тем в порядке приоритета; '*' на конце - основа слова с любым окончанием
+     */
+    static final Map<String, List<String>> TOPIC_KEYWORDS = new LinkedHashMap<>();
+    
+    static {
+        TOPIC_KEYWORDS.put("java", List.of("java", "джава*"));
+        TOPIC_KEYWORDS.put("spring", List.of("spring", "спринг*"));
+        TOPIC_KEYWORDS.put("react", List.of("react", "реакт*"));
+        TOPIC_KEYWORDS.put("maven", List.of("maven", "мавен*"));
+        TOPIC_KEYWORDS.put("git", List.of("git", "github", "гит"));
+        TOPIC_KEYWORDS.put("docker", List.of("docker", "dockerfile", "докер*"));
+        TOPIC_KEYWORDS.put("sql", List.of("sql", "база данных", "базы данных", "базе данных", "базу данных", "базами данных"));
+        TOPIC_KEYWORDS.put("api", List.of("api", "rest", "веб"));
+        TOPIC_KEYWORDS.put("html", List.of("html", "хтмл"));
+        TOPIC_KEYWORDS.put("css", List.of("css", "стил*"));
+        TOPIC_KEYWORDS.put("python", List.of("python", "питон*"));
+        TOPIC_KEYWORDS.put("javascript", List.of("javascript", "js", "джаваскрипт*"));
+        TOPIC_KEYWORDS.put("typescript", List.of("typescript", "тайпскрипт*"));
+        TOPIC_KEYWORDS.put("node", List.of("node", "nodejs", "node.js", "нод*"));
+        TOPIC_KEYWORDS.put("database", List.of("database", "databases", "база", "базы", "базе", "базу", "базой"));
+        TOPIC_KEYWORDS.put("algorithm", List.of("algorithm", "algorithms", "алгоритм*"));
+        TOPIC_KEYWORDS.put("framework", List.of("framework", "frameworks", "фреймворк*"));
+        TOPIC_KEYWORDS.put("library", List.of("library", "libraries", "библиотек*"));
+        TOPIC_KEYWORDS.put("bash", List.of("bash", "баш"));
+        TOPIC_KEYWORDS.put("linux", List.of("linux", "линукс*"));
+        TOPIC_KEYWORDS.put("kubernetes", List.of("kubernetes", "k8s", "кубернетис*"));
+    }
+    
     private final GeminiService geminiService;
     private final DJLService djlService;
+    private final SemanticRetrievalService semanticRetrieval;
     private Map<String, String> trainingResponses;
+    private final TopicMatcher topicMatcher;
     
     @Autowired
-    public AIAgent(GeminiService geminiService, DJLService djlService) {
+    public AIAgent(GeminiService geminiService, DJLService djlService, SemanticRetrievalService semanticRetrieval) {
         this.geminiService = geminiService;
         this.djlService = djlService;
+        this.semanticRetrieval = semanticRetrieval;
         initializeResponses();
+        this.topicMatcher = buildTopicMatcher();
+        registerKnowledge();
     }
     
     private void initializeResponses() {
@@ -62,8 +104,13 @@ public class AIAgent {
             return trainingResponses.get(topic);
         }
         
-        // Для сложных вопросов используем локальную логику
-        // В будущем здесь можно будет подключить DJL модели для генерации ответов
+        // Ищем близкий по смыслу ответ в базе знаний (локальная модель эмбеддингов, без Gemini)
+        Optional<SemanticRetrievalService.Match> match = semanticRetrieval.findBest(question);
+        if (match.isPresent()) {
+            return match.get().getEntry().getAnswer();
+        }
+        
+        // Для остальных вопросов используем общие ответы
         String generalResponse = generateGeneralResponse(question);
         
         // Если это общий ответ, добавляем безопасное сообщение
@@ -74,30 +121,66 @@ public class AIAgent {
         return generalResponse;
     }
     
+    /**
+     * Потоковый ответ: вопросы по известным темам отвечаются локально, остальные - потоком Gemini,
+     * если он доступен. Локальный ответ отдается теми же порциями (по словам), что и поток API.
+     * Если Gemini отказал до первого фрагмента (автомат защиты разомкнут, сбой API), отвечаем локально.
+     */
+    public CompletableFuture<Void> streamResponse(String question, Consumer<String> onChunk) {
+        boolean localTopic = question == null || question.trim().isEmpty()
+                || determineTopic(question.toLowerCase()) != null
+                || semanticRetrieval.findBest(question).isPresent();
+        if (localTopic || !geminiService.isAvailable()) {
+            streamLocal(question, onChunk);
+            return CompletableFuture.completedFuture(null);
+        }
+        AtomicBoolean started = new AtomicBoolean();
+        CompletableFuture<Void> gemini = geminiService.streamResponse(question, chunk -> {
+            started.set(true);
+            onChunk.accept(chunk);
+        });
+        CompletableFuture<Void> result = gemini.exceptionallyCompose(e -> {
+            if (started.get()) {
+                return CompletableFuture.failedFuture(e);
+            }
+            streamLocal(question, onChunk);
+            return CompletableFuture.completedFuture(null);
+        });
+        // Отмена результата (клиент ушел) должна дойти до потока Gemini и закрыть соединение
+        result.whenComplete((ignored, error) -> {
+            if (error instanceof CancellationException) {
+                gemini.cancel(true);
+            }
+        });
+        return result;
+    }
+    
+    private void streamLocal(String question, Consumer<String> onChunk) {
+        for (String chunk : getResponse(question).split("(?<=\\s)")) {
+            onChunk.accept(chunk);
+        }
+    }
+    
+    /**
+     * Автомат тем строится один раз: темы из trainingResponses без своих синонимов
+     * распознаются по названию темы
+     */
+    private TopicMatcher buildTopicMatcher() {
+        Map<String, List<String>> keywords = new LinkedHashMap<>(TOPIC_KEYWORDS);
+        for (String topic : trainingResponses.keySet()) {
+            keywords.putIfAbsent(topic, List.of(topic));
+        }
+        return new TopicMatcher(keywords);
+    }
+    
+    private void registerKnowledge() {
+        List<KnowledgeEntry> entries = new ArrayList<>();
+        trainingResponses.forEach((topic, answer) -> entries.add(new KnowledgeEntry("ai/" + topic, "ai", topic + ". " + answer, answer)));
+        semanticRetrieval.register(entries);
+    }
+    
     private String determineTopic(String question) {
-        if (question.contains("java") || question.contains("джава")) return "java";
-        if (question.contains("spring") || question.contains("спринг")) return "spring";
-        if (question.contains("react") || question.contains("реакт")) return "react";
-        if (question.contains("maven") || question.contains("мавен")) return "maven";
-        if (question.contains("git") || question.contains("гит")) return "git";
-        if (question.contains("docker") || question.contains("докер")) return "docker";
-        if (question.contains("sql") || question.contains("база данных")) return "sql";
-        if (question.contains("api") || question.contains("веб")) return "api";
-        if (question.contains("html") || question.contains("хтмл")) return "html";
-        if (question.contains("css") || question.contains("стили")) return "css";
-        if (question.contains("python") || question.contains("питон")) return "python";
-        if (question.contains("javascript") || question.contains("джаваскрипт")) return "javascript";
-        if (question.contains("typescript")) return "typescript";
-        if (question.contains("node") || question.contains("нод")) return "node";
-        if (question.contains("database") || question.contains("база")) return "database";
-        if (question.contains("algorithm") || question.contains("алгоритм")) return "algorithm";
-        if (question.contains("framework") || question.contains("фреймворк")) return "framework";
-        if (question.contains("library") || question.contains("библиотека")) return "library";
-        if (question.contains("bash") || question.contains("баш")) return "bash";
-        if (question.contains("linux") || question.contains("линукс")) return "linux";
-        if (question.contains("kubernetes") || question.contains("кубернетис") || question.contains("k8s")) return "kubernetes";
-        
-        return null;
+        return topicMatcher.bestMatch(question);
     }
     
     private String generateGeneralResponse(String question) {
@@ -150,16 +233,15 @@ public class AIAgent {
     public Map<String, Object> getServiceStatus() {
         Map<String, Object> status = new HashMap<>();
         
-        // Проверяем Gemini (опционально)
-        try {
-            String testResponse = geminiService.generateResponse("test");
-            if (testResponse != null && !testResponse.contains("ключ API Gemini не настроен")) {
-                status.put("gemini", "available");
-            } else {
-                status.put("gemini", "not_configured");
-            }
-        } catch (Exception e) {
-            status.put("gemini", "not_available");
+        // Проверяем Gemini (опционально) по состоянию автомата защиты: пробный запрос ушел бы
+        // в кэш ответов и не показал бы реальную доступность API
+        if (!geminiService.isConfigured()) {
+            status.put("gemini", "not_configured");
+        } else if (geminiService.getCircuitState() == CircuitBreaker.State.CLOSED) {
+            status.put("gemini", "available");
+        } else {
+            // Автомат защиты разомкнут или пробует API: ответы идут из локальной базы
+            status.put("gemini", "degraded");
         }
         
         // Проверяем DJL
@@ -171,6 +253,8 @@ public class AIAgent {
             status.put("djl", "error: " + e.getMessage());
         }
         
+        status.put("semantic_retrieval", semanticRetrieval.getStats());
+        
         return status;
     }
 }
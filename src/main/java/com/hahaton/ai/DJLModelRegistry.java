@@ -0,0 +1,288 @@
+package com.hahaton.ai;
+
+import ai.djl.MalformedModelException;
+import ai.djl.inference.Predictor;
+import ai.djl.repository.zoo.Criteria;
+import ai.djl.repository.zoo.ModelNotFoundException;
+import ai.djl.repository.zoo.ZooModel;
+import ai.djl.translate.TranslateException;
+import com.hahaton.config.DJLConfig;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Реестр резидентных DJL моделей.
+ * Каждая модель загружается один раз и остается в памяти (не более djl.max-models-in-memory, LRU вытеснение),
+ * а запросы получают предикторы из ограниченного пула модели.
+ */
+@Component
+public class DJLModelRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(DJLModelRegistry.class);
+
+    private final DJLConfig djlConfig;
+
+    // Порядок доступа: первой в итерации идет модель, к которой дольше всего не обращались
+    private final LinkedHashMap<String, ModelEntry<?, ?>> models = new LinkedHashMap<>(16, 0.75f, true);
+
+    @Autowired
+    public DJLModelRegistry(DJLConfig djlConfig) {
+        this.djlConfig = djlConfig;
+    }
+
+    /**
+     * Выполнить предсказание на предикторе из пула указанной модели
+     */
+    public <I, O> O predict(String modelName, Supplier<Criteria<I, O>> criteria, I input)
+            throws ModelNotFoundException, MalformedModelException, IOException, TranslateException, InterruptedException {
+        Lease<I, O> lease = lease(modelName, criteria);
+        try {
+            return lease.predictor.predict(input);
+        } finally {
+            lease.entry.release(lease.predictor);
+        }
+    }
+
+    /**
+     * Выполнить пакетное предсказание на предикторе из пула указанной модели
+     */
+    public <I, O> List<O> batchPredict(String modelName, Supplier<Criteria<I, O>> criteria, List<I> inputs)
+            throws ModelNotFoundException, MalformedModelException, IOException, TranslateException, InterruptedException {
+        Lease<I, O> lease = lease(modelName, criteria);
+        try {
+            return lease.predictor.batchPredict(inputs);
+        } finally {
+            lease.entry.release(lease.predictor);
+        }
+    }
+
+    /**
+     * Проверить, загружена ли модель в память
+     */
+    public boolean isLoaded(String modelName) {
+        synchronized (models) {
+            ModelEntry<?, ?> entry = models.get(modelName);
+            return entry != null && entry.isLoaded();
+        }
+    }
+
+    /**
+     * Состояние реестра: загруженные модели и занятость их пулов
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        Map<String, Object> loaded = new LinkedHashMap<>();
+        synchronized (models) {
+            for (ModelEntry<?, ?> entry : models.values()) {
+                loaded.put(entry.name, entry.getStats());
+            }
+        }
+        stats.put("models", loaded);
+        stats.put("max_models_in_memory", djlConfig.getMaxModelsInMemory());
+        stats.put("predictor_pool_size", djlConfig.getPredictorPoolSize());
+        return stats;
+    }
+
+    @PreDestroy
+    public void close() {
+        List<ModelEntry<?, ?>> entries;
+        synchronized (models) {
+            entries = new ArrayList<>(models.values());
+            models.clear();
+        }
+        entries.forEach(ModelEntry::retire);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <I, O> Lease<I, O> lease(String modelName, Supplier<Criteria<I, O>> criteria)
+            throws ModelNotFoundException, MalformedModelException, IOException, InterruptedException {
+        while (true) {
+            ModelEntry<I, O> entry;
+            List<ModelEntry<?, ?>> evicted = new ArrayList<>();
+            synchronized (models) {
+                entry = (ModelEntry<I, O>) models.computeIfAbsent(modelName,
+                        name -> new ModelEntry<>(name, criteria, Math.max(1, djlConfig.getPredictorPoolSize())));
+                int limit = Math.max(1, djlConfig.getMaxModelsInMemory());
+                Iterator<ModelEntry<?, ?>> iterator = models.values().iterator();
+                while (models.size() > limit && iterator.hasNext()) {
+                    ModelEntry<?, ?> eldest = iterator.next();
+                    if (eldest != entry) {
+                        iterator.remove();
+                        evicted.add(eldest);
+                    }
+                }
+            }
+            for (ModelEntry<?, ?> old : evicted) {
+                logger.info("Выгружаем модель {} из памяти (LRU)", old.name);
+                old.retire();
+            }
+
+            Predictor<I, O> predictor = entry.acquire(djlConfig.getPredictorAcquireTimeout());
+            if (predictor != null) {
+                return new Lease<>(entry, predictor);
+            }
+            // Модель была вытеснена, пока мы ждали предиктор - повторяем через реестр
+        }
+    }
+
+    /**
+     * Загруженная модель с ограниченным пулом предикторов
+     */
+    private static final class ModelEntry<I, O> {
+
+        private final String name;
+        private final Supplier<Criteria<I, O>> criteria;
+        private final Semaphore permits;
+        private final Deque<Predictor<I, O>> idle = new ArrayDeque<>();
+        private final Object loadLock = new Object();
+        private ZooModel<I, O> model;
+        private int leased;
+        private boolean retired;
+
+        private ModelEntry(String name, Supplier<Criteria<I, O>> criteria, int poolSize) {
+            this.name = name;
+            this.criteria = criteria;
+            this.permits = new Semaphore(poolSize, true);
+        }
+
+        /**
+         * Взять предиктор из пула. Возвращает null, если модель уже вытеснена из реестра
+         */
+        private Predictor<I, O> acquire(int timeoutSeconds)
+                throws ModelNotFoundException, MalformedModelException, IOException, InterruptedException {
+            if (!permits.tryAcquire(timeoutSeconds, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Нет свободного предиктора для модели " + name);
+            }
+            boolean leasedPredictor = false;
+            try {
+                if (ensureLoaded() == null) {
+                    return null;
+                }
+                synchronized (this) {
+                    if (retired) {
+                        return null;
+                    }
+                    Predictor<I, O> predictor = idle.pollFirst();
+                    if (predictor == null) {
+                        predictor = model.newPredictor();
+                    }
+                    leased++;
+                    leasedPredictor = true;
+                    return predictor;
+                }
+            } finally {
+                if (!leasedPredictor) {
+                    permits.release();
+                }
+            }
+        }
+
+        /**
+         * Загрузить модель, если она еще не в памяти.
+         * Параллельные запросы ждут одну загрузку на loadLock, а не грузят модель повторно;
+         * монитор самой записи при этом свободен, поэтому статистика реестра не блокируется.
+         */
+        private ZooModel<I, O> ensureLoaded()
+                throws ModelNotFoundException, MalformedModelException, IOException {
+            synchronized (loadLock) {
+                synchronized (this) {
+                    if (retired) {
+                        return null;
+                    }
+                    if (model != null) {
+                        return model;
+                    }
+                }
+                long start = System.currentTimeMillis();
+                ZooModel<I, O> loaded = criteria.get().loadModel();
+                logger.info("Модель {} загружена за {} мс", name, System.currentTimeMillis() - start);
+                synchronized (this) {
+                    if (retired) {
+                        loaded.close();
+                        return null;
+                    }
+                    model = loaded;
+                    return loaded;
+                }
+            }
+        }
+
+        private void release(Predictor<I, O> predictor) {
+            ZooModel<I, O> toClose = null;
+            synchronized (this) {
+                leased--;
+                if (retired) {
+                    predictor.close();
+                    if (leased == 0) {
+                        toClose = model;
+                        model = null;
+                    }
+                } else {
+                    idle.push(predictor);
+                }
+            }
+            permits.release();
+            if (toClose != null) {
+                toClose.close();
+            }
+        }
+
+        private void retire() {
+            ZooModel<I, O> toClose = null;
+            synchronized (this) {
+                retired = true;
+                idle.forEach(Predictor::close);
+                idle.clear();
+                if (leased == 0) {
+                    toClose = model;
+                    model = null;
+                }
+            }
+            if (toClose != null) {
+                toClose.close();
+            }
+        }
+
+        private synchronized boolean isLoaded() {
+            return model != null && !retired;
+        }
+
+        private synchronized Map<String, Object> getStats() {
+            return Map.of(
+                "loaded", model != null,
+                "leased_predictors", leased,
+                "idle_predictors", idle.size()
+            );
+        }
+    }
+
+    /**
+     * Выданный предиктор вместе с моделью, в пул которой его нужно вернуть
+     */
+    private static final class Lease<I, O> {
+
+        private final ModelEntry<I, O> entry;
+        private final Predictor<I, O> predictor;
+
+        private Lease(ModelEntry<I, O> entry, Predictor<I, O> predictor) {
+            this.entry = entry;
+            this.predictor = predictor;
+        }
+    }
+}
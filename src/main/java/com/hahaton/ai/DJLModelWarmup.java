@@ -0,0 +1,128 @@
+package com.hahaton.ai;
+
+import com.hahaton.config.DJLConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Предзагрузка и прогрев DJL моделей при старте.
+ * Модели из djl.preload-models загружаются в фоне после старта приложения и прогреваются
+ * синтетическими предсказаниями; пока прогрев не закончен, readiness проба сообщает OUT_OF_SERVICE,
+ * и балансировщик не отправляет пользователей на холодный экземпляр.
+ */
+@Component
+public class DJLModelWarmup {
+
+    private static final Logger logger = LoggerFactory.getLogger(DJLModelWarmup.class);
+
+    public enum State { PENDING, WARMING_UP, READY, FAILED }
+
+    private final DJLService djlService;
+    private final DJLConfig djlConfig;
+    private final MeterRegistry meterRegistry;
+    // Состояние и сообщение по каждой модели в порядке djl.preload-models
+    private final Map<String, State> states = new LinkedHashMap<>();
+    private final Map<String, String> details = new LinkedHashMap<>();
+    private volatile boolean finished;
+
+    public DJLModelWarmup(DJLService djlService, DJLConfig djlConfig, MeterRegistry meterRegistry) {
+        this.djlService = djlService;
+        this.djlConfig = djlConfig;
+        this.meterRegistry = meterRegistry;
+        synchronized (states) {
+            for (String model : preloadModels()) {
+                states.put(model, State.PENDING);
+            }
+        }
+        finished = states.isEmpty();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpOnStartup() {
+        if (finished) {
+            return;
+        }
+        Thread thread = new Thread(this::run, "djl-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Загрузить и прогреть все модели по очереди; ошибка одной модели не останавливает остальные
+     */
+    void run() {
+        for (String model : preloadModels()) {
+            update(model, State.WARMING_UP, null);
+            long start = System.nanoTime();
+            try {
+                djlService.warmUp(model, djlConfig.getWarmupIterations());
+                long elapsed = System.nanoTime() - start;
+                record(model, "ready", elapsed);
+                update(model, State.READY, TimeUnit.NANOSECONDS.toMillis(elapsed) + " мс");
+                logger.info("Модель {} загружена и прогрета за {} мс", model, TimeUnit.NANOSECONDS.toMillis(elapsed));
+            } catch (Exception e) {
+                record(model, "failed", System.nanoTime() - start);
+                update(model, State.FAILED, e.getMessage());
+                logger.error("Не удалось прогреть модель {}: ", model, e);
+            }
+        }
+        finished = true;
+    }
+
+    /**
+     * Прогрев завершен (успешно или нет); модель, которую не удалось прогреть,
+     * загрузится при первом запросе, как и без прогрева
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (states) {
+            for (Map.Entry<String, State> entry : states.entrySet()) {
+                String detail = details.get(entry.getKey());
+                stats.put(entry.getKey(), detail == null ? entry.getValue().name() : entry.getValue() + " (" + detail + ")");
+            }
+        }
+        return stats;
+    }
+
+    private List<String> preloadModels() {
+        return djlConfig.getPreloadModels().stream()
+                .map(String::strip)
+                .filter(model -> !model.isEmpty())
+                .distinct()
+                .toList();
+    }
+
+    private void update(String model, State state, String detail) {
+        synchronized (states) {
+            states.put(model, state);
+            if (detail == null) {
+                details.remove(model);
+            } else {
+                details.put(model, detail);
+            }
+        }
+    }
+
+    private void record(String model, String result, long nanos) {
+        Timer.builder("djl.model.warmup")
+                .description("Загрузка и прогрев модели при старте")
+                .tag("model", model)
+                .tag("result", result)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -2,62 +2,137 @@ package com.hahaton.ai;
 
 import ai.djl.Application;
 import ai.djl.Device;
-import ai.djl.inference.Predictor;
 import ai.djl.modality.Classifications;
 import ai.djl.modality.cv.Image;
 import ai.djl.modality.cv.ImageFactory;
 import ai.djl.modality.cv.output.DetectedObjects;
 import ai.djl.repository.zoo.Criteria;
-import ai.djl.repository.zoo.ZooModel;
 import ai.djl.training.util.ProgressBar;
+import com.hahaton.config.DJLConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.io.IOException;
-import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @Service
 public class DJLService {
     
     private static final Logger logger = LoggerFactory.getLogger(DJLService.class);
     
+    static final String CLASSIFICATION_MODEL = "resnet50-imagenet";
+    static final String DETECTION_MODEL = "resnet50-coco";
+    
+    private static final int WARMUP_SIDE = 224;
+    
+    private final DJLModelRegistry modelRegistry;
+    private final DJLConfig djlConfig;
+    private final ImageLoader imageLoader;
+    private final MicroBatcher<Image, Classifications> classificationBatcher;
+    private final ExecutorService decodeExecutor;
+    
+    @Autowired
+    public DJLService(DJLModelRegistry modelRegistry, DJLConfig djlConfig, ImageLoader imageLoader,
+                      MeterRegistry meterRegistry) {
+        this.modelRegistry = modelRegistry;
+        this.djlConfig = djlConfig;
+        this.imageLoader = imageLoader;
+        // Параллельные одиночные запросы классификации объединяются в пакеты для batchPredict
+        this.classificationBatcher = new MicroBatcher<>(
+                "classify",
+                images -> modelRegistry.batchPredict(CLASSIFICATION_MODEL, DJLService::classificationCriteria, images),
+                djlConfig.getDefaultBatchSize(),
+                djlConfig.getBatchMaxWaitMs(),
+                djlConfig.getPredictorPoolSize(),
+                djlConfig.getBatchQueueCapacity(),
+                meterRegistry);
+        AtomicInteger decodeThreads = new AtomicInteger();
+        this.decodeExecutor = Executors.newFixedThreadPool(Math.max(1, djlConfig.getImageDecodeThreads()), r -> {
+            Thread thread = new Thread(r, "image-decode-" + decodeThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        classificationBatcher.close();
+        decodeExecutor.shutdownNow();
+    }
+    
     /**
      * Классификация изображения с помощью предобученной модели ResNet
      */
     public Map<String, Object> classifyImage(String imageUrl) {
+        return classify(() -> imageLoader.load(imageUrl));
+    }
+    
+    /**
+     * Классификация загруженного файла изображения
+     */
+    public Map<String, Object> classifyImage(byte[] content) {
+        return classify(() -> imageLoader.load(content));
+    }
+    
+    /**
+     * Обнаружение объектов на изображении
+     */
+    public Map<String, Object> detectObjects(String imageUrl) {
+        return detect(() -> imageLoader.load(imageUrl));
+    }
+    
+    /**
+     * Обнаружение объектов на загруженном файле изображения
+     */
+    public Map<String, Object> detectObjects(byte[] content) {
+        return detect(() -> imageLoader.load(content));
+    }
+    
+    private Map<String, Object> classify(Supplier<Image> source) {
         Map<String, Object> result = new HashMap<>();
         
         try {
-            // Критерии для загрузки модели классификации изображений
-            Criteria<Image, Classifications> criteria = Criteria.builder()
-                    .optApplication(Application.CV.IMAGE_CLASSIFICATION)
-                    .setTypes(Image.class, Classifications.class)
-                    .optFilter("backbone", "resnet50")
-                    .optFilter("dataset", "imagenet")
-                    .optProgress(new ProgressBar())
-                    .build();
+            // Загружаем изображение (лимиты размера, таймауты, кэш декодированных изображений)
+            Image img = source.get();
             
-            // Загружаем модель
-            try (ZooModel<Image, Classifications> model = criteria.loadModel();
-                 Predictor<Image, Classifications> predictor = model.newPredictor()) {
-                
-                // Загружаем изображение
-                Image img = ImageFactory.getInstance().fromUrl(new URL(imageUrl));
-                
-                // Выполняем предсказание
-                Classifications classifications = predictor.predict(img);
-                
-                // Формируем результат
-                result.put("success", true);
-                result.put("model", "ResNet50");
-                result.put("predictions", classifications.topK(5));
-                result.put("message", "Изображение успешно классифицировано");
-                
-            }
+            // Выполняем предсказание в составе ближайшего пакета
+            Classifications classifications = await(classificationBatcher.submit(img));
             
+            // Формируем результат
+            result.put("success", true);
+            result.put("model", "ResNet50");
+            result.put("predictions", classifications.topK(5));
+            result.put("message", "Изображение успешно классифицировано");
+            
+        } catch (ImageRejectedException e) {
+            result.put("success", false);
+            result.put("error", e.getMessage());
+            result.put("message", "Изображение отклонено");
+        } catch (RejectedExecutionException e) {
+            result.put("success", false);
+            result.put("error", e.getMessage());
+            result.put("message", "Слишком много запросов на классификацию, повторите попытку позже");
         } catch (Exception e) {
             logger.error("Ошибка при классификации изображения: ", e);
             result.put("success", false);
@@ -68,41 +143,28 @@ public class DJLService {
         return result;
     }
     
-    /**
-     * Обнаружение объектов на изображении
-     */
-    public Map<String, Object> detectObjects(String imageUrl) {
+    private Map<String, Object> detect(Supplier<Image> source) {
         Map<String, Object> result = new HashMap<>();
         
         try {
-            // Критерии для загрузки модели обнаружения объектов
-            Criteria<Image, DetectedObjects> criteria = Criteria.builder()
-                    .optApplication(Application.CV.OBJECT_DETECTION)
-                    .setTypes(Image.class, DetectedObjects.class)
-                    .optFilter("backbone", "resnet50")
-                    .optFilter("dataset", "coco")
-                    .optProgress(new ProgressBar())
-                    .build();
+            // Загружаем изображение (лимиты размера, таймауты, кэш декодированных изображений)
+            Image img = source.get();
             
-            // Загружаем модель
-            try (ZooModel<Image, DetectedObjects> model = criteria.loadModel();
-                 Predictor<Image, DetectedObjects> predictor = model.newPredictor()) {
-                
-                // Загружаем изображение
-                Image img = ImageFactory.getInstance().fromUrl(new URL(imageUrl));
-                
-                // Выполняем предсказание
-                DetectedObjects detections = predictor.predict(img);
-                
-                // Формируем результат
-                result.put("success", true);
-                result.put("model", "ResNet50 Object Detection");
-                result.put("detections", detections);
-                result.put("count", detections.getNumberOfObjects());
-                result.put("message", "Объекты успешно обнаружены");
-                
-            }
+            // Выполняем предсказание на резидентной модели из реестра
+            DetectedObjects detections = modelRegistry.predict(
+                    DETECTION_MODEL, DJLService::detectionCriteria, img);
             
+            // Формируем результат
+            result.put("success", true);
+            result.put("model", "ResNet50 Object Detection");
+            result.put("detections", detections);
+            result.put("count", detections.getNumberOfObjects());
+            result.put("message", "Объекты успешно обнаружены");
+            
+        } catch (ImageRejectedException e) {
+            result.put("success", false);
+            result.put("error", e.getMessage());
+            result.put("message", "Изображение отклонено");
         } catch (Exception e) {
             logger.error("Ошибка при обнаружении объектов: ", e);
             result.put("success", false);
@@ -113,6 +175,204 @@ public class DJLService {
         return result;
     }
     
+    /**
+     * Пакетная классификация: результат по каждому изображению передается в sink сразу,
+     * как только готов его пакет, а последней строкой - итог
+     */
+    public void classifyBatch(List<BatchImage> images, Consumer<Map<String, Object>> sink) {
+        runBatch(images,
+                chunk -> modelRegistry.batchPredict(CLASSIFICATION_MODEL, DJLService::classificationCriteria, chunk),
+                (classifications, result) -> result.put("predictions", classifications.topK(5)),
+                sink);
+    }
+    
+    /**
+     * Пакетное обнаружение объектов, результаты передаются в sink по мере готовности
+     */
+    public void detectBatch(List<BatchImage> images, Consumer<Map<String, Object>> sink) {
+        runBatch(images,
+                chunk -> modelRegistry.batchPredict(DETECTION_MODEL, DJLService::detectionCriteria, chunk),
+                (detections, result) -> {
+                    result.put("detections", detections);
+                    result.put("count", detections.getNumberOfObjects());
+                },
+                sink);
+    }
+    
+    /**
+     * Изображения декодируются параллельно и в порядке готовности собираются в пакеты по djl.batch-chunk-size.
+     * Неполный пакет отправляется, если следующее изображение не готово за djl.batch-max-wait-ms,
+     * поэтому медленный URL не задерживает уже загруженные картинки.
+     */
+    private <O> void runBatch(List<BatchImage> images, MicroBatcher.BatchHandler<Image, O> predictor,
+                              BiConsumer<O, Map<String, Object>> format, Consumer<Map<String, Object>> sink) {
+        CompletionService<Decoded> decoding = new ExecutorCompletionService<>(decodeExecutor);
+        List<Future<Decoded>> futures = new ArrayList<>(images.size());
+        for (int i = 0; i < images.size(); i++) {
+            int index = i;
+            futures.add(decoding.submit(() -> decode(index, images.get(index))));
+        }
+        
+        int chunkSize = Math.max(1, djlConfig.getBatchChunkSize());
+        List<Decoded> chunk = new ArrayList<>(chunkSize);
+        int succeeded = 0;
+        try {
+            int received = 0;
+            while (received < images.size()) {
+                Future<Decoded> next = chunk.isEmpty()
+                        ? decoding.take()
+                        : decoding.poll(djlConfig.getBatchMaxWaitMs(), TimeUnit.MILLISECONDS);
+                if (next == null) {
+                    succeeded += predictChunk(chunk, predictor, format, sink);
+                    continue;
+                }
+                received++;
+                Decoded decoded = next.get();
+                if (decoded.image == null) {
+                    sink.accept(itemResult(decoded, false));
+                } else {
+                    chunk.add(decoded);
+                }
+                if (chunk.size() >= chunkSize) {
+                    succeeded += predictChunk(chunk, predictor, format, sink);
+                }
+            }
+            succeeded += predictChunk(chunk, predictor, format, sink);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // decode перехватывает ошибки сам, сюда попадает только отмена
+            logger.warn("Пакетная обработка прервана: ", e);
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+        
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("done", true);
+        summary.put("total", images.size());
+        summary.put("succeeded", succeeded);
+        summary.put("failed", images.size() - succeeded);
+        sink.accept(summary);
+    }
+    
+    /**
+     * Выполнить накопленный пакет и отдать результаты; возвращает число успешно обработанных изображений
+     */
+    private <O> int predictChunk(List<Decoded> chunk, MicroBatcher.BatchHandler<Image, O> predictor,
+                                 BiConsumer<O, Map<String, Object>> format, Consumer<Map<String, Object>> sink) {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+        List<Image> inputs = new ArrayList<>(chunk.size());
+        for (Decoded decoded : chunk) {
+            inputs.add(decoded.image);
+        }
+        List<O> outputs;
+        try {
+            outputs = predictor.handle(inputs);
+        } catch (Exception e) {
+            logger.error("Ошибка пакетного предсказания: ", e);
+            for (Decoded decoded : chunk) {
+                decoded.error = e.getMessage();
+                sink.accept(itemResult(decoded, false));
+            }
+            chunk.clear();
+            return 0;
+        }
+        for (int i = 0; i < chunk.size(); i++) {
+            Map<String, Object> result = itemResult(chunk.get(i), true);
+            format.accept(outputs.get(i), result);
+            sink.accept(result);
+        }
+        int processed = chunk.size();
+        chunk.clear();
+        return processed;
+    }
+    
+    private Decoded decode(int index, BatchImage source) {
+        Decoded decoded = new Decoded(index, source.getSource());
+        try {
+            decoded.image = source.getUrl() != null ? imageLoader.load(source.getUrl()) : imageLoader.load(source.getContent());
+        } catch (Exception e) {
+            decoded.error = e.getMessage();
+        }
+        return decoded;
+    }
+    
+    private static Map<String, Object> itemResult(Decoded decoded, boolean success) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("index", decoded.index);
+        result.put("source", decoded.source);
+        result.put("success", success);
+        if (!success) {
+            result.put("error", decoded.error);
+        }
+        return result;
+    }
+    
+    /**
+     * Загрузить модель реестра и выполнить прогревочные предсказания на синтетическом изображении,
+     * чтобы первый пользовательский запрос не платил за загрузку и JIT движка
+     */
+    public void warmUp(String modelName, int iterations) throws Exception {
+        Image blank = ImageFactory.getInstance().fromPixels(new int[WARMUP_SIDE * WARMUP_SIDE], WARMUP_SIDE, WARMUP_SIDE);
+        for (int i = 0; i < Math.max(1, iterations); i++) {
+            switch (modelName) {
+                case CLASSIFICATION_MODEL:
+                    // Пакет того же размера, что собирает MicroBatcher
+                    modelRegistry.batchPredict(CLASSIFICATION_MODEL, DJLService::classificationCriteria,
+                            Collections.nCopies(Math.max(1, djlConfig.getDefaultBatchSize()), blank));
+                    break;
+                case DETECTION_MODEL:
+                    modelRegistry.predict(DETECTION_MODEL, DJLService::detectionCriteria, blank);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Неизвестная модель для прогрева: " + modelName);
+            }
+        }
+    }
+    
+    /**
+     * Дождаться результата пакета; первая загрузка модели ограничена djl.model-load-timeout.
+     * По таймауту запрос отменяется, чтобы батчер не выполнял его впустую
+     */
+    private <T> T await(Future<T> future) throws Exception {
+        try {
+            return future.get(djlConfig.getModelLoadTimeout(), TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            throw e;
+        }
+    }
+    
+    /**
+     * Критерии для загрузки модели классификации изображений
+     */
+    static Criteria<Image, Classifications> classificationCriteria() {
+        return Criteria.builder()
+                .optApplication(Application.CV.IMAGE_CLASSIFICATION)
+                .setTypes(Image.class, Classifications.class)
+                .optFilter("backbone", "resnet50")
+                .optFilter("dataset", "imagenet")
+                .optProgress(new ProgressBar())
+                .build();
+    }
+    
+    /**
+     * Критерии для загрузки модели обнаружения объектов
+     */
+    static Criteria<Image, DetectedObjects> detectionCriteria() {
+        return Criteria.builder()
+                .optApplication(Application.CV.OBJECT_DETECTION)
+                .setTypes(Image.class, DetectedObjects.class)
+                .optFilter("backbone", "resnet50")
+                .optFilter("dataset", "coco")
+                .optProgress(new ProgressBar())
+                .build();
+    }
+    
     /**
      * Получение информации о доступных моделях
      */
@@ -157,6 +417,9 @@ public class DJLService {
             result.put("status", "DJL Service is running");
             result.put("cpu_device", cpu.toString());
             result.put("gpu_device", gpu.toString());
+            result.put("model_registry", modelRegistry.getStats());
+            result.put("classification_batching", classificationBatcher.getStats());
+            result.put("image_cache_size", imageLoader.cacheSize());
             result.put("message", "DJL сервис работает корректно");
             
         } catch (Exception e) {
@@ -192,4 +455,56 @@ public class DJLService {
         
         return result;
     }
+    
+    /**
+     * Изображение пакетного запроса: URL или загруженный файл
+     */
+    public static final class BatchImage {
+        
+        private final String source;
+        private final String url;
+        private final byte[] content;
+        
+        private BatchImage(String source, String url, byte[] content) {
+            this.source = source;
+            this.url = url;
+            this.content = content;
+        }
+        
+        public static BatchImage ofUrl(String url) {
+            return new BatchImage(url, url, null);
+        }
+        
+        public static BatchImage ofUpload(String fileName, byte[] content) {
+            return new BatchImage(fileName, null, content);
+        }
+        
+        public String getSource() {
+            return source;
+        }
+        
+        public String getUrl() {
+            return url;
+        }
+        
+        public byte[] getContent() {
+            return content;
+        }
+    }
+    
+    /**
+     * Результат декодирования: изображение или текст ошибки
+     */
+    private static final class Decoded {
+        
+        private final int index;
+        private final String source;
+        private Image image;
+        private String error;
+        
+        private Decoded(int index, String source) {
+            this.index = index;
+            this.source = source;
+        }
+    }
 }
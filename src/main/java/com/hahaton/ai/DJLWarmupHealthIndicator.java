@@ -0,0 +1,25 @@
+package com.hahaton.ai;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Прогрев DJL моделей в /actuator/health и в группе readiness.
+ * Пока модели из djl.preload-models грузятся, экземпляр не готов принимать трафик (OUT_OF_SERVICE).
+ */
+@Component("djlWarmup")
+public class DJLWarmupHealthIndicator implements HealthIndicator {
+
+    private final DJLModelWarmup warmup;
+
+    public DJLWarmupHealthIndicator(DJLModelWarmup warmup) {
+        this.warmup = warmup;
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder builder = warmup.isFinished() ? Health.up() : Health.outOfService();
+        return builder.withDetails(warmup.getStats()).build();
+    }
+}
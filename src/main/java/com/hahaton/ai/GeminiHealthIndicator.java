@@ -0,0 +1,34 @@
+package com.hahaton.ai;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Component;
+
+/**
+ * Состояние Gemini в /actuator/health.
+ * Разомкнутый автомат защиты - не отказ приложения: AI помощник отвечает из локальной базы,
+ * поэтому такой компонент получает статус DEGRADED, а не DOWN.
+ */
+@Component("gemini")
+public class GeminiHealthIndicator implements HealthIndicator {
+
+    public static final Status DEGRADED = new Status("DEGRADED", "Gemini недоступен, ответы идут из локальной базы");
+
+    private final GeminiService geminiService;
+
+    public GeminiHealthIndicator(GeminiService geminiService) {
+        this.geminiService = geminiService;
+    }
+
+    @Override
+    public Health health() {
+        if (!geminiService.isConfigured()) {
+            return Health.unknown().withDetail("reason", "API ключ не настроен").build();
+        }
+        Health.Builder builder = geminiService.getCircuitState() == CircuitBreaker.State.CLOSED
+                ? Health.up()
+                : Health.status(DEGRADED);
+        return builder.withDetails(geminiService.getResilienceStats()).build();
+    }
+}
@@ -0,0 +1,189 @@
+package com.hahaton.ai;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Кэш ответов Gemini по нормализованному вопросу.
+ * Ограничен по размеру (LRU) и по времени жизни записи; одинаковые вопросы, пришедшие
+ * одновременно, ждут один запрос к API (single-flight), а не отправляют каждый свой.
+ * Кэшируются только успешные ответы.
+ */
+public class GeminiResponseCache {
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter coalesced;
+    private final Counter sizeEvictions;
+    private final Counter expiredEvictions;
+
+    public GeminiResponseCache(int maxEntries, long ttlSeconds, MeterRegistry meterRegistry) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(Math.max(1, ttlSeconds));
+        this.hits = Counter.builder("gemini.cache.requests").tag("result", "hit")
+                .description("Обращения к кэшу ответов Gemini").register(meterRegistry);
+        this.misses = Counter.builder("gemini.cache.requests").tag("result", "miss")
+                .description("Обращения к кэшу ответов Gemini").register(meterRegistry);
+        this.coalesced = Counter.builder("gemini.cache.requests").tag("result", "coalesced")
+                .description("Обращения к кэшу ответов Gemini").register(meterRegistry);
+        this.sizeEvictions = Counter.builder("gemini.cache.evictions").tag("reason", "size")
+                .description("Вытесненные ответы Gemini").register(meterRegistry);
+        this.expiredEvictions = Counter.builder("gemini.cache.evictions").tag("reason", "expired")
+                .description("Вытесненные ответы Gemini").register(meterRegistry);
+        Gauge.builder("gemini.cache.size", this, GeminiResponseCache::size)
+                .description("Ответы Gemini в кэше")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ответ из кэша или результат loader; параллельные вызовы с тем же вопросом получают один future
+     */
+    public CompletableFuture<String> get(String question, Function<String, CompletableFuture<String>> loader) {
+        String key = normalize(question);
+        String cached = lookup(key);
+        if (cached != null) {
+            hits.increment();
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        CompletableFuture<String> mine = new CompletableFuture<>();
+        CompletableFuture<String> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            // Такой же вопрос уже отправлен - ждем его ответ
+            coalesced.increment();
+            return running;
+        }
+
+        misses.increment();
+        // Пока мы регистрировались, ответ мог появиться в кэше
+        String value = lookup(key);
+        CompletableFuture<String> loaded;
+        if (value != null) {
+            loaded = CompletableFuture.completedFuture(value);
+        } else {
+            try {
+                loaded = loader.apply(question);
+            } catch (RuntimeException e) {
+                loaded = CompletableFuture.failedFuture(e);
+            }
+        }
+        loaded.whenComplete((result, error) -> {
+            // Сначала кэш, потом снятие с полета: новый вызов увидит одно из двух
+            if (error == null) {
+                store(key, result);
+            }
+            inFlight.remove(key, mine);
+            if (error == null) {
+                mine.complete(result);
+            } else {
+                mine.completeExceptionally(error);
+            }
+        });
+        return mine;
+    }
+
+    /**
+     * Ответ из кэша без обращения к API или null
+     */
+    public String getIfPresent(String question) {
+        String cached = lookup(normalize(question));
+        if (cached != null) {
+            hits.increment();
+        }
+        return cached;
+    }
+
+    /**
+     * Сохранить ответ, полученный в обход get (например, собранный из потока)
+     */
+    public void put(String question, String answer) {
+        if (answer != null && !answer.isEmpty()) {
+            store(normalize(question), answer);
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Нормализация вопроса: регистр, пробелы и завершающая пунктуация не влияют на ключ
+     */
+    static String normalize(String question) {
+        if (question == null) {
+            return "";
+        }
+        String key = question.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        int end = key.length();
+        while (end > 0 && "?!.".indexOf(key.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        return key.substring(0, end).strip();
+    }
+
+    private String lookup(String key) {
+        long now = System.nanoTime();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (now - entry.storedAt >= ttlNanos) {
+                entries.remove(key);
+                expiredEvictions.increment();
+                return null;
+            }
+            return entry.value;
+        }
+    }
+
+    private void store(String key, String value) {
+        long now = System.nanoTime();
+        synchronized (entries) {
+            entries.put(key, new Entry(value, now));
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (entries.size() > maxEntries && iterator.hasNext()) {
+                Entry eldest = iterator.next();
+                iterator.remove();
+                if (now - eldest.storedAt >= ttlNanos) {
+                    expiredEvictions.increment();
+                } else {
+                    sizeEvictions.increment();
+                }
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        private final String value;
+        private final long storedAt;
+
+        private Entry(String value, long storedAt) {
+            this.value = value;
+            this.storedAt = storedAt;
+        }
+    }
+}
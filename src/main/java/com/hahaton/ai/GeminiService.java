@@ -1,87 +1,424 @@
 package com.hahaton.ai;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hahaton.config.GeminiConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 @Service
 public class GeminiService {
     
     private final GeminiConfig geminiConfig;
-    private final RestTemplate restTemplate;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final GeminiResponseCache responseCache;
+    private final MeterRegistry meterRegistry;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final CircuitBreaker circuitBreaker;
+    private final RetryBudget retryBudget;
+    private final Semaphore bulkhead;
+    private final Counter retries;
+    private final Counter bulkheadRejected;
+    private final Counter circuitRejected;
+    private final ScheduledExecutorService streamDeadlines = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "gemini-stream-deadline");
+        thread.setDaemon(true);
+        return thread;
+    });
     
     @Autowired
-    public GeminiService(GeminiConfig geminiConfig) {
+    public GeminiService(GeminiConfig geminiConfig, MeterRegistry meterRegistry) {
         this.geminiConfig = geminiConfig;
-        this.restTemplate = new RestTemplate();
+        this.meterRegistry = meterRegistry;
+        // Один клиент на сервис: соединения переиспользуются (keep-alive, HTTP/2)
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(Math.max(1, geminiConfig.getConnectTimeoutMs())))
+                .build();
+        this.responseCache = new GeminiResponseCache(
+                geminiConfig.getCacheMaxEntries(), geminiConfig.getCacheTtlSeconds(), meterRegistry);
+        Gauge.builder("gemini.http.in_flight", inFlight, AtomicInteger::get)
+                .description("Запросы к Gemini API, ожидающие ответа")
+                .register(meterRegistry);
+        
+        this.circuitBreaker = new CircuitBreaker(geminiConfig.getCircuitFailureThreshold(), geminiConfig.getCircuitOpenMs());
+        this.retryBudget = new RetryBudget(geminiConfig.getRetryBudgetRatio(), geminiConfig.getRetryBudgetMaxTokens());
+        this.bulkhead = new Semaphore(Math.max(1, geminiConfig.getMaxConcurrentCalls()));
+        this.retries = Counter.builder("gemini.retries")
+                .description("Повторные запросы к Gemini API")
+                .register(meterRegistry);
+        this.bulkheadRejected = Counter.builder("gemini.rejected").tag("reason", "bulkhead")
+                .description("Вызовы Gemini API, отклоненные без обращения к API")
+                .register(meterRegistry);
+        this.circuitRejected = Counter.builder("gemini.rejected").tag("reason", "circuit_open")
+                .description("Вызовы Gemini API, отклоненные без обращения к API")
+                .register(meterRegistry);
+        Gauge.builder("gemini.circuit.state", circuitBreaker, cb -> cb.getState().ordinal())
+                .description("Состояние автомата защиты: 0 - замкнут, 1 - разомкнут, 2 - пробный вызов")
+                .register(meterRegistry);
     }
     
     public String generateResponse(String question) {
+        return generateResponseAsync(question).join();
+    }
+    
+    /**
+     * Ответ Gemini без блокировки вызывающего потока.
+     * Future всегда завершается строкой для пользователя: ошибки превращаются в сообщение.
+     */
+    public CompletableFuture<String> generateResponseAsync(String question) {
+        // Проверка и формирование корректного URL и ключа
+        String apiKey = safeTrim(geminiConfig.getApiKey());
+        String apiUrl = resolveApiUrl();
+        if (apiKey == null || apiKey.isEmpty()) {
+            System.err.println("Gemini API key is empty. Set GEMINI_API_KEY or gemini.api.key property.");
+            return CompletableFuture.completedFuture("Извините, ключ API Gemini не настроен. Обратитесь к администратору.");
+        }
+        if (!apiUrl.startsWith("http")) {
+            System.err.println("Gemini API URL is invalid: " + apiUrl);
+            return CompletableFuture.completedFuture("Извините, конфигурация AI некорректна (URL). Попробуйте позже.");
+        }
+        
+        // Одинаковые вопросы отвечаются из кэша, одновременные - одним запросом к API
+        return responseCache.get(question, q -> requestGemini(apiUrl + "?key=" + apiKey, q))
+                .exceptionally(e -> {
+                    Throwable cause = unwrap(e);
+                    if (cause instanceof GeminiResponseException) {
+                        return cause.getMessage();
+                    }
+                    System.err.println("Ошибка при обращении к Gemini API: " + cause);
+                    return "Извините, произошла ошибка при обработке вашего вопроса. Попробуйте еще раз.";
+                });
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        streamDeadlines.shutdownNow();
+    }
+    
+    /**
+     * Потоковый ответ Gemini (streamGenerateContent, SSE): каждый фрагмент текста передается
+     * в onChunk сразу по приходу. Исключение из onChunk (например, клиент отключился)
+     * прерывает чтение и закрывает соединение с API. Чтение также прерывается, если между фрагментами
+     * прошло больше gemini.stream-idle-timeout-ms, весь поток идет дольше gemini.stream-timeout-ms
+     * или возвращенный future отменен.
+     */
+    public CompletableFuture<Void> streamResponse(String question, Consumer<String> onChunk) {
+        if (!isConfigured()) {
+            onChunk.accept(generateResponse(question));
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        // Ответ уже есть в кэше - отдаем его без обращения к API
+        String cached = responseCache.getIfPresent(question);
+        if (cached != null) {
+            onChunk.accept(cached);
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        byte[] body;
         try {
-            // Формируем запрос к Gemini API
-            Map<String, Object> requestBody = new HashMap<>();
-            
-            // Содержимое запроса
-            Map<String, Object> content = new HashMap<>();
-            content.put("parts", new Object[]{
-                Map.of("text", buildPrompt(question))
-            });
-            
-            requestBody.put("contents", new Object[]{content});
-            
-            // Настройки генерации
-            Map<String, Object> generationConfig = new HashMap<>();
-            generationConfig.put("maxOutputTokens", geminiConfig.getMaxTokens());
-            generationConfig.put("temperature", geminiConfig.getTemperature());
-            generationConfig.put("topP", 0.8);
-            generationConfig.put("topK", 40);
-            
-            requestBody.put("generationConfig", generationConfig);
-            
-            // Заголовки запроса
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            
-            // Проверка и формирование корректного URL и ключа
-            String apiKey = safeTrim(geminiConfig.getApiKey());
-            String apiUrl = safeTrim(geminiConfig.getApiUrl());
-            String model = safeTrim(geminiConfig.getModelName());
-            if (apiUrl == null || apiUrl.isEmpty()) {
-                // Формируем URL по умолчанию
-                String m = (model == null || model.isEmpty()) ? "gemini-pro" : model;
-                apiUrl = "https://generativelanguage.googleapis.com/v1beta/models/" + m + ":generateContent";
-            }
-            if (apiKey == null || apiKey.isEmpty()) {
-                System.err.println("Gemini API key is empty. Set GEMINI_API_KEY or gemini.api.key property.");
-                return "Извините, ключ API Gemini не настроен. Обратитесь к администратору.";
+            body = objectMapper.writeValueAsBytes(buildRequestBody(question));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        String url = resolveApiUrl().replace(":generateContent", ":streamGenerateContent")
+                + "?alt=sse&key=" + safeTrim(geminiConfig.getApiKey());
+        // Для потока дедлайн ограничивает ожидание первого ответа, а не всю генерацию
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(Math.max(1, geminiConfig.getRequestTimeoutMs())))
+                .header("Content-Type", "application/json")
+                .header("Accept", "text/event-stream")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        
+        // Поток не повторяем: часть ответа уже может быть у клиента
+        StreamDeadline deadline = new StreamDeadline();
+        CompletableFuture<Void> stream = guarded(() -> {
+            long start = System.nanoTime();
+            inFlight.incrementAndGet();
+            CompletableFuture<HttpResponse<Stream<String>>> exchange =
+                    httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofLines());
+            deadline.awaiting(exchange);
+            return exchange
+                    .thenAccept(response -> {
+                        try (Stream<String> lines = response.body()) {
+                            deadline.reading(lines);
+                            if (response.statusCode() != 200) {
+                                throw new GeminiHttpException(response.statusCode());
+                            }
+                            StringBuilder answer = new StringBuilder();
+                            lines.filter(line -> line.startsWith("data:"))
+                                    .map(line -> parseChunk(line.substring(5).trim()))
+                                    .filter(chunk -> !chunk.isEmpty())
+                                    .forEach(chunk -> {
+                                        deadline.touch();
+                                        answer.append(chunk);
+                                        onChunk.accept(chunk);
+                                    });
+                            responseCache.put(question, answer.toString());
+                        } catch (RuntimeException e) {
+                            throw deadline.translate(e);
+                        } finally {
+                            deadline.finish();
+                        }
+                    })
+                    .whenComplete((result, error) -> {
+                        inFlight.decrementAndGet();
+                        Timer.builder("gemini.http.stream.duration")
+                                .description("Длительность потокового ответа Gemini API")
+                                .tag("outcome", error != null ? "error" : "success")
+                                .register(meterRegistry)
+                                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    });
+        });
+        // Вызывающему отдается отдельный future: отмена стадии guarded пропустила бы освобождение bulkhead.
+        // Отмена (клиент отключился, истек SseEmitter) прерывает чтение, и guarded завершается как обычно
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        stream.whenComplete((value, error) -> {
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(value);
             }
-            if (!apiUrl.startsWith("http")) {
-                System.err.println("Gemini API URL is invalid: " + apiUrl);
-                return "Извините, конфигурация AI некорректна (URL). Попробуйте позже.";
+        });
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                deadline.abort();
             }
-            
-            // URL с API ключом
-            String url = apiUrl + "?key=" + apiKey;
-            
-            // Отправляем запрос
-            HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
-            ResponseEntity<Map> response = restTemplate.postForEntity(url, request, Map.class);
-            
-            if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                return extractResponse(response.getBody());
+        });
+        return result;
+    }
+    
+    /**
+     * Настроен ли доступ к Gemini API (ключ и корректный URL)
+     */
+    public boolean isConfigured() {
+        String apiKey = safeTrim(geminiConfig.getApiKey());
+        return apiKey != null && !apiKey.isEmpty() && resolveApiUrl().startsWith("http");
+    }
+    
+    /**
+     * Можно ли сейчас обращаться к Gemini: API настроен и автомат защиты не разомкнут
+     */
+    public boolean isAvailable() {
+        return isConfigured() && circuitBreaker.getState() != CircuitBreaker.State.OPEN;
+    }
+    
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+    
+    /**
+     * Состояние защитного слоя для health и диагностики
+     */
+    public Map<String, Object> getResilienceStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("circuit", circuitBreaker.getState().name());
+        stats.put("consecutiveFailures", circuitBreaker.getConsecutiveFailures());
+        stats.put("retryBudgetTokens", retryBudget.getAvailableTokens());
+        stats.put("bulkheadAvailable", bulkhead.availablePermits());
+        stats.put("inFlight", inFlight.get());
+        return stats;
+    }
+    
+    /**
+     * Кэш ответов (для диагностики и тестов)
+     */
+    public GeminiResponseCache getResponseCache() {
+        return responseCache;
+    }
+    
+    private CompletableFuture<String> requestGemini(String url, String question) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(buildRequestBody(question));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return guarded(() -> {
+            retryBudget.recordRequest();
+            // Дедлайн на весь вызов вместе с повторами: каждая попытка получает только остаток
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(1, geminiConfig.getRequestTimeoutMs()));
+            return attempt(url, body, 0, deadline);
+        });
+    }
+    
+    /**
+     * Вызов через bulkhead и автомат защиты: при переполнении или разомкнутой цепи
+     * future сразу завершается GeminiUnavailableException, без обращения к API
+     */
+    private <T> CompletableFuture<T> guarded(Supplier<CompletableFuture<T>> call) {
+        if (!bulkhead.tryAcquire()) {
+            bulkheadRejected.increment();
+            return CompletableFuture.failedFuture(new GeminiUnavailableException());
+        }
+        if (!circuitBreaker.tryAcquirePermission()) {
+            bulkhead.release();
+            circuitRejected.increment();
+            return CompletableFuture.failedFuture(new GeminiUnavailableException());
+        }
+        CompletableFuture<T> result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        return result.whenComplete((value, error) -> {
+            bulkhead.release();
+            if (error != null && isUpstreamFailure(unwrap(error))) {
+                circuitBreaker.onFailure();
             } else {
-                return "Извините, не удалось получить ответ от AI. Попробуйте еще раз.";
+                circuitBreaker.onSuccess();
             }
-            
-        } catch (Exception e) {
-            System.err.println("Ошибка при обращении к Gemini API: " + e.getMessage());
-            return "Извините, произошла ошибка при обработке вашего вопроса. Попробуйте еще раз.";
+        });
+    }
+    
+    private CompletableFuture<String> attempt(String url, byte[] body, int attempt, long deadline) {
+        // Таймаут запроса в HttpClient ограничивает только ожидание заголовков, поэтому остаток дедлайна
+        // ограничивает и чтение тела через orTimeout
+        long deadlineMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (deadlineMs <= 0) {
+            return CompletableFuture.failedFuture(new TimeoutException("Дедлайн вызова Gemini истек"));
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(deadlineMs))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        
+        long start = System.nanoTime();
+        inFlight.incrementAndGet();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .orTimeout(deadlineMs, TimeUnit.MILLISECONDS)
+                .whenComplete((response, error) -> {
+                    inFlight.decrementAndGet();
+                    String outcome = error != null ? "error" : String.valueOf(response.statusCode());
+                    Timer.builder("gemini.http.latency")
+                            .description("Время ответа Gemini API")
+                            .tag("outcome", outcome)
+                            .register(meterRegistry)
+                            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                })
+                .thenApply(this::parseResponse)
+                .handle((answer, error) -> {
+                    if (error == null) {
+                        return CompletableFuture.completedFuture(answer);
+                    }
+                    Throwable cause = unwrap(error);
+                    // Экспоненциальная задержка с полным джиттером, чтобы повторы клиентов не совпадали
+                    long backoff = Math.max(1, geminiConfig.getRetryBaseDelayMs()) << attempt;
+                    long delayNanos = TimeUnit.MILLISECONDS.toNanos(ThreadLocalRandom.current().nextLong(backoff + 1));
+                    // Повтор, который начнется уже после дедлайна, не делается и не тратит бюджет
+                    if (attempt < geminiConfig.getMaxRetries() && isUpstreamFailure(cause)
+                            && deadline - System.nanoTime() > delayNanos && retryBudget.tryAcquireRetry()) {
+                        retries.increment();
+                        Executor delayed = CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS);
+                        return CompletableFuture.runAsync(() -> { }, delayed)
+                                .thenCompose(ignored -> attempt(url, body, attempt + 1, deadline));
+                    }
+                    return CompletableFuture.<String>failedFuture(cause);
+                })
+                .thenCompose(Function.identity());
+    }
+    
+    /**
+     * Сбой на стороне API (сеть, таймаут, 5xx, 429): такие вызовы повторяются и учитываются автоматом защиты
+     */
+    private static boolean isUpstreamFailure(Throwable error) {
+        if (error instanceof GeminiHttpException http) {
+            return http.status >= 500 || http.status == 429;
+        }
+        return error instanceof IOException || error instanceof TimeoutException;
+    }
+    
+    private static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+    
+    private Map<String, Object> buildRequestBody(String question) {
+        // Формируем запрос к Gemini API
+        Map<String, Object> requestBody = new HashMap<>();
+        
+        // Содержимое запроса
+        Map<String, Object> content = new HashMap<>();
+        content.put("parts", new Object[]{
+            Map.of("text", buildPrompt(question))
+        });
+        
+        requestBody.put("contents", new Object[]{content});
+        
+        // Настройки генерации
+        Map<String, Object> generationConfig = new HashMap<>();
+        generationConfig.put("maxOutputTokens", geminiConfig.getMaxTokens());
+        generationConfig.put("temperature", geminiConfig.getTemperature());
+        generationConfig.put("topP", 0.8);
+        generationConfig.put("topK", 40);
+        
+        requestBody.put("generationConfig", generationConfig);
+        return requestBody;
+    }
+    
+    private String parseResponse(HttpResponse<byte[]> response) {
+        if (response.statusCode() != 200) {
+            throw new GeminiHttpException(response.statusCode());
+        }
+        if (response.body() == null || response.body().length == 0) {
+            throw new GeminiResponseException("Извините, не удалось получить ответ от AI. Попробуйте еще раз.");
+        }
+        try {
+            return extractResponse(objectMapper.readValue(response.body(), Map.class));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private String resolveApiUrl() {
+        String apiUrl = safeTrim(geminiConfig.getApiUrl());
+        String model = safeTrim(geminiConfig.getModelName());
+        if (apiUrl == null || apiUrl.isEmpty()) {
+            // Формируем URL по умолчанию
+            String m = (model == null || model.isEmpty()) ? "gemini-pro" : model;
+            apiUrl = "https://generativelanguage.googleapis.com/v1beta/models/" + m + ":generateContent";
         }
+        return apiUrl;
     }
     
     private String buildPrompt(String question) {
@@ -95,30 +432,40 @@ public class GeminiService {
     }
     
     private String extractResponse(Map responseBody) {
+        // Jackson разбирает JSON массивы в List, а не в Object[]
+        Object candidate = firstElement(responseBody.get("candidates"));
+        Object part = firstElement(child(child(candidate, "content"), "parts"));
+        if (child(part, "text") instanceof String text) {
+            return text;
+        }
+        throw new GeminiResponseException("Не удалось извлечь ответ из ответа API.");
+    }
+    
+    private String parseChunk(String json) {
+        if (json.isEmpty() || "[DONE]".equals(json)) {
+            return "";
+        }
         try {
-            if (responseBody.containsKey("candidates")) {
-                Object[] candidates = (Object[]) responseBody.get("candidates");
-                if (candidates.length > 0) {
-                    Map candidate = (Map) candidates[0];
-                    if (candidate.containsKey("content")) {
-                        Map content = (Map) candidate.get("content");
-                        if (content.containsKey("parts")) {
-                            Object[] parts = (Object[]) content.get("parts");
-                            if (parts.length > 0) {
-                                Map part = (Map) parts[0];
-                                if (part.containsKey("text")) {
-                                    return (String) part.get("text");
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-            return "Не удалось извлечь ответ из ответа API.";
-        } catch (Exception e) {
-            System.err.println("Ошибка при извлечении ответа: " + e.getMessage());
-            return "Ошибка при обработке ответа AI.";
+            Object candidate = firstElement(objectMapper.readValue(json, Map.class).get("candidates"));
+            Object part = firstElement(child(child(candidate, "content"), "parts"));
+            return child(part, "text") instanceof String text ? text : "";
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private static Object child(Object node, String key) {
+        return node instanceof Map<?, ?> map ? map.get(key) : null;
+    }
+    
+    private static Object firstElement(Object node) {
+        if (node instanceof List<?> list && !list.isEmpty()) {
+            return list.get(0);
         }
+        if (node instanceof Object[] array && array.length > 0) {
+            return array[0];
+        }
+        return null;
     }
     
     public String getRandomTip() {
@@ -139,4 +486,154 @@ public class GeminiService {
     private String safeTrim(String s) {
         return s == null ? null : s.trim();
     }
+    
+    /**
+     * Дедлайн чтения потокового ответа. Закрытие тела HttpClient не будит заблокированное чтение,
+     * поэтому поток-читатель прерывается (как в ImageLoader); флаг прерывания снимается в finish()
+     */
+    private final class StreamDeadline implements Runnable {
+        
+        private final long startNanos = System.nanoTime();
+        private volatile long lastChunkNanos = startNanos;
+        private CompletableFuture<?> exchange;
+        private Thread reader;
+        private AutoCloseable body;
+        private ScheduledFuture<?> check;
+        private boolean finished;
+        private boolean expired;
+        private boolean aborted;
+        
+        synchronized void awaiting(CompletableFuture<?> exchange) {
+            this.exchange = exchange;
+            if (aborted) {
+                exchange.cancel(true);
+            }
+        }
+        
+        synchronized void reading(AutoCloseable body) {
+            if (aborted) {
+                throw new CancellationException("Потоковый ответ отменен");
+            }
+            // Ожидание заголовков ограничено таймаутом запроса; паузы между фрагментами считаются с этого момента
+            this.reader = Thread.currentThread();
+            this.body = body;
+            touch();
+            schedule(0);
+        }
+        
+        void touch() {
+            lastChunkNanos = System.nanoTime();
+        }
+        
+        @Override
+        public void run() {
+            long now = System.nanoTime();
+            long idleLeft = Math.max(1, geminiConfig.getStreamIdleTimeoutMs()) - TimeUnit.NANOSECONDS.toMillis(now - lastChunkNanos);
+            long totalLeft = Math.max(1, geminiConfig.getStreamTimeoutMs()) - TimeUnit.NANOSECONDS.toMillis(now - startNanos);
+            if (idleLeft > 0 && totalLeft > 0) {
+                synchronized (this) {
+                    if (!finished) {
+                        schedule(Math.min(idleLeft, totalLeft));
+                    }
+                }
+                return;
+            }
+            stop(true);
+        }
+        
+        void abort() {
+            stop(false);
+        }
+        
+        /**
+         * Ошибка чтения после дедлайна - это таймаут API, после отмены - отмена
+         */
+        synchronized RuntimeException translate(RuntimeException error) {
+            if (expired) {
+                return new CompletionException(new TimeoutException("Поток Gemini не присылал данные дольше дедлайна"));
+            }
+            if (aborted) {
+                return new CancellationException("Потоковый ответ отменен");
+            }
+            return error;
+        }
+        
+        synchronized void finish() {
+            finished = true;
+            if (check != null) {
+                check.cancel(false);
+            }
+            if ((expired || aborted) && reader == Thread.currentThread()) {
+                Thread.interrupted();
+            }
+        }
+        
+        private void schedule(long delayMs) {
+            try {
+                check = streamDeadlines.schedule(this, Math.max(1, delayMs), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Сервис останавливается
+            }
+        }
+        
+        private void stop(boolean timeout) {
+            AutoCloseable toClose;
+            synchronized (this) {
+                if (finished || expired || aborted) {
+                    return;
+                }
+                if (timeout) {
+                    expired = true;
+                } else {
+                    aborted = true;
+                }
+                if (reader != null) {
+                    reader.interrupt();
+                } else if (exchange != null) {
+                    exchange.cancel(true);
+                }
+                toClose = body;
+            }
+            if (toClose != null) {
+                try {
+                    toClose.close();
+                } catch (Exception ignored) {
+                    // Соединение уже оборвано - чтение в любом случае прервется
+                }
+            }
+        }
+    }
+    
+    /**
+     * Ответ API без текста для пользователя: сообщение показывается как есть и не кэшируется
+     */
+    private static class GeminiResponseException extends RuntimeException {
+        
+        private GeminiResponseException(String message) {
+            super(message);
+        }
+    }
+    
+    /**
+     * Gemini API ответил статусом, отличным от 200
+     */
+    private static final class GeminiHttpException extends GeminiResponseException {
+        
+        private final int status;
+        
+        private GeminiHttpException(int status) {
+            super("Извините, не удалось получить ответ от AI. Попробуйте еще раз.");
+            this.status = status;
+        }
+    }
+    
+    /**
+     * Вызов отклонен без обращения к API: автомат защиты разомкнут или превышен лимит одновременных вызовов
+     */
+    private static final class GeminiUnavailableException extends GeminiResponseException {
+        
+        private GeminiUnavailableException() {
+            super("Извините, AI временно недоступен. Попробуйте позже.");
+        }
+    }
 }
@@ -0,0 +1,487 @@
+package com.hahaton.ai;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Приближенный поиск ближайших соседей (HNSW) по нормированным векторам; сходство - скалярное произведение.
+ * Векторы лежат подряд в одном float[], связи графа - в int[] по уровням, поэтому поиск не создает
+ * объектов на каждый вектор. Вставка инкрементальная; индекс сохраняется в файл и загружается
+ * через отображение файла в память, без повторного вычисления эмбеддингов.
+ */
+public class HnswIndex {
+
+    private static final int MAGIC = 0x484E5357;
+    private static final int VERSION = 1;
+    private static final int HEADER_INTS = 8;
+
+    private final int dimension;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Random random;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile int efSearch;
+
+    private float[] vectors;
+    // links[узел][уровень] - соседи узла на уровне
+    private int[][][] links;
+    private int size;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    /**
+     * @param m число связей узла на верхних уровнях (на нулевом - 2m)
+     * @param efConstruction ширина поиска соседей при вставке
+     * @param efSearch ширина поиска при запросе; больше - выше полнота, но медленнее
+     */
+    public HnswIndex(int dimension, int m, int efConstruction, int efSearch) {
+        this(dimension, m, efConstruction, efSearch, 42);
+    }
+
+    HnswIndex(int dimension, int m, int efConstruction, int efSearch, long seed) {
+        if (dimension <= 0) {
+            throw new IllegalArgumentException("Размерность векторов должна быть положительной");
+        }
+        this.dimension = dimension;
+        this.m = Math.max(2, m);
+        this.maxM0 = this.m * 2;
+        this.efConstruction = Math.max(this.m, efConstruction);
+        this.efSearch = Math.max(1, efSearch);
+        this.levelMultiplier = 1 / Math.log(this.m);
+        this.random = new Random(seed);
+        this.vectors = new float[16 * dimension];
+        this.links = new int[16][][];
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void setEfSearch(int efSearch) {
+        this.efSearch = Math.max(1, efSearch);
+    }
+
+    /**
+     * Добавить вектор; возвращает его номер в индексе (номера идут подряд с нуля)
+     */
+    public int add(float[] vector) {
+        float[] normalized = normalize(vector);
+        lock.writeLock().lock();
+        try {
+            int node = size;
+            ensureCapacity(node + 1);
+            System.arraycopy(normalized, 0, vectors, node * dimension, dimension);
+            int level = randomLevel();
+            links[node] = new int[level + 1][];
+            Arrays.fill(links[node], new int[0]);
+            size++;
+
+            if (entryPoint < 0) {
+                entryPoint = node;
+                maxLevel = level;
+                return node;
+            }
+
+            int current = entryPoint;
+            for (int l = maxLevel; l > level; l--) {
+                current = greedyClosest(normalized, current, l);
+            }
+            for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+                List<Scored> candidates = searchLayer(normalized, current, efConstruction, l);
+                int[] neighbors = selectNeighbors(candidates, l == 0 ? maxM0 : m);
+                links[node][l] = neighbors;
+                for (int neighbor : neighbors) {
+                    connect(neighbor, node, l);
+                }
+                current = candidates.get(0).id;
+            }
+            if (level > maxLevel) {
+                maxLevel = level;
+                entryPoint = node;
+            }
+            return node;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * До k приближенно ближайших векторов по убыванию сходства
+     */
+    public List<Neighbor> search(float[] query, int k) {
+        float[] normalized = normalize(query);
+        lock.readLock().lock();
+        try {
+            if (size == 0 || k <= 0) {
+                return List.of();
+            }
+            int current = entryPoint;
+            for (int l = maxLevel; l > 0; l--) {
+                current = greedyClosest(normalized, current, l);
+            }
+            List<Scored> found = searchLayer(normalized, current, Math.max(efSearch, k), 0);
+            List<Neighbor> result = new ArrayList<>(Math.min(k, found.size()));
+            for (int i = 0; i < found.size() && i < k; i++) {
+                result.add(new Neighbor(found.get(i).id, found.get(i).score));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Точный поиск полным перебором - эталон для оценки полноты
+     */
+    public List<Neighbor> exactSearch(float[] query, int k) {
+        float[] normalized = normalize(query);
+        lock.readLock().lock();
+        try {
+            PriorityQueue<Scored> best = new PriorityQueue<>(Comparator.comparingDouble(s -> s.score));
+            for (int node = 0; node < size; node++) {
+                best.add(new Scored(node, similarity(normalized, node)));
+                if (best.size() > k) {
+                    best.poll();
+                }
+            }
+            List<Neighbor> result = new ArrayList<>(best.size());
+            while (!best.isEmpty()) {
+                Scored scored = best.poll();
+                result.add(0, new Neighbor(scored.id, scored.score));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Сохранить индекс в файл (через временный файл, чтобы читатели не увидели недописанный индекс)
+     */
+    public void save(Path file) throws IOException {
+        lock.readLock().lock();
+        try {
+            long bytes = (long) HEADER_INTS * Integer.BYTES + (long) size * dimension * Float.BYTES;
+            for (int node = 0; node < size; node++) {
+                bytes += Integer.BYTES;
+                for (int[] neighbors : links[node]) {
+                    bytes += (long) (neighbors.length + 1) * Integer.BYTES;
+                }
+            }
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+                buffer.putInt(MAGIC).putInt(VERSION).putInt(dimension).putInt(m).putInt(efConstruction)
+                        .putInt(size).putInt(entryPoint).putInt(maxLevel);
+                buffer.asFloatBuffer().put(vectors, 0, size * dimension);
+                buffer.position(buffer.position() + size * dimension * Float.BYTES);
+                for (int node = 0; node < size; node++) {
+                    buffer.putInt(links[node].length);
+                    for (int[] neighbors : links[node]) {
+                        buffer.putInt(neighbors.length);
+                        buffer.asIntBuffer().put(neighbors);
+                        buffer.position(buffer.position() + neighbors.length * Integer.BYTES);
+                    }
+                }
+                buffer.force();
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Загрузить индекс, сохраненный save(); после загрузки в него можно добавлять векторы.
+     * Поврежденный или обрезанный файл отклоняется IOException, а не ошибкой при разборе или поиске
+     */
+    public static HnswIndex load(Path file, int efSearch) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < HEADER_INTS * Integer.BYTES || buffer.getInt() != MAGIC) {
+                throw new IOException("Файл не является HNSW индексом: " + file);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Неподдерживаемая версия HNSW индекса: " + version);
+            }
+            int dimension = buffer.getInt();
+            int m = buffer.getInt();
+            int efConstruction = buffer.getInt();
+            int size = buffer.getInt();
+            int entryPoint = buffer.getInt();
+            int maxLevel = buffer.getInt();
+            if (dimension <= 0 || size < 0 || (long) size * dimension * Float.BYTES > buffer.remaining()) {
+                throw corrupt(file, "размерность " + dimension + " и число векторов " + size + " не сходятся с размером файла");
+            }
+            boolean empty = size == 0 && entryPoint == -1 && maxLevel == -1;
+            if (!empty && (entryPoint < 0 || entryPoint >= size || maxLevel < 0)) {
+                throw corrupt(file, "точка входа " + entryPoint + " или уровень " + maxLevel + " вне индекса");
+            }
+            HnswIndex index = new HnswIndex(dimension, m, efConstruction, efSearch);
+            index.entryPoint = entryPoint;
+            index.maxLevel = maxLevel;
+            index.ensureCapacity(size);
+            index.size = size;
+            buffer.asFloatBuffer().get(index.vectors, 0, size * dimension);
+            buffer.position(buffer.position() + size * dimension * Float.BYTES);
+            for (int node = 0; node < size; node++) {
+                int levelCount = readCount(buffer, file, maxLevel + 1);
+                if (levelCount == 0 || node == entryPoint && levelCount != maxLevel + 1) {
+                    throw corrupt(file, "у узла " + node + " " + levelCount + " уровней");
+                }
+                int[][] levels = new int[levelCount][];
+                for (int l = 0; l < levels.length; l++) {
+                    levels[l] = new int[readCount(buffer, file, buffer.remaining() / Integer.BYTES)];
+                    buffer.asIntBuffer().get(levels[l]);
+                    buffer.position(buffer.position() + levels[l].length * Integer.BYTES);
+                    for (int neighbor : levels[l]) {
+                        if (neighbor < 0 || neighbor >= size) {
+                            throw corrupt(file, "связь узла " + node + " указывает на " + neighbor);
+                        }
+                    }
+                }
+                index.links[node] = levels;
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Счетчик из файла: не отрицательный, не больше max и не за концом файла
+     */
+    private static int readCount(MappedByteBuffer buffer, Path file, int max) throws IOException {
+        if (buffer.remaining() < Integer.BYTES) {
+            throw corrupt(file, "файл обрезан");
+        }
+        int count = buffer.getInt();
+        if (count < 0 || count > max) {
+            throw corrupt(file, "недопустимое число " + count);
+        }
+        return count;
+    }
+
+    private static IOException corrupt(Path file, String reason) {
+        return new IOException("HNSW индекс " + file + " поврежден: " + reason);
+    }
+
+    private int greedyClosest(float[] query, int start, int level) {
+        int current = start;
+        float best = similarity(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int neighbor : neighbors(current, level)) {
+                float score = similarity(query, neighbor);
+                if (score > best) {
+                    best = score;
+                    current = neighbor;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Поиск ef ближайших на одном уровне графа; результат отсортирован по убыванию сходства
+     */
+    private List<Scored> searchLayer(float[] query, int entry, int ef, int level) {
+        BitSet visited = new BitSet(size);
+        PriorityQueue<Scored> candidates = new PriorityQueue<>(Comparator.comparingDouble((Scored s) -> s.score).reversed());
+        PriorityQueue<Scored> results = new PriorityQueue<>(Comparator.comparingDouble(s -> s.score));
+        Scored first = new Scored(entry, similarity(query, entry));
+        visited.set(entry);
+        candidates.add(first);
+        results.add(first);
+
+        while (!candidates.isEmpty()) {
+            Scored candidate = candidates.poll();
+            if (results.size() >= ef && candidate.score < results.peek().score) {
+                break;
+            }
+            for (int neighbor : neighbors(candidate.id, level)) {
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                float score = similarity(query, neighbor);
+                if (results.size() < ef || score > results.peek().score) {
+                    Scored scored = new Scored(neighbor, score);
+                    candidates.add(scored);
+                    results.add(scored);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+        List<Scored> sorted = new ArrayList<>(results);
+        sorted.sort(Comparator.comparingDouble((Scored s) -> s.score).reversed());
+        return sorted;
+    }
+
+    /**
+     * Эвристика выбора соседей из статьи HNSW: кандидат берется, если он ближе к новому узлу,
+     * чем к уже выбранным соседям; так связи покрывают разные направления, а не один кластер
+     */
+    private int[] selectNeighbors(List<Scored> candidates, int limit) {
+        List<Scored> selected = new ArrayList<>(limit);
+        List<Scored> skipped = new ArrayList<>();
+        for (Scored candidate : candidates) {
+            if (selected.size() >= limit) {
+                break;
+            }
+            boolean diverse = true;
+            for (Scored chosen : selected) {
+                if (similarity(candidate.id, chosen.id) > candidate.score) {
+                    diverse = false;
+                    break;
+                }
+            }
+            (diverse ? selected : skipped).add(candidate);
+        }
+        for (int i = 0; i < skipped.size() && selected.size() < limit; i++) {
+            selected.add(skipped.get(i));
+        }
+        int[] ids = new int[selected.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = selected.get(i).id;
+        }
+        return ids;
+    }
+
+    private void connect(int node, int neighbor, int level) {
+        int[] current = links[node][level];
+        int[] extended = Arrays.copyOf(current, current.length + 1);
+        extended[current.length] = neighbor;
+        int limit = level == 0 ? maxM0 : m;
+        if (extended.length <= limit) {
+            links[node][level] = extended;
+            return;
+        }
+        // Связей больше лимита - оставляем лучших соседей по той же эвристике
+        List<Scored> candidates = new ArrayList<>(extended.length);
+        for (int id : extended) {
+            candidates.add(new Scored(id, similarity(node, id)));
+        }
+        candidates.sort(Comparator.comparingDouble((Scored s) -> s.score).reversed());
+        links[node][level] = selectNeighbors(candidates, limit);
+    }
+
+    private int[] neighbors(int node, int level) {
+        int[][] levels = links[node];
+        return level < levels.length ? levels[level] : new int[0];
+    }
+
+    private int randomLevel() {
+        return (int) Math.floor(-Math.log(1 - random.nextDouble()) * levelMultiplier);
+    }
+
+    private void ensureCapacity(int nodes) {
+        if (links.length < nodes) {
+            int capacity = Math.max(nodes, links.length * 2);
+            links = Arrays.copyOf(links, capacity);
+            vectors = Arrays.copyOf(vectors, capacity * dimension);
+        }
+    }
+
+    private float similarity(float[] query, int node) {
+        float sum = 0;
+        int offset = node * dimension;
+        for (int d = 0; d < dimension; d++) {
+            sum += query[d] * vectors[offset + d];
+        }
+        return sum;
+    }
+
+    private float similarity(int a, int b) {
+        float sum = 0;
+        int offsetA = a * dimension;
+        int offsetB = b * dimension;
+        for (int d = 0; d < dimension; d++) {
+            sum += vectors[offsetA + d] * vectors[offsetB + d];
+        }
+        return sum;
+    }
+
+    private float[] normalize(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Ожидается вектор размерности " + dimension + ", получен " + vector.length);
+        }
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        float[] result = vector.clone();
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < result.length; i++) {
+                result[i] *= scale;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Найденный вектор: номер в индексе и косинусное сходство с запросом
+     */
+    public static final class Neighbor {
+
+        private final int id;
+        private final float score;
+
+        private Neighbor(int id, float score) {
+            this.id = id;
+            this.score = score;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public float getScore() {
+            return score;
+        }
+    }
+
+    private static final class Scored {
+
+        private final int id;
+        private final float score;
+
+        private Scored(int id, float score) {
+            this.id = id;
+            this.score = score;
+        }
+    }
+}
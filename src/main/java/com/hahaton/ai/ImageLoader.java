@@ -0,0 +1,422 @@
+package com.hahaton.ai;
+
+import ai.djl.modality.cv.Image;
+import ai.djl.modality.cv.ImageFactory;
+import com.hahaton.config.DJLConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Загрузка изображений для DJL моделей.
+ * URL скачивается потоково с таймаутами и ограничением размера, размеры в пикселях проверяются
+ * по заголовку до декодирования, большие изображения уменьшаются. Декодированные изображения
+ * кэшируются (LRU) по SHA-256 содержимого, поэтому повторная картинка не декодируется заново,
+ * даже если пришла по другому URL или загрузкой файла. Для http(s) дополнительно помнится,
+ * какое содержимое недавно пришло по URL (LRU с TTL djl.image-url-cache-ttl-seconds),
+ * и повторный URL отдается из кэша без загрузки.
+ */
+@Component
+public class ImageLoader {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final DJLConfig djlConfig;
+    private final HttpClient httpClient;
+    private final ScheduledExecutorService deadlines = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "image-download-deadline");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final LinkedHashMap<String, Image> decoded = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, UrlContent> urls = new LinkedHashMap<>(16, 0.75f, true);
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+    private final Timer downloadLatency;
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public ImageLoader(DJLConfig djlConfig, MeterRegistry meterRegistry) {
+        this.djlConfig = djlConfig;
+        this.meterRegistry = meterRegistry;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(Math.max(1, djlConfig.getImageConnectTimeoutMs())))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        this.cacheHits = Counter.builder("djl.image.cache").tag("result", "hit")
+                .description("Обращения к кэшу декодированных изображений").register(meterRegistry);
+        this.cacheMisses = Counter.builder("djl.image.cache").tag("result", "miss")
+                .description("Обращения к кэшу декодированных изображений").register(meterRegistry);
+        this.downloadLatency = Timer.builder("djl.image.download")
+                .description("Время загрузки изображения по URL")
+                .register(meterRegistry);
+        Gauge.builder("djl.image.cache.size", this, ImageLoader::cacheSize)
+                .description("Декодированные изображения в кэше")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Изображение по http(s):// URL или file:// из каталога djl.image-file-root
+     */
+    public Image load(String source) {
+        URI uri;
+        try {
+            uri = URI.create(source.strip());
+        } catch (IllegalArgumentException e) {
+            throw reject("invalid_source", "Некорректный адрес изображения");
+        }
+        String scheme = uri.getScheme() == null ? "" : uri.getScheme().toLowerCase(Locale.ROOT);
+        switch (scheme) {
+            case "http":
+            case "https":
+                Image cached = cachedByUrl(uri);
+                if (cached != null) {
+                    return cached;
+                }
+                byte[] content = download(uri);
+                String key = sha256(content);
+                Image image = decode(key, content);
+                rememberUrl(uri, key);
+                return image;
+            case "file":
+                return decode(readFile(uri));
+            default:
+                throw reject("invalid_source", "Поддерживаются только http(s):// и file:// адреса изображений");
+        }
+    }
+
+    /**
+     * Изображение из загруженного файла (multipart)
+     */
+    public Image load(byte[] content) {
+        if (content == null || content.length == 0) {
+            throw reject("empty", "Файл изображения пуст");
+        }
+        if (content.length > djlConfig.getImageMaxBytes()) {
+            throw tooLarge();
+        }
+        return decode(content);
+    }
+
+    public int cacheSize() {
+        synchronized (decoded) {
+            return decoded.size();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        deadlines.shutdownNow();
+    }
+
+    private byte[] download(URI uri) {
+        long start = System.nanoTime();
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofMillis(Math.max(1, djlConfig.getImageDownloadTimeoutMs())))
+                .GET()
+                .build();
+        HttpResponse<InputStream> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (java.net.http.HttpTimeoutException e) {
+            throw reject("timeout", "Превышено время загрузки изображения");
+        } catch (IOException e) {
+            throw reject("download_failed", "Не удалось загрузить изображение: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw reject("download_failed", "Загрузка изображения прервана");
+        }
+
+        // Дедлайн на все тело: зависшее чтение прерывается прерыванием потока и закрытием тела
+        long remaining = djlConfig.getImageDownloadTimeoutMs() - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        InputStream body = response.body();
+        Deadline deadline = new Deadline(Thread.currentThread(), body);
+        ScheduledFuture<?> timer = deadlines.schedule(deadline, Math.max(1, remaining), TimeUnit.MILLISECONDS);
+        try (body) {
+            if (response.statusCode() != 200) {
+                throw reject("download_failed", "Сервер изображения ответил статусом " + response.statusCode());
+            }
+            long declared = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+            if (declared > djlConfig.getImageMaxBytes()) {
+                throw tooLarge();
+            }
+            return readBounded(body);
+        } catch (IOException e) {
+            if (deadline.isExpired()) {
+                throw reject("timeout", "Превышено время загрузки изображения");
+            }
+            throw reject("download_failed", "Не удалось загрузить изображение: " + e.getMessage());
+        } finally {
+            timer.cancel(false);
+            deadline.finish();
+            downloadLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Изображение, недавно загруженное по этому URL, если оно еще в кэше декодированных
+     */
+    private Image cachedByUrl(URI uri) {
+        String url = uri.toString();
+        synchronized (urls) {
+            UrlContent content = urls.get(url);
+            if (content == null) {
+                return null;
+            }
+            if (System.nanoTime() - content.expiresAt >= 0) {
+                urls.remove(url);
+                return null;
+            }
+            synchronized (decoded) {
+                Image cached = decoded.get(content.key);
+                if (cached == null) {
+                    // Изображение вытеснено из кэша: загружаем заново
+                    urls.remove(url);
+                    return null;
+                }
+                cacheHits.increment();
+                return cached;
+            }
+        }
+    }
+
+    private void rememberUrl(URI uri, String key) {
+        long ttl = TimeUnit.SECONDS.toNanos(Math.max(0, djlConfig.getImageUrlCacheTtlSeconds()));
+        if (ttl == 0) {
+            return;
+        }
+        synchronized (urls) {
+            urls.put(uri.toString(), new UrlContent(key, System.nanoTime() + ttl));
+            int limit = Math.max(1, djlConfig.getImageCacheSize());
+            Iterator<String> iterator = urls.keySet().iterator();
+            while (urls.size() > limit && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+
+    private byte[] readFile(URI uri) {
+        String root = djlConfig.getImageFileRoot();
+        if (root == null || root.isBlank()) {
+            throw reject("invalid_source", "Загрузка изображений из файлов отключена");
+        }
+        try {
+            Path allowed = Path.of(root).toRealPath();
+            Path file = Path.of(uri).toRealPath();
+            if (!file.startsWith(allowed)) {
+                throw reject("invalid_source", "Файл изображения вне разрешенного каталога");
+            }
+            if (Files.size(file) > djlConfig.getImageMaxBytes()) {
+                throw tooLarge();
+            }
+            try (InputStream in = Files.newInputStream(file)) {
+                return readBounded(in);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            throw reject("invalid_source", "Файл изображения не найден");
+        }
+    }
+
+    /**
+     * Прочитать поток, но не больше djl.image-max-bytes (Content-Length может отсутствовать или врать)
+     */
+    private byte[] readBounded(InputStream in) throws IOException {
+        long limit = djlConfig.getImageMaxBytes();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long total = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            total += read;
+            if (total > limit) {
+                throw tooLarge();
+            }
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private Image decode(byte[] content) {
+        return decode(sha256(content), content);
+    }
+
+    private Image decode(String key, byte[] content) {
+        synchronized (decoded) {
+            Image cached = decoded.get(key);
+            if (cached != null) {
+                cacheHits.increment();
+                return cached;
+            }
+        }
+        cacheMisses.increment();
+        checkPixels(content);
+
+        Image image;
+        try {
+            image = ImageFactory.getInstance().fromInputStream(new ByteArrayInputStream(content));
+        } catch (IOException e) {
+            throw reject("invalid_format", "Не удалось декодировать изображение", e);
+        }
+        int maxSide = djlConfig.getImageMaxSide();
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (maxSide > 0 && Math.max(width, height) > maxSide) {
+            double scale = (double) maxSide / Math.max(width, height);
+            image = image.resize(Math.max(1, (int) Math.round(width * scale)),
+                    Math.max(1, (int) Math.round(height * scale)), true);
+        }
+
+        synchronized (decoded) {
+            decoded.put(key, image);
+            int limit = Math.max(1, djlConfig.getImageCacheSize());
+            Iterator<String> iterator = decoded.keySet().iterator();
+            while (decoded.size() > limit && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Размеры по заголовку файла: картинка-бомба (маленький файл, огромное полотно) отклоняется до декодирования
+     */
+    private void checkPixels(byte[] content) {
+        try (ImageInputStream stream = ImageIO.createImageInputStream(new ByteArrayInputStream(content))) {
+            Iterator<ImageReader> readers = stream == null ? null : ImageIO.getImageReaders(stream);
+            if (readers == null || !readers.hasNext()) {
+                throw reject("invalid_format", "Неподдерживаемый формат изображения");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > djlConfig.getImageMaxPixels()) {
+                    throw reject("too_many_pixels", "Изображение слишком большое: " + reader.getWidth(0) + "x"
+                            + reader.getHeight(0) + " пикселей, допустимо не больше " + djlConfig.getImageMaxPixels());
+                }
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            throw reject("invalid_format", "Не удалось прочитать заголовок изображения", e);
+        }
+    }
+
+    private ImageRejectedException tooLarge() {
+        return reject("too_large", "Файл изображения больше " + djlConfig.getImageMaxBytes() / 1024 + " КБ");
+    }
+
+    private ImageRejectedException reject(String reason, String message) {
+        return reject(reason, message, null);
+    }
+
+    private ImageRejectedException reject(String reason, String message, Throwable cause) {
+        Counter.builder("djl.image.rejected")
+                .description("Изображения, отклоненные при загрузке")
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+        return new ImageRejectedException(message, cause);
+    }
+
+    /**
+     * Дедлайн чтения тела. Закрытие потока HttpClient не будит заблокированное чтение,
+     * поэтому поток-читатель прерывается; флаг прерывания снимается в finish()
+     */
+    private static final class Deadline implements Runnable {
+
+        private final Thread reader;
+        private final InputStream body;
+        private boolean finished;
+        private boolean expired;
+
+        Deadline(Thread reader, InputStream body) {
+            this.reader = reader;
+            this.body = body;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (finished) {
+                    return;
+                }
+                expired = true;
+                reader.interrupt();
+            }
+            closeQuietly(body);
+        }
+
+        synchronized boolean isExpired() {
+            return expired;
+        }
+
+        synchronized void finish() {
+            finished = true;
+            if (expired) {
+                Thread.interrupted();
+            }
+        }
+    }
+
+    /**
+     * Содержимое, пришедшее по URL: ключ кэша декодированных изображений и срок годности
+     */
+    private static final class UrlContent {
+
+        private final String key;
+        private final long expiresAt;
+
+        UrlContent(String key, long expiresAt) {
+            this.key = key;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException ignored) {
+            // Поток уже закрыт или соединение оборвано - чтение в любом случае прервется
+        }
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
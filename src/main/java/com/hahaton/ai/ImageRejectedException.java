@@ -0,0 +1,16 @@
+package com.hahaton.ai;
+
+/**
+ * Изображение отклонено ограничениями загрузки (источник, размер, формат, время).
+ * Сообщение показывается пользователю как есть.
+ */
+public class ImageRejectedException extends RuntimeException {
+
+    public ImageRejectedException(String message) {
+        super(message);
+    }
+
+    public ImageRejectedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,41 @@
+package com.hahaton.ai;
+
+/**
+ * Запись базы знаний AI помощника: текст, по которому ищется запись, и ответ пользователю
+ */
+public final class KnowledgeEntry {
+
+    private final String id;
+    private final String source;
+    private final String text;
+    private final String answer;
+
+    /**
+     * @param id устойчивый ключ записи, например sql/2/3
+     * @param source откуда запись (ai, sql, docker)
+     * @param text текст для эмбеддинга
+     * @param answer ответ, который получит пользователь
+     */
+    public KnowledgeEntry(String id, String source, String text, String answer) {
+        this.id = id;
+        this.source = source;
+        this.text = text;
+        this.answer = answer;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public String getAnswer() {
+        return answer;
+    }
+}
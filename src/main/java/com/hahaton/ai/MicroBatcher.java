@@ -0,0 +1,209 @@
+package com.hahaton.ai;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Динамический микро-батчинг: объединяет параллельные одиночные запросы в пакеты
+ * размером до maxBatchSize или до истечения maxWait и выполняет их одним вызовом обработчика.
+ * Очередь ограничена: при перегрузке запрос сразу отклоняется, а отмененные (например, по таймауту
+ * ожидания) запросы пропускаются и не тратят время модели.
+ */
+public class MicroBatcher<I, O> implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MicroBatcher.class);
+
+    /**
+     * Обработчик пакета: возвращает результаты в том же порядке, что и входы
+     */
+    @FunctionalInterface
+    public interface BatchHandler<I, O> {
+        List<O> handle(List<I> inputs) throws Exception;
+    }
+
+    private final String name;
+    private final BatchHandler<I, O> handler;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final BlockingQueue<Pending<I, O>> queue;
+    private final List<Thread> workers = new ArrayList<>();
+    private final DistributionSummary batchSizes;
+    private final Counter rejected;
+    private final Counter skipped;
+    private final Timer batchLatency;
+    private volatile boolean running = true;
+
+    /**
+     * @param queueCapacity сколько запросов может ждать формирования пакета; следующие отклоняются
+     */
+    public MicroBatcher(String name, BatchHandler<I, O> handler, int maxBatchSize, long maxWaitMillis,
+                        int workerCount, int queueCapacity, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.handler = handler;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxWaitMillis));
+        this.queue = new LinkedBlockingQueue<>(Math.max(1, queueCapacity));
+        this.rejected = Counter.builder("djl.batch.rejected")
+                .description("Запросы, отклоненные из-за заполненной очереди")
+                .tag("batcher", name)
+                .register(meterRegistry);
+        this.skipped = Counter.builder("djl.batch.skipped")
+                .description("Отмененные запросы, пропущенные при формировании пакета")
+                .tag("batcher", name)
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("djl.batch.size")
+                .description("Размер пакетов, отправленных в batchPredict")
+                .tag("batcher", name)
+                .register(meterRegistry);
+        this.batchLatency = Timer.builder("djl.batch.latency")
+                .description("Время выполнения пакета")
+                .tag("batcher", name)
+                .register(meterRegistry);
+        Gauge.builder("djl.batch.queue.size", queue, BlockingQueue::size)
+                .description("Запросы, ожидающие формирования пакета")
+                .tag("batcher", name)
+                .register(meterRegistry);
+
+        for (int i = 0; i < Math.max(1, workerCount); i++) {
+            Thread worker = new Thread(this::runWorker, name + "-batcher-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    /**
+     * Поставить вход в очередь; результат придет, когда будет выполнен пакет, в который он попал.
+     * Если очередь заполнена, future сразу завершается RejectedExecutionException.
+     * Отмена future (cancel) убирает вход из ближайшего пакета.
+     */
+    public CompletableFuture<O> submit(I input) {
+        CompletableFuture<O> future = new CompletableFuture<>();
+        if (!running) {
+            future.completeExceptionally(new IllegalStateException("Батчер " + name + " остановлен"));
+            return future;
+        }
+        if (!queue.offer(new Pending<>(input, future))) {
+            rejected.increment();
+            future.completeExceptionally(new RejectedExecutionException(
+                    "Очередь " + name + " заполнена, повторите попытку позже"));
+        }
+        return future;
+    }
+
+    /**
+     * Метрики пакетов для диагностических ответов API
+     */
+    public Map<String, Object> getStats() {
+        return Map.of(
+            "max_batch_size", maxBatchSize,
+            "max_wait_ms", TimeUnit.NANOSECONDS.toMillis(maxWaitNanos),
+            "batches", batchSizes.count(),
+            "avg_batch_size", batchSizes.mean(),
+            "max_batch_size_seen", batchSizes.max(),
+            "avg_batch_latency_ms", batchLatency.mean(TimeUnit.MILLISECONDS),
+            "queued", queue.size(),
+            "rejected", rejected.count(),
+            "skipped", skipped.count()
+        );
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+        List<Pending<I, O>> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        rest.forEach(p -> p.future.completeExceptionally(new IllegalStateException("Батчер " + name + " остановлен")));
+    }
+
+    private void runWorker() {
+        List<Pending<I, O>> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                Pending<I, O> first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null || isAbandoned(first)) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Pending<I, O> next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    if (!isAbandoned(next)) {
+                        batch.add(next);
+                    }
+                }
+                // Запросы могли отменить, пока добирался пакет
+                batch.removeIf(this::isAbandoned);
+                if (!batch.isEmpty()) {
+                    execute(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Вызывающий уже не ждет результата (отменил по таймауту) - вход не отправляется в модель
+     */
+    private boolean isAbandoned(Pending<I, O> pending) {
+        if (pending.future.isDone()) {
+            skipped.increment();
+            return true;
+        }
+        return false;
+    }
+
+    private void execute(List<Pending<I, O>> batch) {
+        List<I> inputs = new ArrayList<>(batch.size());
+        for (Pending<I, O> pending : batch) {
+            inputs.add(pending.input);
+        }
+        batchSizes.record(batch.size());
+        long start = System.nanoTime();
+        try {
+            List<O> outputs = handler.handle(inputs);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future.complete(outputs.get(i));
+            }
+        } catch (Exception e) {
+            logger.error("Ошибка при выполнении пакета {} из {} запросов: ", name, batch.size(), e);
+            batch.forEach(p -> p.future.completeExceptionally(e));
+        } finally {
+            batchLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static final class Pending<I, O> {
+
+        private final I input;
+        private final CompletableFuture<O> future;
+
+        private Pending(I input, CompletableFuture<O> future) {
+            this.input = input;
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.hahaton.ai;
+
+/**
+ * Общий бюджет повторов (token bucket).
+ * Каждый первичный вызов пополняет бюджет на ratio токена, каждый повтор тратит целый токен,
+ * поэтому при массовых сбоях повторы добавляют не больше ratio нагрузки сверх исходной,
+ * а не умножают ее на число попыток.
+ */
+public class RetryBudget {
+
+    private final double ratio;
+    private final double maxTokens;
+    private double tokens;
+
+    public RetryBudget(double ratio, double maxTokens) {
+        this.ratio = Math.max(0, ratio);
+        this.maxTokens = Math.max(1, maxTokens);
+        this.tokens = this.maxTokens;
+    }
+
+    public synchronized void recordRequest() {
+        tokens = Math.min(maxTokens, tokens + ratio);
+    }
+
+    /**
+     * Взять токен на повтор; false - бюджет исчерпан, повторять нельзя
+     */
+    public synchronized boolean tryAcquireRetry() {
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    public synchronized double getAvailableTokens() {
+        return tokens;
+    }
+}
@@ -0,0 +1,381 @@
+package com.hahaton.ai;
+
+import ai.djl.huggingface.translator.TextEmbeddingTranslatorFactory;
+import ai.djl.repository.zoo.Criteria;
+import ai.djl.training.util.ProgressBar;
+import com.hahaton.config.DJLConfig;
+import com.hahaton.dockertrainer.model.DockerTask;
+import com.hahaton.dockertrainer.service.DockerTrainerService;
+import com.hahaton.sqltrainer.model.Task;
+import com.hahaton.sqltrainer.service.SQLTrainerService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Локальный семантический поиск по базе знаний AI помощника.
+ * Записи (ответы AIAgent, истории и подсказки SQL и Docker задач) один раз переводятся в эмбеддинги
+ * моделью предложений и складываются в HNSW индекс, вопрос пользователя ищется среди них
+ * по косинусному сходству. Индекс сохраняется в djl.semantic-index-dir под отпечатком записей и модели,
+ * поэтому при неизменной базе знаний старт не пересчитывает эмбеддинги.
+ * Эмбеддинги вопросов кэшируются (LRU), поэтому повторный вопрос не обращается к модели.
+ * Режим включается djl.semantic-retrieval-enabled; пока индекс строится, поиск ничего не находит.
+ */
+@Service
+public class SemanticRetrievalService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SemanticRetrievalService.class);
+
+    static final String EMBEDDING_MODEL = "text-embedding";
+    private static final int INDEX_BATCH_SIZE = 32;
+
+    private final MicroBatcher.BatchHandler<String, float[]> embedder;
+    private final Supplier<List<KnowledgeEntry>> taskKnowledge;
+    private final DJLConfig djlConfig;
+    private final List<KnowledgeEntry> registered = new CopyOnWriteArrayList<>();
+    private final LinkedHashMap<String, float[]> queryEmbeddings = new LinkedHashMap<>(16, 0.75f, true);
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+    private final Timer searchLatency;
+    private volatile KnowledgeIndex index;
+
+    @Autowired
+    public SemanticRetrievalService(DJLModelRegistry modelRegistry, DJLConfig djlConfig,
+                                    SQLTrainerService sqlTrainerService, DockerTrainerService dockerTrainerService,
+                                    MeterRegistry meterRegistry) {
+        this(texts -> modelRegistry.batchPredict(EMBEDDING_MODEL, () -> embeddingCriteria(djlConfig), texts),
+                () -> taskKnowledge(sqlTrainerService, dockerTrainerService),
+                djlConfig, meterRegistry);
+    }
+
+    SemanticRetrievalService(MicroBatcher.BatchHandler<String, float[]> embedder,
+                             Supplier<List<KnowledgeEntry>> taskKnowledge,
+                             DJLConfig djlConfig, MeterRegistry meterRegistry) {
+        this.embedder = embedder;
+        this.taskKnowledge = taskKnowledge;
+        this.djlConfig = djlConfig;
+        this.cacheHits = Counter.builder("ai.retrieval.embedding.cache").tag("result", "hit")
+                .description("Обращения к кэшу эмбеддингов вопросов").register(meterRegistry);
+        this.cacheMisses = Counter.builder("ai.retrieval.embedding.cache").tag("result", "miss")
+                .description("Обращения к кэшу эмбеддингов вопросов").register(meterRegistry);
+        this.searchLatency = Timer.builder("ai.retrieval.latency")
+                .description("Время поиска ответа по базе знаний")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Добавить записи в базу знаний; попадут в индекс при следующем построении
+     */
+    public void register(Collection<KnowledgeEntry> entries) {
+        registered.addAll(entries);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildIndexOnStartup() {
+        // Загрузка модели и индексация не задерживают старт приложения
+        rebuildInBackground();
+    }
+
+    /**
+     * Перестроить индекс в фоне, например после перезагрузки каталога задач; без djl.semantic-retrieval-enabled ничего не делает
+     */
+    public CompletableFuture<Void> rebuildInBackground() {
+        if (!djlConfig.isSemanticRetrievalEnabled()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.runAsync(() -> {
+            try {
+                rebuild();
+            } catch (Exception e) {
+                logger.error("Не удалось построить индекс базы знаний: ", e);
+            }
+        });
+    }
+
+    /**
+     * Построить индекс по всем записям базы знаний или загрузить сохраненный, если записи не менялись
+     */
+    public synchronized void rebuild() throws Exception {
+        long start = System.currentTimeMillis();
+        List<KnowledgeEntry> entries = new ArrayList<>(registered);
+        entries.addAll(taskKnowledge.get());
+        if (entries.isEmpty()) {
+            index = null;
+            return;
+        }
+        Path file = Path.of(djlConfig.getSemanticIndexDir()).resolve("knowledge-" + fingerprint(entries) + ".hnsw");
+        HnswIndex vectors = loadSaved(file, entries.size());
+        boolean loaded = vectors != null;
+        if (!loaded) {
+            vectors = embedAll(entries);
+            try {
+                vectors.save(file);
+            } catch (IOException e) {
+                logger.warn("Не удалось сохранить индекс базы знаний в {}: {}", file, e.getMessage());
+            }
+        }
+        index = new KnowledgeIndex(vectors, entries);
+        logger.info("Индекс базы знаний {}: {} записей за {} мс", loaded ? "загружен из файла" : "построен",
+                entries.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Добавить запись в построенный индекс без перестроения; до построения индекса - то же, что register
+     */
+    public synchronized void add(KnowledgeEntry entry) throws Exception {
+        registered.add(entry);
+        KnowledgeIndex current = index;
+        if (current == null) {
+            return;
+        }
+        float[] vector = embedder.handle(List.of(entry.getText())).get(0);
+        // Запись появляется раньше вектора: найденный номер всегда указывает на существующую запись
+        current.entries.add(entry);
+        current.vectors.add(vector);
+    }
+
+    /**
+     * Лучшая запись для вопроса, если ее сходство не ниже djl.semantic-min-score
+     */
+    public Optional<Match> findBest(String question) {
+        List<Match> matches = search(question, 1);
+        if (matches.isEmpty() || !isRelevant(matches.get(0))) {
+            return Optional.empty();
+        }
+        return Optional.of(matches.get(0));
+    }
+
+    /**
+     * Достаточно ли запись похожа на вопрос, чтобы показать ее пользователю
+     */
+    public boolean isRelevant(Match match) {
+        return match.getScore() >= djlConfig.getSemanticMinScore();
+    }
+
+    /**
+     * До k ближайших записей по убыванию сходства. Пусто, если режим выключен или индекс еще строится
+     */
+    public List<Match> search(String question, int k) {
+        return search(question, k, null);
+    }
+
+    /**
+     * До k ближайших записей из указанного источника (ai, sql, docker; null - из любого)
+     */
+    public List<Match> search(String question, int k, String source) {
+        KnowledgeIndex current = index;
+        if (!djlConfig.isSemanticRetrievalEnabled() || current == null
+                || question == null || question.isBlank() || k <= 0) {
+            return List.of();
+        }
+        long start = System.nanoTime();
+        try {
+            // Для фильтра по источнику берем кандидатов с запасом
+            int limit = source == null ? k : Math.max(k * 4, 16);
+            List<Match> matches = new ArrayList<>(k);
+            for (HnswIndex.Neighbor neighbor : current.vectors.search(embedQuery(question), limit)) {
+                KnowledgeEntry entry = current.entries.get(neighbor.getId());
+                if (source == null || source.equals(entry.getSource())) {
+                    matches.add(new Match(entry, neighbor.getScore()));
+                    if (matches.size() == k) {
+                        break;
+                    }
+                }
+            }
+            return matches;
+        } catch (Exception e) {
+            logger.warn("Не удалось выполнить семантический поиск: {}", e.getMessage());
+            return List.of();
+        } finally {
+            searchLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public boolean isReady() {
+        return djlConfig.isSemanticRetrievalEnabled() && index != null;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        KnowledgeIndex current = index;
+        stats.put("enabled", djlConfig.isSemanticRetrievalEnabled());
+        stats.put("ready", current != null);
+        stats.put("entries", current != null ? current.entries.size() : 0);
+        synchronized (queryEmbeddings) {
+            stats.put("cached_queries", queryEmbeddings.size());
+        }
+        stats.put("avg_search_ms", searchLatency.mean(TimeUnit.MILLISECONDS));
+        return stats;
+    }
+
+    private float[] embedQuery(String question) throws Exception {
+        String key = GeminiResponseCache.normalize(question);
+        synchronized (queryEmbeddings) {
+            float[] cached = queryEmbeddings.get(key);
+            if (cached != null) {
+                cacheHits.increment();
+                return cached;
+            }
+        }
+        cacheMisses.increment();
+        float[] vector = embedder.handle(List.of(key)).get(0);
+        synchronized (queryEmbeddings) {
+            queryEmbeddings.put(key, vector);
+            int limit = Math.max(1, djlConfig.getEmbeddingCacheSize());
+            Iterator<String> iterator = queryEmbeddings.keySet().iterator();
+            while (queryEmbeddings.size() > limit && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+        return vector;
+    }
+
+    /**
+     * Критерии для загрузки модели эмбеддингов предложений
+     */
+    static Criteria<String, float[]> embeddingCriteria(DJLConfig djlConfig) {
+        return Criteria.builder()
+                .setTypes(String.class, float[].class)
+                .optModelUrls(djlConfig.getEmbeddingModelUrl())
+                .optEngine("PyTorch")
+                .optTranslatorFactory(new TextEmbeddingTranslatorFactory())
+                .optProgress(new ProgressBar())
+                .build();
+    }
+
+    /**
+     * Записи базы знаний из задач SQL и Docker тренажеров
+     */
+    static List<KnowledgeEntry> taskKnowledge(SQLTrainerService sqlTrainerService, DockerTrainerService dockerTrainerService) {
+        List<KnowledgeEntry> entries = new ArrayList<>();
+        for (Task task : sqlTrainerService.getCatalog().getAll()) {
+            entries.add(new KnowledgeEntry("sql/" + task.getLevel() + "/" + task.getTaskNumber(), "sql",
+                    task.getTitle() + ". " + task.getQuestion() + " " + task.getHint(),
+                    "SQL, задача «" + task.getTitle() + "» (уровень " + task.getLevel() + "): " + task.getHint()));
+        }
+        for (int level = 1; level <= dockerTrainerService.getTotalLevels(); level++) {
+            List<DockerTask> tasks = dockerTrainerService.getTasksForLevel(level);
+            for (int i = 0; i < tasks.size(); i++) {
+                DockerTask task = tasks.get(i);
+                String hints = task.getHints() != null ? String.join(" ", task.getHints()) : "";
+                entries.add(new KnowledgeEntry("docker/" + level + "/" + (i + 1), "docker",
+                        task.getTitle() + ". " + task.getDescription() + " " + hints,
+                        "Docker, задача «" + task.getTitle() + "»: " + task.getDescription()
+                                + (hints.isEmpty() ? "" : "\n\nПодсказка: " + hints)));
+            }
+        }
+        return entries;
+    }
+
+    private HnswIndex embedAll(List<KnowledgeEntry> entries) throws Exception {
+        HnswIndex vectors = null;
+        for (int from = 0; from < entries.size(); from += INDEX_BATCH_SIZE) {
+            List<String> texts = new ArrayList<>();
+            for (KnowledgeEntry entry : entries.subList(from, Math.min(entries.size(), from + INDEX_BATCH_SIZE))) {
+                texts.add(entry.getText());
+            }
+            for (float[] vector : embedder.handle(texts)) {
+                if (vectors == null) {
+                    vectors = new HnswIndex(vector.length, djlConfig.getHnswM(),
+                            djlConfig.getHnswEfConstruction(), djlConfig.getHnswEfSearch());
+                }
+                vectors.add(vector);
+            }
+        }
+        return vectors;
+    }
+
+    private HnswIndex loadSaved(Path file, int expectedSize) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            HnswIndex saved = HnswIndex.load(file, djlConfig.getHnswEfSearch());
+            return saved.size() == expectedSize ? saved : null;
+        } catch (IOException | RuntimeException e) {
+            // Поврежденный файл не должен срывать построение индекса: его заменит пересчитанный
+            logger.warn("Сохраненный индекс базы знаний {} не читается, строим заново: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Отпечаток базы знаний: меняется вместе с записями, моделью или параметрами графа
+     */
+    private String fingerprint(List<KnowledgeEntry> entries) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((djlConfig.getEmbeddingModelUrl() + "|" + djlConfig.getHnswM() + "|"
+                    + djlConfig.getHnswEfConstruction()).getBytes(StandardCharsets.UTF_8));
+            for (KnowledgeEntry entry : entries) {
+                digest.update(("\n" + entry.getId() + "\t" + entry.getText()).getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest()).substring(0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Найденная запись и ее косинусное сходство с вопросом
+     */
+    public static final class Match {
+
+        private final KnowledgeEntry entry;
+        private final float score;
+
+        private Match(KnowledgeEntry entry, float score) {
+            this.entry = entry;
+            this.score = score;
+        }
+
+        public KnowledgeEntry getEntry() {
+            return entry;
+        }
+
+        public float getScore() {
+            return score;
+        }
+    }
+
+    /**
+     * HNSW индекс и записи базы знаний; номер вектора в индексе совпадает с позицией записи
+     */
+    private static final class KnowledgeIndex {
+
+        private final HnswIndex vectors;
+        private final List<KnowledgeEntry> entries;
+
+        private KnowledgeIndex(HnswIndex vectors, List<KnowledgeEntry> entries) {
+            this.vectors = vectors;
+            this.entries = new CopyOnWriteArrayList<>(entries);
+        }
+    }
+}
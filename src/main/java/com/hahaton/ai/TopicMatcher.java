@@ -0,0 +1,193 @@
+package com.hahaton.ai;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Определение тем вопроса за один проход по тексту (автомат Ахо-Корасик).
+ * Ключевое слово засчитывается только как целое слово; слово со '*' на конце - основа,
+ * к которой допускается любое окончание ("докер*" - "докере", "докером").
+ * Тема набирает очки по суммарной длине найденных слов, поэтому "javascript" не засчитывается
+ * как "java", а "база данных" (sql) перевешивает "база" (database). При равенстве очков
+ * выигрывает тема, объявленная раньше.
+ */
+public class TopicMatcher {
+
+    private static final int ROOT = 0;
+
+    private final String[] topics;
+    // Переходы узла: отсортированные символы и узлы, в которые они ведут
+    private final char[][] labels;
+    private final int[][] targets;
+    private final int[] fail;
+    // Ключевые слова, которые заканчиваются в узле, с учетом суффиксов по fail-ссылкам
+    private final int[][] outputs;
+    private final int[] keywordTopic;
+    private final int[] keywordLength;
+    private final boolean[] keywordStem;
+
+    /**
+     * @param keywordsByTopic ключевые слова тем в порядке приоритета тем
+     */
+    public TopicMatcher(Map<String, ? extends Collection<String>> keywordsByTopic) {
+        topics = keywordsByTopic.keySet().toArray(new String[0]);
+
+        List<TreeMap<Character, Integer>> children = new ArrayList<>();
+        List<List<Integer>> ends = new ArrayList<>();
+        List<int[]> keywords = new ArrayList<>();
+        children.add(new TreeMap<>());
+        ends.add(new ArrayList<>());
+
+        for (int topic = 0; topic < topics.length; topic++) {
+            for (String raw : keywordsByTopic.get(topics[topic])) {
+                String keyword = raw.toLowerCase(Locale.ROOT).strip();
+                boolean stem = keyword.endsWith("*");
+                if (stem) {
+                    keyword = keyword.substring(0, keyword.length() - 1);
+                }
+                if (keyword.isEmpty()) {
+                    continue;
+                }
+                int node = ROOT;
+                for (int i = 0; i < keyword.length(); i++) {
+                    Integer next = children.get(node).get(keyword.charAt(i));
+                    if (next == null) {
+                        next = children.size();
+                        children.add(new TreeMap<>());
+                        ends.add(new ArrayList<>());
+                        children.get(node).put(keyword.charAt(i), next);
+                    }
+                    node = next;
+                }
+                ends.get(node).add(keywords.size());
+                keywords.add(new int[]{topic, keyword.length(), stem ? 1 : 0});
+            }
+        }
+
+        int size = children.size();
+        labels = new char[size][];
+        targets = new int[size][];
+        fail = new int[size];
+        outputs = new int[size][];
+        for (int node = 0; node < size; node++) {
+            TreeMap<Character, Integer> edges = children.get(node);
+            labels[node] = new char[edges.size()];
+            targets[node] = new int[edges.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> edge : edges.entrySet()) {
+                labels[node][i] = edge.getKey();
+                targets[node][i] = edge.getValue();
+                i++;
+            }
+        }
+
+        // Fail-ссылки строятся обходом в ширину: у узла на глубине d ссылка ведет на меньшую глубину
+        Deque<Integer> queue = new ArrayDeque<>();
+        outputs[ROOT] = new int[0];
+        for (int child : targets[ROOT]) {
+            fail[child] = ROOT;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            List<Integer> own = ends.get(node);
+            int[] inherited = outputs[fail[node]];
+            int[] merged = new int[own.size() + inherited.length];
+            for (int i = 0; i < own.size(); i++) {
+                merged[i] = own.get(i);
+            }
+            System.arraycopy(inherited, 0, merged, own.size(), inherited.length);
+            outputs[node] = merged;
+
+            for (int i = 0; i < labels[node].length; i++) {
+                int child = targets[node][i];
+                fail[child] = node == ROOT ? ROOT : next(fail[node], labels[node][i]);
+                queue.add(child);
+            }
+        }
+
+        keywordTopic = new int[keywords.size()];
+        keywordLength = new int[keywords.size()];
+        keywordStem = new boolean[keywords.size()];
+        for (int i = 0; i < keywords.size(); i++) {
+            keywordTopic[i] = keywords.get(i)[0];
+            keywordLength[i] = keywords.get(i)[1];
+            keywordStem[i] = keywords.get(i)[2] == 1;
+        }
+    }
+
+    /**
+     * Темы, найденные в тексте, от самой весомой к наименее весомой
+     */
+    public List<String> match(String text) {
+        int[] scores = score(text);
+        List<Integer> found = new ArrayList<>();
+        for (int topic = 0; topic < scores.length; topic++) {
+            if (scores[topic] > 0) {
+                found.add(topic);
+            }
+        }
+        found.sort((a, b) -> scores[a] != scores[b] ? Integer.compare(scores[b], scores[a]) : Integer.compare(a, b));
+        List<String> result = new ArrayList<>(found.size());
+        for (int topic : found) {
+            result.add(topics[topic]);
+        }
+        return result;
+    }
+
+    /**
+     * Самая весомая тема текста или null, если ни одна тема не найдена
+     */
+    public String bestMatch(String text) {
+        int[] scores = score(text);
+        int best = -1;
+        for (int topic = 0; topic < scores.length; topic++) {
+            if (scores[topic] > 0 && (best < 0 || scores[topic] > scores[best])) {
+                best = topic;
+            }
+        }
+        return best < 0 ? null : topics[best];
+    }
+
+    private int[] score(String text) {
+        int[] scores = new int[topics.length];
+        if (text == null) {
+            return scores;
+        }
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            state = next(state, Character.toLowerCase(text.charAt(i)));
+            for (int keyword : outputs[state]) {
+                int start = i - keywordLength[keyword] + 1;
+                if (isBoundary(text, start - 1) && (keywordStem[keyword] || isBoundary(text, i + 1))) {
+                    scores[keywordTopic[keyword]] += keywordLength[keyword];
+                }
+            }
+        }
+        return scores;
+    }
+
+    private int next(int state, char c) {
+        while (true) {
+            int index = Arrays.binarySearch(labels[state], c);
+            if (index >= 0) {
+                return targets[state][index];
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = fail[state];
+        }
+    }
+
+    private static boolean isBoundary(String text, int index) {
+        return index < 0 || index >= text.length() || !Character.isLetterOrDigit(text.charAt(index));
+    }
+}
@@ -0,0 +1,209 @@
+package com.hahaton.catalog;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hahaton.config.CatalogConfig;
+import com.hahaton.dockertrainer.model.DockerTask;
+import com.hahaton.sqltrainer.model.Progress;
+import com.hahaton.sqltrainer.model.Task;
+import com.hahaton.sqltrainer.service.StreamingResultComparator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Загрузка каталогов задач SQL и Docker тренажеров из JSON файлов.
+ * Файл берется из catalog.dir, если он там есть, иначе - из ресурсов приложения (catalog/*.json).
+ * Оба каталога разбираются параллельно при создании бина; сервисы получают готовый результат.
+ * Формат файла: {"version": 1, "tasks": [...]}, неизвестные поля и незаполненные обязательные
+ * поля - ошибка, поэтому опечатка в файле не попадет в работающий каталог.
+ */
+@Component
+public class TaskCatalogLoader {
+
+    private static final Logger logger = LoggerFactory.getLogger(TaskCatalogLoader.class);
+
+    public static final String SQL_CATALOG = "sql-tasks.json";
+    public static final String DOCKER_CATALOG = "docker-tasks.json";
+    static final int FORMAT_VERSION = 1;
+
+    private final CatalogConfig config;
+    private final ObjectMapper objectMapper;
+    private final CompletableFuture<List<Task>> initialSqlTasks;
+    private final CompletableFuture<List<DockerTask>> initialDockerTasks;
+
+    @Autowired
+    public TaskCatalogLoader(CatalogConfig config, ObjectMapper objectMapper) {
+        this.config = config;
+        this.objectMapper = objectMapper;
+        this.initialSqlTasks = CompletableFuture.supplyAsync(() -> unchecked(this::readSqlTasks));
+        this.initialDockerTasks = CompletableFuture.supplyAsync(() -> unchecked(this::readDockerTasks));
+    }
+
+    /**
+     * Каталог SQL задач, прочитанный при старте
+     */
+    public List<Task> getInitialSqlTasks() {
+        return join(initialSqlTasks);
+    }
+
+    /**
+     * Каталог Docker задач, прочитанный при старте
+     */
+    public List<DockerTask> getInitialDockerTasks() {
+        return join(initialDockerTasks);
+    }
+
+    /**
+     * Прочитать каталог SQL задач заново
+     *
+     * @throws IllegalArgumentException если каталог не прошел проверку
+     */
+    public List<Task> readSqlTasks() throws IOException {
+        try (InputStream in = open(SQL_CATALOG)) {
+            return parseSqlTasks(in, objectMapper);
+        }
+    }
+
+    /**
+     * Прочитать каталог Docker задач заново
+     *
+     * @throws IllegalArgumentException если каталог не прошел проверку
+     */
+    public List<DockerTask> readDockerTasks() throws IOException {
+        try (InputStream in = open(DOCKER_CATALOG)) {
+            return parseDockerTasks(in, objectMapper);
+        }
+    }
+
+    /**
+     * Внешний каталог с файлами или null, если задан только каталог из ресурсов
+     */
+    public Path getDirectory() {
+        return config.getDir() == null || config.getDir().isBlank() ? null : Path.of(config.getDir());
+    }
+
+    /**
+     * Docker задачи из ресурсов приложения (без внешнего каталога)
+     */
+    public static List<DockerTask> bundledDockerTasks() {
+        try (InputStream in = bundled(DOCKER_CATALOG)) {
+            return parseDockerTasks(in, new ObjectMapper());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static List<Task> parseSqlTasks(InputStream in, ObjectMapper objectMapper) throws IOException {
+        List<Task> tasks = parse(in, objectMapper, new TypeReference<List<Task>>() { });
+        for (Task task : tasks) {
+            require(task.getLevel() != null && task.getLevel() >= 1
+                    && task.getTaskNumber() != null && task.getTaskNumber() >= 1,
+                    "у задачи \"" + task.getTitle() + "\" не задан уровень или номер");
+            String key = task.getLevel() + "-" + task.getTaskNumber();
+            // Прогресс хранится битовой маской: задачу вне ее решить можно, а засчитать нельзя
+            require(Progress.bit(task.getLevel(), task.getTaskNumber()) >= 0,
+                    "задача " + key + " вне " + Progress.LEVELS + " уровней по " + Progress.TASKS_PER_LEVEL + " задач");
+            require(notBlank(task.getTitle()) && notBlank(task.getQuestion()) && notBlank(task.getSolution()),
+                    "у задачи " + key + " нет названия, вопроса или решения");
+            // id и необходимость порядка строк выводятся из уровня, номера и решения
+            task.setId((long) (task.getLevel() * 100 + task.getTaskNumber()));
+            task.setOrderSensitive(StreamingResultComparator.requiresOrdering(task.getSolution()));
+        }
+        return tasks;
+    }
+
+    static List<DockerTask> parseDockerTasks(InputStream in, ObjectMapper objectMapper) throws IOException {
+        List<DockerTask> tasks = parse(in, objectMapper, new TypeReference<List<DockerTask>>() { });
+        Set<Long> ids = new HashSet<>();
+        for (DockerTask task : tasks) {
+            require(task.getId() != null && ids.add(task.getId()),
+                    "у задачи \"" + task.getTitle() + "\" не задан или повторяется id");
+            require(task.getLevel() != null && task.getLevel() >= 1, "у задачи " + task.getId() + " не задан уровень");
+            require(notBlank(task.getCorrectCommand()), "у задачи " + task.getId() + " нет правильной команды");
+            require(task.getHints() != null && task.getHints().length > 0, "у задачи " + task.getId() + " нет подсказок");
+            if (task.getAlternativeCommands() == null) {
+                task.setAlternativeCommands(new String[0]);
+            }
+        }
+        return tasks;
+    }
+
+    private static <T> List<T> parse(InputStream in, ObjectMapper objectMapper, TypeReference<List<T>> type)
+            throws IOException {
+        JsonNode root = objectMapper.readTree(in);
+        require(root != null && root.path("version").asInt() == FORMAT_VERSION,
+                "неподдерживаемая версия формата, ожидается " + FORMAT_VERSION);
+        require(root.path("tasks").isArray(), "нет списка tasks");
+        List<T> tasks = objectMapper.readerFor(type)
+                .with(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .readValue(root.get("tasks"));
+        require(!tasks.isEmpty(), "каталог пустой");
+        return tasks;
+    }
+
+    private InputStream open(String name) throws IOException {
+        Path directory = getDirectory();
+        if (directory != null && Files.isRegularFile(directory.resolve(name))) {
+            logger.debug("Каталог {} читается из {}", name, directory);
+            return Files.newInputStream(directory.resolve(name));
+        }
+        return bundled(name);
+    }
+
+    private static InputStream bundled(String name) throws IOException {
+        InputStream in = TaskCatalogLoader.class.getResourceAsStream("/catalog/" + name);
+        if (in == null) {
+            throw new IOException("Не найден ресурс catalog/" + name);
+        }
+        return in;
+    }
+
+    private static void require(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalArgumentException("Некорректный каталог задач: " + message);
+        }
+    }
+
+    private static boolean notBlank(String value) {
+        return value != null && !value.isBlank();
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static <T> T unchecked(IOSupplier<T> supplier) {
+        try {
+            return supplier.get();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface IOSupplier<T> {
+        T get() throws IOException;
+    }
+}
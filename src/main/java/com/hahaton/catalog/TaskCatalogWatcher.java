@@ -0,0 +1,151 @@
+package com.hahaton.catalog;
+
+import com.hahaton.ai.SemanticRetrievalService;
+import com.hahaton.config.CatalogConfig;
+import com.hahaton.dockertrainer.service.DockerTrainerService;
+import com.hahaton.sqltrainer.service.SQLTrainerService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Горячая перезагрузка каталогов задач из catalog.dir.
+ * Фоновый поток ждет изменений файлов через WatchService, выжидает catalog.reload-debounce-ms
+ * (редакторы пишут файл в несколько приемов), читает и проверяет новый каталог и только после
+ * этого подменяет его в сервисе. Некорректный файл не применяется: остается прежний каталог.
+ * После замены индекс базы знаний AI помощника, построенный по задачам, перестраивается в фоне.
+ */
+@Component
+public class TaskCatalogWatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(TaskCatalogWatcher.class);
+
+    private final CatalogConfig config;
+    private final TaskCatalogLoader taskLoader;
+    private final SQLTrainerService sqlTrainerService;
+    private final DockerTrainerService dockerTrainerService;
+    private final SemanticRetrievalService semanticRetrieval;
+    private final MeterRegistry meterRegistry;
+    private volatile WatchService watchService;
+
+    public TaskCatalogWatcher(CatalogConfig config, TaskCatalogLoader taskLoader, SQLTrainerService sqlTrainerService,
+                              DockerTrainerService dockerTrainerService, SemanticRetrievalService semanticRetrieval,
+                              MeterRegistry meterRegistry) {
+        this.config = config;
+        this.taskLoader = taskLoader;
+        this.sqlTrainerService = sqlTrainerService;
+        this.dockerTrainerService = dockerTrainerService;
+        this.semanticRetrieval = semanticRetrieval;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void start() {
+        Path directory = taskLoader.getDirectory();
+        if (directory == null || !config.isWatch()) {
+            return;
+        }
+        try {
+            WatchService service = FileSystems.getDefault().newWatchService();
+            directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            watchService = service;
+        } catch (IOException e) {
+            logger.warn("Не удалось следить за каталогом задач {}: {}", directory, e.getMessage());
+            return;
+        }
+        Thread thread = new Thread(this::watch, "catalog-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("Каталоги задач перезагружаются при изменении файлов в {}", directory);
+    }
+
+    @PreDestroy
+    void stop() throws IOException {
+        WatchService service = watchService;
+        if (service != null) {
+            service.close();
+        }
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                Set<String> changed = new LinkedHashSet<>();
+                WatchKey key = watchService.take();
+                collect(key, changed);
+                // Дожидаемся, пока файл допишут, и собираем события, пришедшие за это время
+                Thread.sleep(Math.max(0, config.getReloadDebounceMs()));
+                while ((key = watchService.poll()) != null) {
+                    collect(key, changed);
+                }
+                changed.forEach(this::reload);
+            }
+        } catch (ClosedWatchServiceException e) {
+            // Приложение останавливается
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void collect(WatchKey key, Set<String> changed) {
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.context() instanceof Path path) {
+                String name = path.getFileName().toString();
+                if (name.equals(TaskCatalogLoader.SQL_CATALOG) || name.equals(TaskCatalogLoader.DOCKER_CATALOG)) {
+                    changed.add(name);
+                }
+            }
+        }
+        key.reset();
+    }
+
+    /**
+     * Перечитать каталог по имени файла
+     *
+     * @return true, если новый каталог применен
+     */
+    boolean reload(String name) {
+        boolean sql = name.equals(TaskCatalogLoader.SQL_CATALOG);
+        try {
+            if (sql) {
+                List<String> changed = sqlTrainerService.replaceTasks(taskLoader.readSqlTasks());
+                logger.info("Каталог SQL задач перезагружен, изменено задач: {}", changed.size());
+            } else {
+                dockerTrainerService.replaceTasks(taskLoader.readDockerTasks());
+                logger.info("Каталог Docker задач перезагружен");
+            }
+            count(sql, "success");
+            semanticRetrieval.rebuildInBackground();
+            return true;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Каталог {} не применен, остается прежний: {}", name, e.getMessage());
+            count(sql, "failure");
+            return false;
+        }
+    }
+
+    private void count(boolean sql, String result) {
+        Counter.builder("catalog.reload")
+                .tag("catalog", sql ? "sql" : "docker")
+                .tag("result", result)
+                .description("Перезагрузки каталогов задач")
+                .register(meterRegistry)
+                .increment();
+    }
+}
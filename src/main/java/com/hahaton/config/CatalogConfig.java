@@ -0,0 +1,15 @@
+package com.hahaton.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import lombok.Data;
+
+@Configuration
+@ConfigurationProperties(prefix = "catalog")
+@Data
+public class CatalogConfig {
+    
+    private String dir = ""; // Каталог с sql-tasks.json и docker-tasks.json; пусто - только файлы из ресурсов
+    private boolean watch = true;
+    private long reloadDebounceMs = 300;
+}
@@ -5,6 +5,9 @@ import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Setter
 @Getter
 @Configuration
@@ -40,4 +43,135 @@ public class DJLConfig {
      * Размер батча по умолчанию
      */
     private int defaultBatchSize = 1;
+    
+    /**
+     * Максимальное ожидание добора пакета в миллисекундах
+     */
+    private long batchMaxWaitMs = 10;
+    
+    /**
+     * Сколько одиночных запросов может ждать формирования пакета; следующие отклоняются сразу
+     */
+    private int batchQueueCapacity = 256;
+    
+    /**
+     * Количество предикторов в пуле на одну загруженную модель
+     */
+    private int predictorPoolSize = Runtime.getRuntime().availableProcessors();
+    
+    /**
+     * Таймаут ожидания свободного предиктора в секундах
+     */
+    private int predictorAcquireTimeout = 30;
+    
+    /**
+     * Локальный семантический поиск ответов AI помощника по базе знаний
+     */
+    private boolean semanticRetrievalEnabled = false;
+    
+    /**
+     * Модель эмбеддингов предложений (должна понимать русский текст)
+     */
+    private String embeddingModelUrl = "djl://ai.djl.huggingface.pytorch/sentence-transformers/paraphrase-multilingual-MiniLM-L12-v2";
+    
+    /**
+     * Размер LRU кэша эмбеддингов вопросов
+     */
+    private int embeddingCacheSize = 1000;
+    
+    /**
+     * Минимальное косинусное сходство, при котором найденный ответ считается подходящим
+     */
+    private double semanticMinScore = 0.55;
+    
+    /**
+     * Каталог сохраненных индексов базы знаний
+     */
+    private String semanticIndexDir = ".djl/index";
+    
+    /**
+     * Число связей узла HNSW индекса
+     */
+    private int hnswM = 16;
+    
+    /**
+     * Ширина поиска соседей при вставке в HNSW индекс
+     */
+    private int hnswEfConstruction = 200;
+    
+    /**
+     * Ширина поиска в HNSW индексе при запросе
+     */
+    private int hnswEfSearch = 64;
+    
+    /**
+     * Таймаут соединения при загрузке изображения по URL в миллисекундах
+     */
+    private long imageConnectTimeoutMs = 5000;
+    
+    /**
+     * Дедлайн на загрузку изображения целиком в миллисекундах
+     */
+    private long imageDownloadTimeoutMs = 15000;
+    
+    /**
+     * Максимальный размер файла изображения в байтах
+     */
+    private long imageMaxBytes = 10 * 1024 * 1024;
+    
+    /**
+     * Максимальное число пикселей (проверяется по заголовку до декодирования)
+     */
+    private long imageMaxPixels = 25_000_000;
+    
+    /**
+     * Изображения больше этой стороны уменьшаются перед кэшированием
+     */
+    private int imageMaxSide = 1024;
+    
+    /**
+     * Размер LRU кэша декодированных изображений
+     */
+    private int imageCacheSize = 64;
+    
+    /**
+     * Сколько секунд URL считается указывающим на то же содержимое: в пределах срока
+     * изображение из кэша отдается без повторной загрузки
+     */
+    private long imageUrlCacheTtlSeconds = 300;
+    
+    /**
+     * Каталог, из которого разрешены file:// источники; пусто - file:// запрещен
+     */
+    private String imageFileRoot = "";
+    
+    /**
+     * Модели реестра, которые загружаются и прогреваются при старте (resnet50-imagenet, resnet50-coco)
+     */
+    private List<String> preloadModels = new ArrayList<>();
+    
+    /**
+     * Число прогревочных предсказаний на синтетическом изображении для каждой модели
+     */
+    private int warmupIterations = 3;
+    
+    /**
+     * Не обращаться в сеть за моделями: они берутся только из djl.model-cache-dir
+     */
+    private boolean offline = false;
+    
+    /**
+     * Максимальное число изображений в одном запросе /classify/batch и /detect/batch
+     */
+    private int batchMaxImages = 32;
+    
+    /**
+     * Размер пакета batchPredict при пакетной обработке изображений
+     */
+    private int batchChunkSize = 8;
+    
+    /**
+     * Потоки параллельной загрузки и декодирования изображений пакетного запроса
+     */
+    private int imageDecodeThreads = 4;
 }
@@ -0,0 +1,33 @@
+package com.hahaton.config;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+
+import java.nio.file.Path;
+
+/**
+ * Передача настроек djl.* в системные свойства DJL до создания бинов.
+ * DJL читает каталог моделей (DJL_CACHE_DIR) и офлайн-режим (ai.djl.offline) из системных свойств
+ * при первом обращении, поэтому они задаются один раз при старте приложения, а не из бинов.
+ * Явно заданные -DDJL_CACHE_DIR / -Dai.djl.offline имеют приоритет.
+ */
+public class DJLEnvironmentPostProcessor implements EnvironmentPostProcessor {
+
+    static final String CACHE_DIR_PROPERTY = "DJL_CACHE_DIR";
+    static final String OFFLINE_PROPERTY = "ai.djl.offline";
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        DJLConfig djlConfig = Binder.get(environment).bindOrCreate("djl", Bindable.of(DJLConfig.class));
+        String cacheDir = djlConfig.getModelCacheDir();
+        if (cacheDir != null && !cacheDir.isBlank() && System.getProperty(CACHE_DIR_PROPERTY) == null) {
+            System.setProperty(CACHE_DIR_PROPERTY, Path.of(cacheDir).toAbsolutePath().toString());
+        }
+        if (djlConfig.isOffline() && System.getProperty(OFFLINE_PROPERTY) == null) {
+            System.setProperty(OFFLINE_PROPERTY, "true");
+        }
+    }
+}
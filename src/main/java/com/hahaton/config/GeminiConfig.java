@@ -16,4 +16,17 @@ public class GeminiConfig {
     private String modelName;
     private int maxTokens;
     private double temperature;
+    private long connectTimeoutMs = 5000;
+    private long requestTimeoutMs = 30000;
+    private long streamIdleTimeoutMs = 15000;
+    private long streamTimeoutMs = 120000;
+    private int maxConcurrentCalls = 8;
+    private int maxRetries = 2;
+    private long retryBaseDelayMs = 200;
+    private double retryBudgetRatio = 0.2;
+    private double retryBudgetMaxTokens = 10;
+    private int circuitFailureThreshold = 5;
+    private long circuitOpenMs = 30000;
+    private int cacheMaxEntries = 500;
+    private long cacheTtlSeconds = 3600;
 }
@@ -0,0 +1,21 @@
+package com.hahaton.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import lombok.Data;
+
+@Configuration
+@ConfigurationProperties(prefix = "progress.store")
+@Data
+public class ProgressStoreConfig {
+    
+    private String url = "jdbc:h2:file:./data/progress;DB_CLOSE_DELAY=-1";
+    private String username = "sa";
+    private String password = "";
+    private int poolSize = 4;
+    private long flushIntervalMs = 500;
+    private int batchSize = 100;
+    private int hotCacheSize = 10000;
+    private int queueCapacity = 100000;
+    private int maxFlushRetries = 10;
+}
@@ -12,4 +12,19 @@ public class SQLTrainerConfig {
     private boolean enabled = true;
     private int maxQueryLength = 1000;
     private int timeoutSeconds = 30;
+    private int maxResultRows = 1000;
+    private int fetchSize = 100;
+    private int sandboxPoolSize = Runtime.getRuntime().availableProcessors();
+    private int sandboxLeaseTimeoutSeconds = 10;
+    private long sandboxReplaceDelayMs = 500;
+    private long sandboxReplaceMaxDelayMs = 30000;
+    private int volatileExpectedTtlSeconds = 60;
+    private int checkQueueCapacity = 32;
+    private int checkRetryAfterSeconds = 5;
+    private int checkResponseTimeoutSeconds = 60;
+    private int idempotencyTtlSeconds = 600;
+    private int idempotencyMaxEntries = 10000;
+    private int resultCacheSize = 2000;
+    private int previewRows = 20;
+    private int taskCacheMaxAgeSeconds = 0;
 }
@@ -1,6 +1,7 @@
 package com.hahaton.controller;
 
 import com.hahaton.ai.AIAgent;
+import com.hahaton.config.GeminiConfig;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -10,10 +11,15 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/ai")
@@ -22,10 +28,12 @@ import java.util.Map;
 public class AIController {
     
     private final AIAgent aiAgent;
+    private final GeminiConfig geminiConfig;
     
     @Autowired
-    public AIController(AIAgent aiAgent) {
+    public AIController(AIAgent aiAgent, GeminiConfig geminiConfig) {
         this.aiAgent = aiAgent;
+        this.geminiConfig = geminiConfig;
     }
     
     @PostMapping("/chat")
@@ -56,6 +64,47 @@ public class AIController {
         return ResponseEntity.ok(Map.of("response", response));
     }
     
+    @PostMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+        summary = "Потоковый чат с AI помощником",
+        description = "Отправляет ответ по частям (Server-Sent Events): события chunk с полем text, затем done или error"
+    )
+    public SseEmitter chatStream(
+        @Parameter(description = "Вопрос для AI помощника", required = true, example = "Что такое Java?")
+        @RequestBody Map<String, String> request
+    ) {
+        SseEmitter emitter = new SseEmitter(geminiConfig.getStreamTimeoutMs());
+        String question = request.get("question");
+        
+        CompletableFuture<Void> stream = aiAgent.streamResponse(question, chunk -> {
+            try {
+                emitter.send(SseEmitter.event().name("chunk").data(Map.of("text", chunk), MediaType.APPLICATION_JSON));
+            } catch (IOException e) {
+                // Клиент отключился - исключение прерывает чтение потока Gemini
+                throw new UncheckedIOException(e);
+            }
+        });
+        // Истекший SseEmitter или отключение клиента отменяют поток, даже если Gemini перестал присылать данные
+        emitter.onTimeout(() -> stream.cancel(true));
+        emitter.onError(error -> stream.cancel(true));
+        emitter.onCompletion(() -> stream.cancel(true));
+        stream.whenComplete((result, error) -> {
+            try {
+                if (error == null) {
+                    emitter.send(SseEmitter.event().name("done").data(""));
+                } else {
+                    emitter.send(SseEmitter.event().name("error")
+                            .data(Map.of("message", "Извините, произошла ошибка при получении ответа от AI."), MediaType.APPLICATION_JSON));
+                }
+                emitter.complete();
+            } catch (IOException | IllegalStateException e) {
+                emitter.completeWithError(e);
+            }
+        });
+        
+        return emitter;
+    }
+    
     @GetMapping("/tip")
     @Operation(
         summary = "Получить случайный совет",
@@ -1,6 +1,8 @@
 package com.hahaton.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hahaton.ai.DJLService;
+import com.hahaton.config.DJLConfig;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -10,10 +12,20 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 @RestController
 @RequestMapping("/api/djl")
@@ -22,10 +34,14 @@ import java.util.Map;
 public class DJLController {
     
     private final DJLService djlService;
+    private final DJLConfig djlConfig;
+    private final ObjectMapper objectMapper;
     
     @Autowired
-    public DJLController(DJLService djlService) {
+    public DJLController(DJLService djlService, DJLConfig djlConfig, ObjectMapper objectMapper) {
         this.djlService = djlService;
+        this.djlConfig = djlConfig;
+        this.objectMapper = objectMapper;
     }
     
     @PostMapping("/classify")
@@ -118,6 +134,159 @@ public class DJLController {
         return ResponseEntity.ok(result);
     }
     
+    @PostMapping(value = "/classify/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(
+        summary = "Классификация загруженного изображения",
+        description = "Классифицирует изображение, загруженное файлом (multipart/form-data, поле file)"
+    )
+    public ResponseEntity<Map<String, Object>> classifyUpload(
+        @Parameter(description = "Файл изображения", required = true)
+        @RequestParam("file") MultipartFile file
+    ) throws IOException {
+        if (file.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of(
+                "success", false,
+                "error", "Файл изображения не передан"
+            ));
+        }
+        
+        Map<String, Object> result = djlService.classifyImage(file.getBytes());
+        return ResponseEntity.ok(result);
+    }
+    
+    @PostMapping(value = "/detect/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(
+        summary = "Обнаружение объектов на загруженном изображении",
+        description = "Обнаруживает объекты на изображении, загруженном файлом (multipart/form-data, поле file)"
+    )
+    public ResponseEntity<Map<String, Object>> detectUpload(
+        @Parameter(description = "Файл изображения", required = true)
+        @RequestParam("file") MultipartFile file
+    ) throws IOException {
+        if (file.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of(
+                "success", false,
+                "error", "Файл изображения не передан"
+            ));
+        }
+        
+        Map<String, Object> result = djlService.detectObjects(file.getBytes());
+        return ResponseEntity.ok(result);
+    }
+    
+    @PostMapping(value = "/classify/batch", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(
+        summary = "Пакетная классификация изображений",
+        description = "Классифицирует несколько изображений по URL. Ответ - NDJSON: строка на каждое изображение "
+            + "по мере готовности (index, source, success, predictions или error), последняя строка - итог (done)"
+    )
+    public ResponseEntity<StreamingResponseBody> classifyBatch(
+        @Parameter(description = "Список URL изображений", required = true)
+        @RequestBody Map<String, List<String>> request
+    ) {
+        return streamBatch(urlImages(request.get("imageUrls")), djlService::classifyBatch);
+    }
+    
+    @PostMapping(value = "/classify/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(
+        summary = "Пакетная классификация загруженных изображений",
+        description = "Классифицирует файлы из полей files и URL из полей imageUrls, ответ - NDJSON"
+    )
+    public ResponseEntity<StreamingResponseBody> classifyBatchUpload(
+        @RequestParam(value = "files", required = false) List<MultipartFile> files,
+        @RequestParam(value = "imageUrls", required = false) List<String> imageUrls
+    ) throws IOException {
+        return streamBatch(uploadImages(files, imageUrls), djlService::classifyBatch);
+    }
+    
+    @PostMapping(value = "/detect/batch", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(
+        summary = "Пакетное обнаружение объектов",
+        description = "Обнаруживает объекты на нескольких изображениях по URL. Ответ - NDJSON: строка на каждое "
+            + "изображение по мере готовности (index, source, success, detections или error), последняя строка - итог (done)"
+    )
+    public ResponseEntity<StreamingResponseBody> detectBatch(
+        @Parameter(description = "Список URL изображений", required = true)
+        @RequestBody Map<String, List<String>> request
+    ) {
+        return streamBatch(urlImages(request.get("imageUrls")), djlService::detectBatch);
+    }
+    
+    @PostMapping(value = "/detect/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(
+        summary = "Пакетное обнаружение объектов на загруженных изображениях",
+        description = "Обрабатывает файлы из полей files и URL из полей imageUrls, ответ - NDJSON"
+    )
+    public ResponseEntity<StreamingResponseBody> detectBatchUpload(
+        @RequestParam(value = "files", required = false) List<MultipartFile> files,
+        @RequestParam(value = "imageUrls", required = false) List<String> imageUrls
+    ) throws IOException {
+        return streamBatch(uploadImages(files, imageUrls), djlService::detectBatch);
+    }
+    
+    private static List<DJLService.BatchImage> urlImages(List<String> imageUrls) {
+        List<DJLService.BatchImage> images = new ArrayList<>();
+        if (imageUrls != null) {
+            for (String url : imageUrls) {
+                if (url != null && !url.isBlank()) {
+                    images.add(DJLService.BatchImage.ofUrl(url.strip()));
+                }
+            }
+        }
+        return images;
+    }
+    
+    private List<DJLService.BatchImage> uploadImages(List<MultipartFile> files, List<String> imageUrls) throws IOException {
+        List<DJLService.BatchImage> images = urlImages(imageUrls);
+        if (files != null) {
+            for (MultipartFile file : files) {
+                // Тело файла не читается, если лимит уже превышен - ответ все равно будет 400
+                if (!file.isEmpty() && images.size() <= djlConfig.getBatchMaxImages()) {
+                    images.add(DJLService.BatchImage.ofUpload(file.getOriginalFilename(), file.getBytes()));
+                }
+            }
+        }
+        return images;
+    }
+    
+    /**
+     * Проверить размер пакета и отдать результаты построчно (NDJSON) по мере готовности
+     */
+    private ResponseEntity<StreamingResponseBody> streamBatch(
+        List<DJLService.BatchImage> images,
+        BiConsumer<List<DJLService.BatchImage>, Consumer<Map<String, Object>>> batch
+    ) {
+        String error = null;
+        if (images.isEmpty()) {
+            error = "Не указано ни одного изображения";
+        } else if (images.size() > djlConfig.getBatchMaxImages()) {
+            error = "Слишком много изображений в запросе, допустимо не больше " + djlConfig.getBatchMaxImages();
+        }
+        if (error != null) {
+            Map<String, Object> body = Map.of("success", false, "error", error);
+            return ResponseEntity.badRequest()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(out -> writeLine(out, body));
+        }
+        
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_NDJSON)
+            .body(out -> batch.accept(images, line -> {
+                try {
+                    writeLine(out, line);
+                } catch (IOException e) {
+                    // Клиент отключился - исключение прерывает обработку оставшихся изображений
+                    throw new UncheckedIOException(e);
+                }
+            }));
+    }
+    
+    private void writeLine(OutputStream out, Map<String, Object> line) throws IOException {
+        out.write(objectMapper.writeValueAsBytes(line));
+        out.write('\n');
+        out.flush();
+    }
+    
     @GetMapping("/models")
     @Operation(
         summary = "Получить доступные модели",
@@ -188,6 +357,10 @@ public class DJLController {
             "endpoints", Map.of(
                 "classify", "POST /api/djl/classify - классификация изображений",
                 "detect", "POST /api/djl/detect - обнаружение объектов",
+                "classify_upload", "POST /api/djl/classify/upload - классификация загруженного файла",
+                "detect_upload", "POST /api/djl/detect/upload - обнаружение объектов на загруженном файле",
+                "classify_batch", "POST /api/djl/classify/batch - пакетная классификация (NDJSON)",
+                "detect_batch", "POST /api/djl/detect/batch - пакетное обнаружение объектов (NDJSON)",
                 "models", "GET /api/djl/models - доступные модели",
                 "health", "GET /api/djl/health - состояние сервиса",
                 "simple", "GET /api/djl/simple - простой тест DJL"
@@ -1,22 +1,21 @@
 package com.hahaton.dockertrainer.model;
 
-import lombok.Data;
 import lombok.Builder;
-import lombok.NoArgsConstructor;
-import lombok.AllArgsConstructor;
+import lombok.Value;
 import java.util.Map;
 import java.util.Set;
 
-@Data
-@Builder
-@NoArgsConstructor
-@AllArgsConstructor
+/**
+ * Неизменяемый снимок прогресса Docker тренажера; обновление - новый экземпляр через toBuilder()
+ */
+@Value
+@Builder(toBuilder = true)
 public class DockerProgress {
-    private String userId;
-    private Integer currentLevel;
-    private Set<Integer> completedLevels;
-    private Map<Integer, Integer> levelScores;
-    private Integer totalScore;
-    private String lastCompletedTask;
-    private Long lastActivityTime;
+    String userId;
+    Integer currentLevel;
+    Set<Integer> completedLevels;
+    Map<Integer, Integer> levelScores;
+    Integer totalScore;
+    String lastCompletedTask;
+    Long lastActivityTime;
 }
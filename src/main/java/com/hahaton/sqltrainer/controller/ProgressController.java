@@ -11,6 +11,10 @@ import org.springframework.web.bind.annotation.*;
 
 import java.util.Map;
 
+/**
+ * Просмотр и сброс прогресса. Задачи засчитываются только через POST /api/sql-trainer/submit
+ * после проверки решения на сервере
+ */
 @RestController
 @RequestMapping("/api/progress")
 @CrossOrigin(origins = "*")
@@ -28,18 +32,6 @@ public class ProgressController {
         return ResponseEntity.ok(progress);
     }
     
-    @PostMapping("/{userId}/complete")
-    @Operation(summary = "Завершить задачу", description = "Отметить задачу как завершенную")
-    public ResponseEntity<Map<String, String>> completeTask(
-            @Parameter(description = "ID пользователя") @PathVariable String userId, 
-            @Parameter(description = "Запрос с параметрами") @RequestBody Map<String, Object> request) {
-        int level = (Integer) request.get("level");
-        int taskNumber = (Integer) request.get("taskNumber");
-        
-        progressService.completeTask(userId, level, taskNumber);
-        return ResponseEntity.ok(Map.of("message", "Задача отмечена как выполненная"));
-    }
-    
     @GetMapping("/{userId}/level/{level}")
     @Operation(summary = "Получить прогресс уровня", description = "Получить прогресс по конкретному уровню")
     public ResponseEntity<Map<String, Object>> getLevelProgress(
@@ -67,7 +59,7 @@ public class ProgressController {
         
         Map<String, Object> response = Map.of(
             "overallProgress", overallProgress,
-            "totalCompleted", progress.getCompletedTasks().size(),
+            "totalCompleted", progress.getCompletedCount(),
             "totalTasks", 60,
             "currentLevel", progress.getCurrentLevel(),
             "currentTask", progress.getCurrentTask()
@@ -1,17 +1,31 @@
 package com.hahaton.sqltrainer.controller;
 
-import com.hahaton.sqltrainer.model.Task;
+import com.hahaton.config.SQLTrainerConfig;
+import com.hahaton.sqltrainer.model.SubmissionResult;
 import com.hahaton.sqltrainer.model.TaskResult;
 import com.hahaton.sqltrainer.model.TaskSubmission;
+import com.hahaton.sqltrainer.service.IdempotencyConflictException;
+import com.hahaton.sqltrainer.service.QueryCancellation;
+import com.hahaton.sqltrainer.service.SQLCheckDispatcher;
+import com.hahaton.sqltrainer.service.SQLSubmissionService;
 import com.hahaton.sqltrainer.service.SQLTrainerService;
+import com.hahaton.sqltrainer.service.TaskCatalog;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/sql-trainer")
@@ -21,34 +35,136 @@ import java.util.List;
 public class SQLTrainerController {
     
     private final SQLTrainerService sqlTrainerService;
+    private final SQLCheckDispatcher checkDispatcher;
+    private final SQLTrainerConfig sqlTrainerConfig;
+    private final SQLSubmissionService submissionService;
     
     @GetMapping("/task/{level}/{taskNumber}")
-    @Operation(summary = "Получить задачу", description = "Получить задачу по уровню и номеру")
-    public ResponseEntity<Task> getTask(
+    @Operation(summary = "Получить задачу", description = "Получить задачу по уровню и номеру. "
+            + "Ответ с ETag; при совпадении If-None-Match возвращается 304 без тела")
+    public ResponseEntity<byte[]> getTask(
             @Parameter(description = "Уровень задачи") @PathVariable int level, 
-            @Parameter(description = "Номер задачи") @PathVariable int taskNumber) {
-        Task task = sqlTrainerService.getTask(level, taskNumber);
+            @Parameter(description = "Номер задачи") @PathVariable int taskNumber,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        TaskCatalog.Json task = sqlTrainerService.getCatalog().getTaskJson(level, taskNumber);
         if (task != null) {
-            return ResponseEntity.ok(task);
+            return cachedJson(task, ifNoneMatch);
         } else {
             return ResponseEntity.notFound().build();
         }
     }
     
     @GetMapping("/level/{level}")
-    @Operation(summary = "Получить задачи уровня", description = "Получить все задачи определенного уровня")
-    public ResponseEntity<List<Task>> getLevelTasks(
-            @Parameter(description = "Уровень задач") @PathVariable int level) {
-        List<Task> tasks = sqlTrainerService.getLevelTasks(level);
-        return ResponseEntity.ok(tasks);
+    @Operation(summary = "Получить задачи уровня", description = "Получить все задачи определенного уровня. "
+            + "Ответ с ETag; при совпадении If-None-Match возвращается 304 без тела")
+    public ResponseEntity<byte[]> getLevelTasks(
+            @Parameter(description = "Уровень задач") @PathVariable int level,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return cachedJson(sqlTrainerService.getCatalog().getLevelJson(level), ifNoneMatch);
+    }
+    
+    /**
+     * Готовый JSON из каталога: без повторной сериализации, с ETag и Cache-Control
+     */
+    private ResponseEntity<byte[]> cachedJson(TaskCatalog.Json json, String ifNoneMatch) {
+        int maxAge = sqlTrainerConfig.getTaskCacheMaxAgeSeconds();
+        CacheControl cacheControl = maxAge > 0 ? CacheControl.maxAge(maxAge, TimeUnit.SECONDS) : CacheControl.noCache();
+        if (json.matches(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(json.getETag())
+                    .cacheControl(cacheControl)
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .eTag(json.getETag())
+                .cacheControl(cacheControl)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(json.getBody());
     }
     
     @PostMapping("/check")
     @Operation(summary = "Проверить задачу", description = "Проверить правильность SQL запроса")
-    public ResponseEntity<TaskResult> checkTask(
+    public DeferredResult<ResponseEntity<TaskResult>> checkTask(
             @Parameter(description = "Отправленный запрос") @RequestBody TaskSubmission submission) {
-        TaskResult result = sqlTrainerService.checkTask(submission);
-        return ResponseEntity.ok(result);
+        DeferredResult<ResponseEntity<TaskResult>> deferred = new DeferredResult<>(
+                TimeUnit.SECONDS.toMillis(sqlTrainerConfig.getCheckResponseTimeoutSeconds()));
+        QueryCancellation cancellation = new QueryCancellation();
+        
+        // Клиент отключился или не дождался ответа - отменяем выполняющийся запрос
+        deferred.onError(e -> cancellation.cancel());
+        deferred.onTimeout(() -> {
+            cancellation.cancel();
+            deferred.setResult(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(TaskResult.builder()
+                    .isCorrect(false)
+                    .message("Проверка не уложилась в отведенное время, попробуйте позже")
+                    .build()));
+        });
+        
+        try {
+            checkDispatcher.submit(submission, cancellation).whenComplete((result, error) -> {
+                if (error == null) {
+                    deferred.setResult(ResponseEntity.ok(result));
+                } else if (!(error instanceof CancellationException)) {
+                    deferred.setErrorResult(error);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            deferred.setResult(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(sqlTrainerConfig.getCheckRetryAfterSeconds()))
+                    .body(TaskResult.builder()
+                            .isCorrect(false)
+                            .message("Слишком много проверок одновременно, повторите попытку позже")
+                            .build()));
+        }
+        return deferred;
+    }
+    
+    @PostMapping("/submit")
+    @Operation(summary = "Отправить решение",
+            description = "Проверить SQL запрос и, если он верный, засчитать задачу пользователю в том же запросе. "
+                    + "Повтор с тем же заголовком Idempotency-Key возвращает результат первой отправки")
+    public DeferredResult<ResponseEntity<SubmissionResult>> submitTask(
+            @Parameter(description = "Отправленный запрос с userId") @RequestBody TaskSubmission submission,
+            @Parameter(description = "Ключ идемпотентности отправки (например, UUID)")
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        DeferredResult<ResponseEntity<SubmissionResult>> deferred = new DeferredResult<>(
+                TimeUnit.SECONDS.toMillis(sqlTrainerConfig.getCheckResponseTimeoutSeconds()));
+        if (submission == null || submission.getUserId() == null || submission.getUserId().isBlank()
+                || submission.getLevel() == null || submission.getTaskNumber() == null) {
+            deferred.setResult(ResponseEntity.badRequest().body(rejected("Не указаны userId, level или taskNumber")));
+            return deferred;
+        }
+        QueryCancellation cancellation = new QueryCancellation();
+        
+        deferred.onError(e -> cancellation.cancel());
+        deferred.onTimeout(() -> {
+            cancellation.cancel();
+            deferred.setResult(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(rejected("Проверка не уложилась в отведенное время, попробуйте позже")));
+        });
+        
+        try {
+            submissionService.submit(submission, idempotencyKey, cancellation).whenComplete((result, error) -> {
+                if (error == null) {
+                    deferred.setResult(ResponseEntity.ok(result));
+                } else if (!(error instanceof CancellationException)) {
+                    deferred.setErrorResult(error);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            deferred.setResult(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(sqlTrainerConfig.getCheckRetryAfterSeconds()))
+                    .body(rejected("Слишком много проверок одновременно, повторите попытку позже")));
+        } catch (IdempotencyConflictException e) {
+            deferred.setResult(ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(rejected(e.getMessage())));
+        }
+        return deferred;
+    }
+    
+    private static SubmissionResult rejected(String message) {
+        return SubmissionResult.builder()
+                .result(TaskResult.builder().isCorrect(false).message(message).build())
+                .build();
     }
     
     @GetMapping("/levels")
@@ -1,19 +1,108 @@
 package com.hahaton.sqltrainer.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import lombok.Data;
 import lombok.Builder;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
+@JsonPropertyOrder({"userId", "completedTasks", "currentLevel", "currentTask"})
 public class Progress {
+    
+    public static final int LEVELS = 6;
+    public static final int TASKS_PER_LEVEL = 10;
+    
+    private static final long LEVEL_BITS = (1L << TASKS_PER_LEVEL) - 1;
+    
     private String userId;
-    private Set<String> completedTasks; // Format: "level-taskNumber"
+    @JsonIgnore
+    private volatile long completedMask; // Бит (level - 1) * 10 + (taskNumber - 1)
     private Integer currentLevel;
     private Integer currentTask;
+    
+    /**
+     * Отметить задачу решенной. Задачи вне 6 уровней по 10 задач не учитываются
+     */
+    public boolean markCompleted(int level, int taskNumber) {
+        int bit = bit(level, taskNumber);
+        if (bit < 0) {
+            return false;
+        }
+        completedMask |= 1L << bit;
+        return true;
+    }
+    
+    public boolean isCompleted(int level, int taskNumber) {
+        int bit = bit(level, taskNumber);
+        return bit >= 0 && (completedMask & (1L << bit)) != 0;
+    }
+    
+    /**
+     * Количество решенных задач уровня
+     */
+    @JsonIgnore
+    public int getCompletedCount(int level) {
+        if (level < 1 || level > LEVELS) {
+            return 0;
+        }
+        return Long.bitCount(completedMask & (LEVEL_BITS << ((level - 1) * TASKS_PER_LEVEL)));
+    }
+    
+    /**
+     * Количество решенных задач всех уровней
+     */
+    @JsonIgnore
+    public int getCompletedCount() {
+        return Long.bitCount(completedMask);
+    }
+    
+    /**
+     * Решенные задачи в формате "level-taskNumber" (для JSON API)
+     */
+    @JsonProperty("completedTasks")
+    public Set<String> getCompletedTasks() {
+        long mask = completedMask;
+        Set<String> tasks = new LinkedHashSet<>();
+        while (mask != 0) {
+            int bit = Long.numberOfTrailingZeros(mask);
+            tasks.add((bit / TASKS_PER_LEVEL + 1) + "-" + (bit % TASKS_PER_LEVEL + 1));
+            mask &= mask - 1;
+        }
+        return Collections.unmodifiableSet(tasks);
+    }
+    
+    /**
+     * Бит задачи в маске или -1, если задачи нет в тренажере
+     */
+    public static int bit(int level, int taskNumber) {
+        if (level < 1 || level > LEVELS || taskNumber < 1 || taskNumber > TASKS_PER_LEVEL) {
+            return -1;
+        }
+        return (level - 1) * TASKS_PER_LEVEL + (taskNumber - 1);
+    }
+    
+    /**
+     * Бит задачи по ключу "level-taskNumber" или -1, если ключ некорректен
+     */
+    public static int bit(String taskKey) {
+        int dash = taskKey.indexOf('-');
+        if (dash < 0) {
+            return -1;
+        }
+        try {
+            return bit(Integer.parseInt(taskKey.substring(0, dash)), Integer.parseInt(taskKey.substring(dash + 1)));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
 }
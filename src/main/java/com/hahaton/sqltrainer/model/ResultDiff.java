@@ -0,0 +1,24 @@
+package com.hahaton.sqltrainer.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Построчная разница результата пользователя и эталона.
+ * Списки строк усечены до превью, счетчики - полные.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResultDiff {
+    private List<Map<String, Object>> missingRows;
+    private int missingCount;
+    private List<Map<String, Object>> extraRows;
+    private int extraCount;
+}
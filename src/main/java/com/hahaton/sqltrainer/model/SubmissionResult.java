@@ -0,0 +1,25 @@
+package com.hahaton.sqltrainer.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Ответ на отправку решения: результат проверки и прогресс пользователя после нее
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SubmissionResult {
+    private TaskResult result;
+    // Задача засчитана (сейчас или раньше)
+    private boolean completed;
+    // Задача засчитана именно этой отправкой
+    private boolean firstCompletion;
+    private int currentLevel;
+    private int currentTask;
+    private int totalCompleted;
+    private double overallProgress;
+}
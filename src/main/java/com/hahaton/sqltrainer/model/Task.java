@@ -20,4 +20,5 @@ public class Task {
     private String solution;
     private String hint;
     private String difficulty;
+    private Boolean orderSensitive; // Порядок строк результата важен (ORDER BY в решении)
 }
@@ -1,5 +1,6 @@
 package com.hahaton.sqltrainer.model;
 
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import lombok.Data;
 import lombok.Builder;
 import lombok.NoArgsConstructor;
@@ -8,10 +9,16 @@ import lombok.AllArgsConstructor;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Результат проверки запроса.
+ * expectedResult и actualResult содержат только первые строки (превью), полный размер -
+ * в expectedRowCount и actualRowCount. В JSON пишется компактно, см. {@link TaskResultSerializer}.
+ */
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
+@JsonSerialize(using = TaskResultSerializer.class)
 public class TaskResult {
     private boolean isCorrect;
     private String message;
@@ -19,4 +26,7 @@ public class TaskResult {
     private List<Map<String, Object>> expectedResult;
     private List<Map<String, Object>> actualResult;
     private String errorMessage;
+    private Integer expectedRowCount;
+    private Integer actualRowCount;
+    private ResultDiff diff;
 }
@@ -0,0 +1,82 @@
+package com.hahaton.sqltrainer.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Компактная запись TaskResult: таблица - это заголовок колонок и строки в виде массивов значений
+ * по позиции, без повтора имен колонок в каждой строке:
+ * <pre>
+ * {"isCorrect":false, ..., "expected":{"columns":["NAME"],"rows":[["Anna"]],"totalRows":5,"truncated":true},
+ *  "actual":{...}, "diff":{"missing":{...},"extra":{...}}}
+ * </pre>
+ * Строки пишутся в поток генератора напрямую, без промежуточного дерева JSON.
+ */
+public class TaskResultSerializer extends StdSerializer<TaskResult> {
+
+    public TaskResultSerializer() {
+        super(TaskResult.class);
+    }
+
+    @Override
+    public void serialize(TaskResult result, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject();
+        gen.writeBooleanField("isCorrect", result.isCorrect());
+        gen.writeStringField("message", result.getMessage());
+        gen.writeStringField("hint", result.getHint());
+        gen.writeStringField("errorMessage", result.getErrorMessage());
+        if (result.getExpectedResult() != null) {
+            gen.writeFieldName("expected");
+            writeTable(gen, provider, result.getExpectedResult(), result.getExpectedRowCount());
+        }
+        if (result.getActualResult() != null) {
+            gen.writeFieldName("actual");
+            writeTable(gen, provider, result.getActualResult(), result.getActualRowCount());
+        }
+        ResultDiff diff = result.getDiff();
+        if (diff != null) {
+            gen.writeObjectFieldStart("diff");
+            gen.writeFieldName("missing");
+            writeTable(gen, provider, diff.getMissingRows(), diff.getMissingCount());
+            gen.writeFieldName("extra");
+            writeTable(gen, provider, diff.getExtraRows(), diff.getExtraCount());
+            gen.writeEndObject();
+        }
+        gen.writeEndObject();
+    }
+
+    /**
+     * @param totalRows полное число строк; null - строк столько, сколько в списке
+     */
+    private static void writeTable(JsonGenerator gen, SerializerProvider provider,
+                                   List<Map<String, Object>> rows, Integer totalRows) throws IOException {
+        List<Map<String, Object>> safeRows = rows == null ? List.of() : rows;
+        int total = totalRows == null ? safeRows.size() : Math.max(totalRows, safeRows.size());
+        // Все строки одного результата имеют одинаковые колонки, заголовок берем из первой
+        String[] columns = safeRows.isEmpty() ? new String[0] : safeRows.get(0).keySet().toArray(new String[0]);
+
+        gen.writeStartObject();
+        gen.writeArrayFieldStart("columns");
+        for (String column : columns) {
+            gen.writeString(column);
+        }
+        gen.writeEndArray();
+        gen.writeArrayFieldStart("rows");
+        for (Map<String, Object> row : safeRows) {
+            gen.writeStartArray();
+            for (String column : columns) {
+                provider.defaultSerializeValue(row.get(column), gen);
+            }
+            gen.writeEndArray();
+        }
+        gen.writeEndArray();
+        gen.writeNumberField("totalRows", total);
+        gen.writeBooleanField("truncated", total > safeRows.size());
+        gen.writeEndObject();
+    }
+}
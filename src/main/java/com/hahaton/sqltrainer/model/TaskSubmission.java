@@ -7,4 +7,6 @@ public class TaskSubmission {
     private String query;
     private Integer level;
     private Integer taskNumber;
+    // Нужен только для /submit, где засчитывание задачи выполняет сервер
+    private String userId;
 }
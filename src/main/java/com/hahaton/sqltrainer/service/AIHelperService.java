@@ -1,5 +1,6 @@
 package com.hahaton.sqltrainer.service;
 
+import com.hahaton.ai.SemanticRetrievalService;
 import com.hahaton.sqltrainer.model.Task;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -13,6 +14,7 @@ import org.springframework.stereotype.Service;
 public class AIHelperService {
     
     private final SQLTrainerService sqlTrainerService;
+    private final SemanticRetrievalService semanticRetrieval;
     
     @Operation(summary = "Получить подсказку", description = "Получить базовую подсказку для задачи")
     public String getHint(
@@ -83,7 +85,21 @@ public class AIHelperService {
         }
         
         // Общая подсказка
-        return task.getHint() + "\n\nПопробуйте проанализировать структуру таблиц и понять, какие данные нужно получить.";
+        return task.getHint() + "\n\nПопробуйте проанализировать структуру таблиц и понять, какие данные нужно получить."
+                + similarTaskHint(task, userQuery);
+    }
+    
+    /**
+     * Подсказка к самой похожей другой задаче из базы знаний (если включен семантический поиск)
+     */
+    private String similarTaskHint(Task task, String userQuery) {
+        String currentId = "sql/" + task.getLevel() + "/" + task.getTaskNumber();
+        for (SemanticRetrievalService.Match match : semanticRetrieval.search(task.getQuestion() + " " + userQuery, 2, "sql")) {
+            if (!match.getEntry().getId().equals(currentId) && semanticRetrieval.isRelevant(match)) {
+                return "\n\nПохожая задача - " + match.getEntry().getAnswer();
+            }
+        }
+        return "";
     }
     
     public String getNextStepHint(int level, int taskNumber, String userQuery) {
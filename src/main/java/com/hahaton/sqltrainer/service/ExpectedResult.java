@@ -0,0 +1,58 @@
+package com.hahaton.sqltrainer.service;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Результат эталонного запроса задачи в нормализованном виде: строки и их канонические хэши
+ * (в порядке выдачи), а также версии решения и тестовых данных, для которых он посчитан.
+ */
+@Getter
+public final class ExpectedResult {
+
+    private final List<Map<String, Object>> rows;
+    private final long[] rowHashes;
+    private final long[] distinctHashes;
+    private final int[] hashCounts;
+    private final String solutionHash;
+    private final String fixtureVersion;
+    private final long expiresAt;
+
+    ExpectedResult(List<Map<String, Object>> rows, String solutionHash, String fixtureVersion, long expiresAt) {
+        this.rows = Collections.unmodifiableList(rows);
+        this.rowHashes = new long[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            rowHashes[i] = RowHasher.hashRow(rows.get(i));
+        }
+        // Мультимножество хэшей: отсортированные уникальные значения и число повторов каждого
+        long[] sorted = rowHashes.clone();
+        Arrays.sort(sorted);
+        long[] distinct = new long[sorted.length];
+        int[] counts = new int[sorted.length];
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (size > 0 && distinct[size - 1] == sorted[i]) {
+                counts[size - 1]++;
+            } else {
+                distinct[size] = sorted[i];
+                counts[size] = 1;
+                size++;
+            }
+        }
+        this.distinctHashes = Arrays.copyOf(distinct, size);
+        this.hashCounts = Arrays.copyOf(counts, size);
+        this.solutionHash = solutionHash;
+        this.fixtureVersion = fixtureVersion;
+        this.expiresAt = expiresAt;
+    }
+
+    boolean isValidFor(String solutionHash, String fixtureVersion, long now) {
+        return this.solutionHash.equals(solutionHash)
+                && this.fixtureVersion.equals(fixtureVersion)
+                && now < expiresAt;
+    }
+}
@@ -0,0 +1,98 @@
+package com.hahaton.sqltrainer.service;
+
+import com.hahaton.config.SQLTrainerConfig;
+import com.hahaton.sqltrainer.model.Task;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Кэш результатов эталонных запросов по ключу задачи ("level-taskNumber").
+ * Тестовые данные статичны, поэтому эталон считается один раз на первой проверке задачи
+ * и пересчитывается только при смене решения или data.sql. Решения с функциями текущего
+ * времени или случайных чисел кэшируются на sql.trainer.volatile-expected-ttl-seconds.
+ */
+@Component
+@RequiredArgsConstructor
+public class ExpectedResultCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExpectedResultCache.class);
+
+    private static final Pattern VOLATILE_FUNCTIONS = Pattern.compile(
+            "\\b(NOW|CURRENT_TIMESTAMP|CURRENT_DATE|CURRENT_TIME|LOCALTIMESTAMP|LOCALTIME|SYSDATE|RAND|RANDOM|RANDOM_UUID)\\b");
+
+    private final SandboxPool sandboxPool;
+    private final SQLTrainerConfig config;
+
+    private final Map<String, ExpectedResult> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Получить эталонный результат задачи, при промахе выполнив решение на переданной песочнице
+     */
+    public ExpectedResult get(String taskKey, Task task, JdbcTemplate jdbc) {
+        String solutionHash = sha256(task.getSolution());
+        String fixtureVersion = sandboxPool.getFixtureVersion();
+        long now = System.currentTimeMillis();
+
+        ExpectedResult cached = cache.get(taskKey);
+        if (cached != null && cached.isValidFor(solutionHash, fixtureVersion, now)) {
+            return cached;
+        }
+
+        List<Map<String, Object>> rows;
+        try {
+            rows = jdbc.queryForList(task.getSolution());
+        } catch (Exception e) {
+            // Как и раньше, неисполнимый эталон дает пустой результат, но такой результат не кэшируем
+            logger.warn("Эталонный запрос задачи {} не выполнился: {}", taskKey, e.getMessage());
+            return new ExpectedResult(List.of(), solutionHash, fixtureVersion, now);
+        }
+
+        long expiresAt = isVolatile(task.getSolution())
+                ? now + config.getVolatileExpectedTtlSeconds() * 1000L
+                : Long.MAX_VALUE;
+        ExpectedResult computed = new ExpectedResult(rows, solutionHash, fixtureVersion, expiresAt);
+        cache.put(taskKey, computed);
+        return computed;
+    }
+
+    /**
+     * Сбросить эталон одной задачи
+     */
+    public void invalidate(String taskKey) {
+        cache.remove(taskKey);
+    }
+
+    /**
+     * Сбросить все эталоны
+     */
+    public void invalidateAll() {
+        cache.clear();
+    }
+
+    static boolean isVolatile(String solution) {
+        return solution != null && VOLATILE_FUNCTIONS.matcher(solution.toUpperCase(Locale.ROOT)).find();
+    }
+
+    private static String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] bytes = digest.digest((text == null ? "" : text).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.hahaton.sqltrainer.service;
+
+/**
+ * Ключ идемпотентности уже использован для другой отправки (другая задача или запрос).
+ * Сообщение показывается пользователю как есть.
+ */
+public class IdempotencyConflictException extends RuntimeException {
+
+    public IdempotencyConflictException(String message) {
+        super(message);
+    }
+}
@@ -4,60 +4,61 @@ import com.hahaton.sqltrainer.model.Progress;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 @Service
+@RequiredArgsConstructor
 @Tag(name = "Progress Service", description = "Сервис для управления прогрессом пользователей в SQL тренажере")
 public class ProgressService {
     
-    // В реальном приложении здесь была бы база данных
-    private final Map<String, Progress> userProgress = new ConcurrentHashMap<>();
+    // Прогресс хранится в H2, активные пользователи - в кэше хранилища
+    private final ProgressStore progressStore;
     
     @Operation(summary = "Получить прогресс пользователя", description = "Получить или создать прогресс для указанного пользователя")
     public Progress getUserProgress(
             @Parameter(description = "ID пользователя") String userId) {
-        return userProgress.computeIfAbsent(userId, k -> Progress.builder()
-                .userId(userId)
-                .completedTasks(new HashSet<>())
-                .currentLevel(1)
-                .currentTask(1)
-                .build());
+        return progressStore.get(userId);
     }
     
+    /**
+     * @return true, если задача засчитана этим вызовом, и false, если она уже была выполнена
+     */
     @Operation(summary = "Завершить задачу", description = "Отметить задачу как завершенную и обновить прогресс")
-    public void completeTask(
+    public boolean completeTask(
             @Parameter(description = "ID пользователя") String userId, 
             @Parameter(description = "Уровень задачи") int level, 
             @Parameter(description = "Номер задачи") int taskNumber) {
         Progress progress = getUserProgress(userId);
         String taskKey = level + "-" + taskNumber;
-        progress.getCompletedTasks().add(taskKey);
-        
-        // Обновляем текущую позицию
-        if (taskNumber < 10) {
-            progress.setCurrentTask(taskNumber + 1);
-        } else if (level < 6) {
-            progress.setCurrentLevel(level + 1);
-            progress.setCurrentTask(1);
+        synchronized (progress) {
+            // Повторное засчитывание (ретрай, двойной клик) не сдвигает позицию и не пишет в базу
+            if (progress.isCompleted(level, taskNumber) || !progress.markCompleted(level, taskNumber)) {
+                return false;
+            }
+            
+            // Обновляем текущую позицию
+            if (taskNumber < 10) {
+                progress.setCurrentTask(taskNumber + 1);
+            } else if (level < 6) {
+                progress.setCurrentLevel(level + 1);
+                progress.setCurrentTask(1);
+            }
+            
+            // Запись в базу выполнится фоновым сбросом очереди
+            progressStore.recordCompletion(userId, taskKey, progress.getCurrentLevel(), progress.getCurrentTask());
+            return true;
         }
-        
-        userProgress.put(userId, progress);
     }
     
     public boolean isTaskCompleted(String userId, int level, int taskNumber) {
-        Progress progress = getUserProgress(userId);
-        String taskKey = level + "-" + taskNumber;
-        return progress.getCompletedTasks().contains(taskKey);
+        return getUserProgress(userId).isCompleted(level, taskNumber);
     }
     
     public int getCompletedTasksCount(String userId, int level) {
-        Progress progress = getUserProgress(userId);
-        return (int) progress.getCompletedTasks().stream()
-                .filter(task -> task.startsWith(level + "-"))
-                .count();
+        return getUserProgress(userId).getCompletedCount(level);
     }
     
     public double getLevelProgress(String userId, int level) {
@@ -66,8 +67,7 @@ public class ProgressService {
     }
     
     public double getOverallProgress(String userId) {
-        Progress progress = getUserProgress(userId);
-        int totalCompleted = progress.getCompletedTasks().size();
+        int totalCompleted = getUserProgress(userId).getCompletedCount();
         return (double) totalCompleted / 60.0 * 100.0; // 6 уровней по 10 задач
     }
     
@@ -76,7 +76,7 @@ public class ProgressService {
         List<Integer> unlocked = new ArrayList<>();
         
         for (int level = 1; level <= 6; level++) {
-            if (level == 1 || getCompletedTasksCount(userId, level - 1) >= 5) {
+            if (level == 1 || progress.getCompletedCount(level - 1) >= 5) {
                 unlocked.add(level);
             }
         }
@@ -85,6 +85,6 @@ public class ProgressService {
     }
     
     public void resetProgress(String userId) {
-        userProgress.remove(userId);
+        progressStore.delete(userId);
     }
 }
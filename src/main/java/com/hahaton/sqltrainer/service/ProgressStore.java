@@ -0,0 +1,357 @@
+package com.hahaton.sqltrainer.service;
+
+import com.hahaton.config.ProgressStoreConfig;
+import com.hahaton.sqltrainer.model.Progress;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Хранилище прогресса SQL тренажера в H2 (file mode).
+ * Активные пользователи держатся в ограниченном LRU кэше, остальные подгружаются из базы
+ * при первом обращении. Изменения не пишутся в базу синхронно: они копятся в очереди
+ * и сбрасываются фоновым потоком пакетами многострочных MERGE. Запись покидает очередь только
+ * после коммита, поэтому при холодной загрузке несброшенные изменения накладываются на строку из базы.
+ * Очередь ограничена progress.store.queue-capacity, а пакет, который не удалось записать
+ * progress.store.max-flush-retries раз подряд, отбрасывается; потерянные записи считает progress.store.dropped.
+ */
+@Component
+public class ProgressStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProgressStore.class);
+
+    private final ProgressStoreConfig config;
+    private final HikariDataSource dataSource;
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transactions;
+    private final Map<String, Progress> hotCache;
+    private final BlockingDeque<PendingWrite> pending;
+    private final Counter droppedQueueFull;
+    private final Counter droppedRetriesExhausted;
+    private final Object flushLock = new Object();
+    private int failedAttempts; // Неудачные попытки записать пакет из головы очереди, под flushLock
+    private volatile long deletions; // Число удалений, меняется под hotCache
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "progress-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public ProgressStore(ProgressStoreConfig config, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.pending = new LinkedBlockingDeque<>(Math.max(1, config.getQueueCapacity()));
+        this.droppedQueueFull = droppedCounter(meterRegistry, "queue_full");
+        this.droppedRetriesExhausted = droppedCounter(meterRegistry, "retries_exhausted");
+        HikariConfig pool = new HikariConfig();
+        pool.setPoolName("progress-store");
+        pool.setJdbcUrl(config.getUrl());
+        pool.setUsername(config.getUsername());
+        pool.setPassword(config.getPassword());
+        pool.setDriverClassName("org.h2.Driver");
+        pool.setMaximumPoolSize(Math.max(1, config.getPoolSize()));
+        this.dataSource = new HikariDataSource(pool);
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.transactions = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        int capacity = Math.max(1, config.getHotCacheSize());
+        this.hotCache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Progress> eldest) {
+                return size() > capacity;
+            }
+        });
+    }
+
+    @PostConstruct
+    void init() {
+        jdbc.execute("CREATE TABLE IF NOT EXISTS user_progress ("
+                + "user_id VARCHAR(255) PRIMARY KEY, "
+                + "current_level INT NOT NULL, "
+                + "current_task INT NOT NULL)");
+        jdbc.execute("CREATE TABLE IF NOT EXISTS completed_tasks ("
+                + "user_id VARCHAR(255) NOT NULL, "
+                + "task_key VARCHAR(16) NOT NULL, "
+                + "PRIMARY KEY (user_id, task_key))");
+        long interval = Math.max(10, config.getFlushIntervalMs());
+        flusher.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Получить прогресс пользователя: из кэша, из базы или новый (в базу он попадет с первой задачей)
+     */
+    public Progress get(String userId) {
+        while (true) {
+            Progress cached = hotCache.get(userId);
+            if (cached != null) {
+                return cached;
+            }
+            long seenDeletions = deletions;
+            // Снимок очереди берется до чтения базы: запись, сброшенная в промежутке, есть хотя бы в одном из них
+            List<PendingWrite> unflushed = pendingFor(userId);
+            Progress loaded;
+            try {
+                loaded = overlay(load(userId), unflushed);
+            } catch (DataAccessException e) {
+                // База недоступна: отдаем то, что известно из очереди, но не кэшируем неполный прогресс
+                logger.warn("Не удалось загрузить прогресс {}: {}", userId, e.getMessage());
+                return overlay(newProgress(userId), unflushed);
+            }
+            synchronized (hotCache) {
+                Progress existing = hotCache.get(userId);
+                if (existing != null) {
+                    return existing;
+                }
+                if (deletions == seenDeletions) {
+                    hotCache.put(userId, loaded);
+                    return loaded;
+                }
+            }
+            // Пока шла загрузка, прогресс удаляли: прочитанная строка могла устареть, читаем заново
+        }
+    }
+
+    /**
+     * Поставить в очередь запись о решенной задаче и новой позиции пользователя
+     */
+    public void recordCompletion(String userId, String taskKey, int currentLevel, int currentTask) {
+        enqueue(new PendingWrite(userId, taskKey, currentLevel, currentTask));
+        if (pending.size() >= config.getBatchSize()) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * Удалить прогресс пользователя
+     */
+    public void delete(String userId) {
+        // Сначала удаление попадает в очередь, чтобы начатая после этого холодная загрузка его увидела
+        enqueue(PendingWrite.deletion(userId));
+        synchronized (hotCache) {
+            hotCache.remove(userId);
+            deletions++;
+        }
+    }
+
+    /**
+     * Записать накопленные изменения в базу
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            List<PendingWrite> batch = new ArrayList<>();
+            while (true) {
+                // Новые записи добавляются только в хвост, поэтому после коммита из головы снимается ровно пакет;
+                // при ошибке пакет остается в очереди и будет повторен следующим сбросом
+                pending.stream().limit(Math.max(1, config.getBatchSize())).forEach(batch::add);
+                if (batch.isEmpty()) {
+                    return;
+                }
+                try {
+                    transactions.executeWithoutResult(status -> write(batch));
+                } catch (RuntimeException e) {
+                    if (++failedAttempts < config.getMaxFlushRetries()) {
+                        throw e;
+                    }
+                    logger.error("Пакет прогресса из {} записей не сохранен после {} попыток и отброшен: {}",
+                            batch.size(), failedAttempts, e.getMessage());
+                    droppedRetriesExhausted.increment(batch.size());
+                }
+                failedAttempts = 0;
+                batch.forEach(write -> pending.pollFirst());
+                batch.clear();
+            }
+        }
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flusher.shutdown();
+        flushQuietly();
+        dataSource.close();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.warn("Не удалось сохранить прогресс, повторим позже: {}", e.getMessage());
+        }
+    }
+
+    private void write(List<PendingWrite> batch) {
+        List<PendingWrite> upserts = new ArrayList<>();
+        for (PendingWrite write : batch) {
+            if (write.deletion) {
+                // Удаление должно выполниться после предшествующих ему записей
+                writeUpserts(upserts);
+                upserts.clear();
+                jdbc.update("DELETE FROM completed_tasks WHERE user_id = ?", write.userId);
+                jdbc.update("DELETE FROM user_progress WHERE user_id = ?", write.userId);
+            } else {
+                upserts.add(write);
+            }
+        }
+        writeUpserts(upserts);
+    }
+
+    private void writeUpserts(List<PendingWrite> upserts) {
+        if (upserts.isEmpty()) {
+            return;
+        }
+        int chunk = Math.max(1, config.getBatchSize());
+        for (int from = 0; from < upserts.size(); from += chunk) {
+            List<PendingWrite> part = upserts.subList(from, Math.min(upserts.size(), from + chunk));
+
+            // Позиция пользователя: в пакете важна только последняя
+            Map<String, PendingWrite> positions = new LinkedHashMap<>();
+            part.forEach(write -> positions.put(write.userId, write));
+            List<Object> args = new ArrayList<>();
+            positions.values().forEach(write -> {
+                args.add(write.userId);
+                args.add(write.currentLevel);
+                args.add(write.currentTask);
+            });
+            jdbc.update("MERGE INTO user_progress (user_id, current_level, current_task) KEY (user_id) VALUES "
+                    + placeholders(positions.size(), "(?, ?, ?)"), args.toArray());
+
+            args.clear();
+            part.forEach(write -> {
+                args.add(write.userId);
+                args.add(write.taskKey);
+            });
+            jdbc.update("MERGE INTO completed_tasks (user_id, task_key) KEY (user_id, task_key) VALUES "
+                    + placeholders(part.size(), "(?, ?)"), args.toArray());
+        }
+    }
+
+    private void enqueue(PendingWrite write) {
+        if (!pending.offerLast(write)) {
+            // Данные пользователя остаются в кэше; теряется только их сохранение в базу
+            logger.warn("Очередь записи прогресса заполнена, изменение пользователя {} не будет сохранено", write.userId);
+            droppedQueueFull.increment();
+        }
+    }
+
+    private static Counter droppedCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("progress.store.dropped")
+                .tag("reason", reason)
+                .description("Изменения прогресса, не записанные в базу")
+                .register(meterRegistry);
+    }
+
+    private List<PendingWrite> pendingFor(String userId) {
+        List<PendingWrite> writes = new ArrayList<>();
+        for (PendingWrite write : pending) {
+            if (write.userId.equals(userId)) {
+                writes.add(write);
+            }
+        }
+        return writes;
+    }
+
+    private static Progress overlay(Progress progress, List<PendingWrite> writes) {
+        for (PendingWrite write : writes) {
+            if (write.deletion) {
+                progress = newProgress(progress.getUserId());
+                continue;
+            }
+            int bit = Progress.bit(write.taskKey);
+            if (bit >= 0) {
+                progress.setCompletedMask(progress.getCompletedMask() | 1L << bit);
+            }
+            progress.setCurrentLevel(write.currentLevel);
+            progress.setCurrentTask(write.currentTask);
+        }
+        return progress;
+    }
+
+    private static Progress newProgress(String userId) {
+        return Progress.builder()
+                .userId(userId)
+                .currentLevel(1)
+                .currentTask(1)
+                .build();
+    }
+
+    private Progress load(String userId) {
+        List<Progress> rows = jdbc.query(
+                "SELECT current_level, current_task FROM user_progress WHERE user_id = ?",
+                (rs, rowNum) -> Progress.builder()
+                        .userId(userId)
+                        .currentLevel(rs.getInt("current_level"))
+                        .currentTask(rs.getInt("current_task"))
+                        .build(),
+                userId);
+        if (rows.isEmpty()) {
+            return newProgress(userId);
+        }
+        long mask = 0;
+        for (String taskKey : jdbc.queryForList(
+                "SELECT task_key FROM completed_tasks WHERE user_id = ?", String.class, userId)) {
+            int bit = Progress.bit(taskKey);
+            if (bit >= 0) {
+                mask |= 1L << bit;
+            }
+        }
+        Progress progress = rows.get(0);
+        progress.setCompletedMask(mask);
+        return progress;
+    }
+
+    private static String placeholders(int count, String row) {
+        return String.join(", ", Collections.nCopies(count, row));
+    }
+
+    /**
+     * Отложенная запись: решенная задача с позицией пользователя или удаление прогресса
+     */
+    private static final class PendingWrite {
+
+        private final String userId;
+        private final String taskKey;
+        private final int currentLevel;
+        private final int currentTask;
+        private final boolean deletion;
+
+        private PendingWrite(String userId, String taskKey, int currentLevel, int currentTask) {
+            this(userId, taskKey, currentLevel, currentTask, false);
+        }
+
+        private PendingWrite(String userId, String taskKey, int currentLevel, int currentTask, boolean deletion) {
+            this.userId = userId;
+            this.taskKey = taskKey;
+            this.currentLevel = currentLevel;
+            this.currentTask = currentTask;
+            this.deletion = deletion;
+        }
+
+        private static PendingWrite deletion(String userId) {
+            return new PendingWrite(userId, null, 0, 0, true);
+        }
+    }
+}
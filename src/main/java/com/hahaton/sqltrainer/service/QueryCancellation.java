@@ -0,0 +1,45 @@
+package com.hahaton.sqltrainer.service;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Кооперативная отмена проверки: если клиент ушел, выполняющийся оператор отменяется
+ * через Statement.cancel(), а еще не начатый запрос не запускается.
+ */
+public class QueryCancellation {
+
+    private volatile Statement statement;
+    private volatile boolean cancelled;
+
+    public void cancel() {
+        cancelled = true;
+        cancelStatement(statement);
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    void register(Statement statement) {
+        this.statement = statement;
+        if (cancelled) {
+            cancelStatement(statement);
+        }
+    }
+
+    void unregister() {
+        this.statement = null;
+    }
+
+    private static void cancelStatement(Statement statement) {
+        if (statement == null) {
+            return;
+        }
+        try {
+            statement.cancel();
+        } catch (SQLException e) {
+            // Оператор уже завершен или закрыт - отменять нечего
+        }
+    }
+}
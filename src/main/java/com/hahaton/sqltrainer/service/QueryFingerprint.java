@@ -0,0 +1,111 @@
+package com.hahaton.sqltrainer.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Нормализованный отпечаток SQL запроса.
+ * Запросы, которые отличаются только пробелами, переносами строк, комментариями, регистром
+ * ключевых слов и идентификаторов или завершающей ';', дают один отпечаток. Строковые литералы
+ * и идентификаторы в двойных кавычках сохраняются как есть: 'Anna' и 'ANNA' - разные запросы.
+ */
+public final class QueryFingerprint {
+
+    private QueryFingerprint() {
+    }
+
+    /**
+     * Каноническая форма запроса
+     */
+    public static String canonicalize(String query) {
+        if (query == null) {
+            return "";
+        }
+        StringBuilder out = new StringBuilder(query.length());
+        boolean pendingSpace = false;
+        int i = 0;
+        int n = query.length();
+        while (i < n) {
+            char c = query.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = true;
+                i++;
+            } else if (c == '-' && i + 1 < n && query.charAt(i + 1) == '-') {
+                while (i < n && query.charAt(i) != '\n') {
+                    i++;
+                }
+                pendingSpace = true;
+            } else if (c == '/' && i + 1 < n && query.charAt(i + 1) == '*') {
+                int end = query.indexOf("*/", i + 2);
+                i = end < 0 ? n : end + 2;
+                pendingSpace = true;
+            } else if (c == '\'' || c == '"') {
+                // Литерал или идентификатор в кавычках копируется дословно, удвоенная кавычка - экранирование
+                int start = i++;
+                while (i < n) {
+                    if (query.charAt(i) == c) {
+                        if (i + 1 < n && query.charAt(i + 1) == c) {
+                            i += 2;
+                            continue;
+                        }
+                        i++;
+                        break;
+                    }
+                    i++;
+                }
+                appendSpace(out, pendingSpace, c);
+                out.append(query, start, i);
+                pendingSpace = false;
+            } else {
+                appendSpace(out, pendingSpace, c);
+                out.append(Character.toUpperCase(c));
+                pendingSpace = false;
+                i++;
+            }
+        }
+        // Завершающие ';' не меняют смысла одиночного запроса
+        int length = out.length();
+        while (length > 0 && (out.charAt(length - 1) == ';' || out.charAt(length - 1) == ' ')) {
+            length--;
+        }
+        out.setLength(length);
+        return out.toString();
+    }
+
+    /**
+     * Отпечаток канонической формы (SHA-256), пригодный как ключ кэша
+     */
+    public static String of(String query) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(canonicalize(query).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Пробел сохраняется между двумя словами и между двумя знаками операторов ("< =" не равно "<="),
+     * а рядом со скобками, запятыми и на границе слова и оператора он не влияет на смысл
+     */
+    private static void appendSpace(StringBuilder out, boolean pendingSpace, char next) {
+        if (!pendingSpace || out.length() == 0) {
+            return;
+        }
+        char previous = out.charAt(out.length() - 1);
+        if ((isWordChar(previous) && isWordChar(next)) || (isOperatorChar(previous) && isOperatorChar(next))) {
+            out.append(' ');
+        }
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '\'' || c == '"';
+    }
+
+    private static boolean isOperatorChar(char c) {
+        return !isWordChar(c) && "(),;".indexOf(c) < 0;
+    }
+}
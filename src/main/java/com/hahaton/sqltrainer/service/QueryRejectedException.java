@@ -0,0 +1,12 @@
+package com.hahaton.sqltrainer.service;
+
+/**
+ * Запрос пользователя отклонен ограничениями тренажера (длина, время, размер результата).
+ * Сообщение показывается пользователю как есть.
+ */
+public class QueryRejectedException extends RuntimeException {
+
+    public QueryRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,148 @@
+package com.hahaton.sqltrainer.service;
+
+import com.hahaton.config.SQLTrainerConfig;
+import com.hahaton.sqltrainer.model.Task;
+import com.hahaton.sqltrainer.model.TaskResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+
+/**
+ * Кэш результатов проверки по (задача, отпечаток запроса).
+ * Студенты часто отправляют один и тот же запрос повторно - такие проверки отвечаются без песочницы и H2.
+ * Запись действительна, пока не изменились решение задачи и версия тестовых данных; запросы
+ * с функциями текущего времени или случайных чисел (в решении или у пользователя) не кэшируются.
+ */
+@Component
+public class QueryResultCache {
+
+    private final SandboxPool sandboxPool;
+    private final SQLTrainerConfig config;
+    // Порядок доступа: первой в итерации идет запись, к которой дольше всего не обращались
+    private final LinkedHashMap<String, Entry> results = new LinkedHashMap<>(16, 0.75f, true);
+    private final Counter hits;
+    private final Counter misses;
+
+    @Autowired
+    public QueryResultCache(SandboxPool sandboxPool, SQLTrainerConfig config, MeterRegistry meterRegistry) {
+        this.sandboxPool = sandboxPool;
+        this.config = config;
+        this.hits = Counter.builder("sql.result.cache").tag("result", "hit")
+                .description("Обращения к кэшу результатов проверки").register(meterRegistry);
+        this.misses = Counter.builder("sql.result.cache").tag("result", "miss")
+                .description("Обращения к кэшу результатов проверки").register(meterRegistry);
+        Gauge.builder("sql.result.cache.hit.ratio", this, QueryResultCache::getHitRatio)
+                .description("Доля проверок, отвеченных из кэша")
+                .register(meterRegistry);
+        Gauge.builder("sql.result.cache.size", this, QueryResultCache::size)
+                .description("Результаты проверки в кэше")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Сохраненный результат проверки или null
+     */
+    public TaskResult get(String taskKey, Task task, String query) {
+        if (!isCacheable(task, query)) {
+            return null;
+        }
+        String key = key(taskKey, query);
+        synchronized (results) {
+            Entry entry = results.get(key);
+            if (entry != null && entry.isValidFor(task.getSolution(), sandboxPool.getFixtureVersion())) {
+                hits.increment();
+                return entry.result;
+            }
+            if (entry != null) {
+                results.remove(key);
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Запомнить результат проверки запроса
+     */
+    public void put(String taskKey, Task task, String query, TaskResult result) {
+        if (!isCacheable(task, query)) {
+            return;
+        }
+        int limit = Math.max(0, config.getResultCacheSize());
+        if (limit == 0) {
+            return;
+        }
+        Entry entry = new Entry(result, task.getSolution(), sandboxPool.getFixtureVersion());
+        synchronized (results) {
+            results.put(key(taskKey, query), entry);
+            Iterator<Entry> iterator = results.values().iterator();
+            while (results.size() > limit && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Сбросить результаты одной задачи
+     */
+    public void invalidate(String taskKey) {
+        String prefix = taskKey + "|";
+        synchronized (results) {
+            results.keySet().removeIf(key -> key.startsWith(prefix));
+        }
+    }
+
+    /**
+     * Сбросить все результаты
+     */
+    public void invalidateAll() {
+        synchronized (results) {
+            results.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (results) {
+            return results.size();
+        }
+    }
+
+    public double getHitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0.0 : hits.count() / total;
+    }
+
+    private boolean isCacheable(Task task, String query) {
+        return config.getResultCacheSize() > 0
+                && !ExpectedResultCache.isVolatile(task.getSolution())
+                && !ExpectedResultCache.isVolatile(query);
+    }
+
+    private static String key(String taskKey, String query) {
+        return taskKey + "|" + QueryFingerprint.of(query);
+    }
+
+    private static final class Entry {
+
+        private final TaskResult result;
+        private final String solution;
+        private final String fixtureVersion;
+
+        private Entry(TaskResult result, String solution, String fixtureVersion) {
+            this.result = result;
+            this.solution = solution;
+            this.fixtureVersion = fixtureVersion;
+        }
+
+        private boolean isValidFor(String currentSolution, String currentFixtureVersion) {
+            return Objects.equals(solution, currentSolution) && Objects.equals(fixtureVersion, currentFixtureVersion);
+        }
+    }
+}
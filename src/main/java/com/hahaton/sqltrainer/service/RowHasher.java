@@ -0,0 +1,112 @@
+package com.hahaton.sqltrainer.service;
+
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.temporal.TemporalAccessor;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Канонические 64-битные хэши строк результата.
+ * Хэш строки не зависит от порядка колонок, но учитывает их имена (без учета регистра),
+ * поэтому совпадение хэшей повторяет прежнее сравнение строк через Map.equals;
+ * числа сравниваются по значению (1, 1L и 1.0 дают один хэш). Каноническое значение начинается
+ * с метки типа, поэтому VARCHAR '1' не совпадает с INT 1, а строка '2024-01-01' - с DATE.
+ */
+public final class RowHasher {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private RowHasher() {
+    }
+
+    public static long hashRow(Map<String, Object> row) {
+        long hash = 0;
+        for (Map.Entry<String, Object> column : row.entrySet()) {
+            // Сумма перемешанных хэшей колонок не зависит от их порядка
+            hash += mix(hashColumn(column.getKey(), column.getValue()));
+        }
+        return mix(hash + row.size());
+    }
+
+    /**
+     * Хэш текущей строки ResultSet без построения Map; совпадает с hashRow(Map) для той же строки.
+     * columns - индексы колонок (с нуля) из effectiveColumns
+     */
+    public static long hashRow(ResultSet rs, String[] labels, int[] columns) throws SQLException {
+        long hash = 0;
+        for (int column : columns) {
+            hash += mix(hashColumn(labels[column], JdbcUtils.getResultSetValue(rs, column + 1)));
+        }
+        return mix(hash + columns.length);
+    }
+
+    /**
+     * Колонки, которые попадут в Map строки: при повторяющихся именах остается последняя,
+     * как в ColumnMapRowMapper
+     */
+    public static int[] effectiveColumns(String[] labels) {
+        Map<String, Integer> last = new HashMap<>();
+        for (int i = 0; i < labels.length; i++) {
+            last.put(labels[i] == null ? "" : labels[i].toUpperCase(Locale.ROOT), i);
+        }
+        return last.values().stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    /**
+     * Метка типа и значение: n - число, s - строка, t - дата/время, x - двоичные данные,
+     * b - логическое, o - прочее, \u0000 - NULL
+     */
+    static String canonicalValue(Object value) {
+        if (value == null) {
+            return "\u0000";
+        }
+        if (value instanceof Number number) {
+            try {
+                return "n:" + new BigDecimal(number.toString()).stripTrailingZeros().toPlainString();
+            } catch (NumberFormatException e) {
+                return "n:" + number;
+            }
+        }
+        if (value instanceof CharSequence || value instanceof Character) {
+            return "s:" + value;
+        }
+        if (value instanceof Date || value instanceof TemporalAccessor) {
+            return "t:" + value;
+        }
+        if (value instanceof byte[] bytes) {
+            return "x:" + HexFormat.of().formatHex(bytes);
+        }
+        if (value instanceof Boolean) {
+            return "b:" + value;
+        }
+        return "o:" + value;
+    }
+
+    private static long hashColumn(String label, Object value) {
+        long hash = FNV_OFFSET;
+        hash = fnv(hash, label == null ? "" : label.toUpperCase(Locale.ROOT));
+        hash = (hash ^ 0x1F) * FNV_PRIME;
+        return fnv(hash, canonicalValue(value));
+    }
+
+    private static long fnv(long hash, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            hash = (hash ^ text.charAt(i)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+}
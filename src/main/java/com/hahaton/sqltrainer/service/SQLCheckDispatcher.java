@@ -0,0 +1,109 @@
+package com.hahaton.sqltrainer.service;
+
+import com.hahaton.config.SQLTrainerConfig;
+import com.hahaton.sqltrainer.model.TaskResult;
+import com.hahaton.sqltrainer.model.TaskSubmission;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Выполнение проверок SQL вне потоков Tomcat.
+ * Пул потоков по размеру равен пулу песочниц, перед ним ограниченная очередь допуска;
+ * если очередь заполнена, проверка сразу отклоняется (RejectedExecutionException), а не ждет.
+ */
+@Component
+public class SQLCheckDispatcher {
+
+    private final SQLTrainerService sqlTrainerService;
+    private final ThreadPoolExecutor executor;
+    private final Timer waitTimer;
+    private final Timer executionTimer;
+    private final Counter rejected;
+
+    @Autowired
+    public SQLCheckDispatcher(SQLTrainerService sqlTrainerService, SQLTrainerConfig config, MeterRegistry meterRegistry) {
+        this.sqlTrainerService = sqlTrainerService;
+        int threads = Math.max(1, config.getSandboxPoolSize());
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, config.getCheckQueueCapacity())),
+                r -> {
+                    Thread thread = new Thread(r, "sql-check-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.waitTimer = Timer.builder("sql.check.wait")
+                .description("Время ожидания проверки в очереди")
+                .register(meterRegistry);
+        this.executionTimer = Timer.builder("sql.check.duration")
+                .description("Время выполнения проверки")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("sql.check.rejected")
+                .description("Проверки, отклоненные из-за переполнения очереди")
+                .register(meterRegistry);
+        Gauge.builder("sql.check.queue.size", executor, e -> e.getQueue().size())
+                .description("Проверки, ожидающие свободной песочницы")
+                .register(meterRegistry);
+        Gauge.builder("sql.check.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Выполняющиеся проверки")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Поставить проверку в очередь.
+     *
+     * @throws RejectedExecutionException если очередь допуска заполнена
+     */
+    public CompletableFuture<TaskResult> submit(TaskSubmission submission, QueryCancellation cancellation) {
+        CompletableFuture<TaskResult> future = new CompletableFuture<>();
+        long enqueuedAt = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                waitTimer.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+                if (cancellation.isCancelled()) {
+                    // Клиент ушел, пока проверка стояла в очереди - песочницу не занимаем
+                    future.cancel(false);
+                    return;
+                }
+                long start = System.nanoTime();
+                try {
+                    future.complete(sqlTrainerService.checkTask(submission, cancellation));
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    executionTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+        return future;
+    }
+
+    /**
+     * Число проверок в очереди
+     */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
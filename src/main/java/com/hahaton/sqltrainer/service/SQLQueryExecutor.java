@@ -0,0 +1,105 @@
+package com.hahaton.sqltrainer.service;
+
+import com.hahaton.config.SQLTrainerConfig;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.StatementCallback;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Выполнение пользовательских запросов с ограничениями из SQLTrainerConfig:
+ * длина проверяется до обращения к базе, оператор получает таймаут, fetch size
+ * и предел строк, а выполнение можно отменить через QueryCancellation.
+ */
+@Component
+@RequiredArgsConstructor
+public class SQLQueryExecutor {
+
+    private final SQLTrainerConfig config;
+
+    /**
+     * Отклонить пустой или слишком длинный запрос до разбора
+     */
+    public void checkQuery(String query) {
+        if (query == null || query.isBlank()) {
+            throw new QueryRejectedException("Запрос пустой");
+        }
+        if (query.length() > config.getMaxQueryLength()) {
+            throw new QueryRejectedException("Запрос слишком длинный: " + query.length()
+                    + " символов при максимуме " + config.getMaxQueryLength());
+        }
+    }
+
+    /**
+     * Выполнить запрос пользователя, сравнивая результат с эталоном по мере чтения строк
+     */
+    public StreamingResultComparator.Outcome execute(JdbcTemplate jdbc, String query, ExpectedResult expected,
+                                                     boolean ordered, QueryCancellation cancellation) {
+        if (cancellation.isCancelled()) {
+            throw new CancellationException("Проверка отменена");
+        }
+        StreamingResultComparator comparator = new StreamingResultComparator(
+                expected, ordered, config.getPreviewRows(), config.getMaxResultRows());
+        StreamingResultComparator.Outcome outcome;
+        try {
+            outcome = jdbc.execute((StatementCallback<StreamingResultComparator.Outcome>) statement -> {
+                applyLimits(statement);
+                cancellation.register(statement);
+                try (ResultSet rs = statement.executeQuery(query)) {
+                    return comparator.extractData(rs);
+                } finally {
+                    cancellation.unregister();
+                }
+            });
+        } catch (DataAccessException e) {
+            if (cancellation.isCancelled()) {
+                throw new CancellationException("Проверка отменена");
+            }
+            if (isTimeout(e)) {
+                throw new QueryRejectedException("Превышено время выполнения запроса ("
+                        + config.getTimeoutSeconds() + " с)");
+            }
+            // Если запрос не может быть выполнен, сравниваем эталон с пустым результатом
+            // Это позволяет тренажеру работать даже с некорректными запросами
+            return comparator.emptyOutcome();
+        }
+        if (outcome.isRowLimitExceeded()) {
+            throw new QueryRejectedException("Результат запроса превышает " + config.getMaxResultRows() + " строк");
+        }
+        return outcome;
+    }
+
+    /**
+     * Первые строки результата для ответа API (sql.trainer.preview-rows)
+     */
+    public List<Map<String, Object>> preview(List<Map<String, Object>> rows) {
+        // Копия, чтобы результат в кэше не удерживал весь список строк
+        return List.copyOf(rows.subList(0, Math.min(rows.size(), Math.max(0, config.getPreviewRows()))));
+    }
+
+    private void applyLimits(Statement statement) throws SQLException {
+        statement.setQueryTimeout(config.getTimeoutSeconds());
+        statement.setFetchSize(config.getFetchSize());
+        // На одну строку больше предела, чтобы отличить "ровно предел" от переполнения
+        statement.setMaxRows(config.getMaxResultRows() + 1);
+    }
+
+    private static boolean isTimeout(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof QueryTimeoutException || cause instanceof SQLTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,156 @@
+package com.hahaton.sqltrainer.service;
+
+import com.hahaton.config.SQLTrainerConfig;
+import com.hahaton.sqltrainer.model.Progress;
+import com.hahaton.sqltrainer.model.SubmissionResult;
+import com.hahaton.sqltrainer.model.TaskResult;
+import com.hahaton.sqltrainer.model.TaskSubmission;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Отправка решения: проверка запроса и засчитывание задачи в одном запросе.
+ * Задачу засчитывает сервер по результату проверки, а не клиент. Повтор с тем же ключом идемпотентности
+ * (Idempotency-Key) получает результат первой отправки - уже готовый или еще выполняющийся, -
+ * поэтому ретраи клиента не запускают проверку и засчитывание повторно.
+ */
+@Service
+public class SQLSubmissionService {
+
+    private final SQLCheckDispatcher checkDispatcher;
+    private final ProgressService progressService;
+    private final SQLTrainerConfig config;
+    // Порядок вставки: первым идет самый старый ключ
+    private final LinkedHashMap<String, Submission> submissions = new LinkedHashMap<>();
+    private final Counter replayed;
+
+    @Autowired
+    public SQLSubmissionService(SQLCheckDispatcher checkDispatcher, ProgressService progressService,
+                                SQLTrainerConfig config, MeterRegistry meterRegistry) {
+        this.checkDispatcher = checkDispatcher;
+        this.progressService = progressService;
+        this.config = config;
+        this.replayed = Counter.builder("sql.submit.replayed")
+                .description("Повторные отправки, получившие сохраненный результат по ключу идемпотентности")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Проверить решение и, если оно верное, засчитать задачу пользователю.
+     *
+     * @param idempotencyKey ключ отправки от клиента; null - без защиты от повторов
+     * @throws RejectedExecutionException если очередь проверок заполнена
+     * @throws IdempotencyConflictException если ключ уже использован для другой отправки
+     */
+    public CompletableFuture<SubmissionResult> submit(TaskSubmission submission, String idempotencyKey,
+                                                      QueryCancellation cancellation) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return grade(submission, cancellation);
+        }
+
+        String key = submission.getUserId() + ":" + idempotencyKey.strip();
+        String fingerprint = fingerprint(submission);
+        CompletableFuture<SubmissionResult> future;
+        synchronized (submissions) {
+            evictExpired();
+            Submission existing = submissions.get(key);
+            if (existing != null) {
+                if (!existing.fingerprint.equals(fingerprint)) {
+                    throw new IdempotencyConflictException("Ключ идемпотентности уже использован для другой отправки");
+                }
+                replayed.increment();
+                return existing.future;
+            }
+            future = new CompletableFuture<>();
+            submissions.put(key, new Submission(fingerprint, future));
+        }
+
+        try {
+            grade(submission, cancellation).whenComplete((result, error) -> {
+                if (error == null) {
+                    future.complete(result);
+                } else {
+                    // Неудачную отправку можно повторить с тем же ключом
+                    forget(key, future);
+                    future.completeExceptionally(error);
+                }
+            });
+        } catch (RuntimeException e) {
+            forget(key, future);
+            throw e;
+        }
+        return future;
+    }
+
+    private CompletableFuture<SubmissionResult> grade(TaskSubmission submission, QueryCancellation cancellation) {
+        return checkDispatcher.submit(submission, cancellation).thenApply(result -> record(submission, result));
+    }
+
+    private SubmissionResult record(TaskSubmission submission, TaskResult result) {
+        String userId = submission.getUserId();
+        boolean firstCompletion = result.isCorrect()
+                && progressService.completeTask(userId, submission.getLevel(), submission.getTaskNumber());
+        Progress progress = progressService.getUserProgress(userId);
+        synchronized (progress) {
+            return SubmissionResult.builder()
+                    .result(result)
+                    .completed(progress.isCompleted(submission.getLevel(), submission.getTaskNumber()))
+                    .firstCompletion(firstCompletion)
+                    .currentLevel(progress.getCurrentLevel())
+                    .currentTask(progress.getCurrentTask())
+                    .totalCompleted(progress.getCompletedCount())
+                    .overallProgress(progressService.getOverallProgress(userId))
+                    .build();
+        }
+    }
+
+    private void forget(String key, CompletableFuture<SubmissionResult> future) {
+        synchronized (submissions) {
+            Submission current = submissions.get(key);
+            if (current != null && current.future == future) {
+                submissions.remove(key);
+            }
+        }
+    }
+
+    private void evictExpired() {
+        long deadline = System.nanoTime() - TimeUnit.SECONDS.toNanos(config.getIdempotencyTtlSeconds());
+        int limit = Math.max(1, config.getIdempotencyMaxEntries());
+        Iterator<Submission> iterator = submissions.values().iterator();
+        while (iterator.hasNext()) {
+            Submission oldest = iterator.next();
+            if (oldest.createdAt - deadline > 0 && submissions.size() < limit) {
+                break;
+            }
+            iterator.remove();
+        }
+    }
+
+    private static String fingerprint(TaskSubmission submission) {
+        return submission.getLevel() + "/" + submission.getTaskNumber() + "/"
+                + (submission.getQuery() == null ? "" : submission.getQuery().strip());
+    }
+
+    /**
+     * Сохраненная отправка: отпечаток запроса и результат (возможно, еще не готовый)
+     */
+    private static final class Submission {
+
+        private final String fingerprint;
+        private final CompletableFuture<SubmissionResult> future;
+        private final long createdAt = System.nanoTime();
+
+        private Submission(String fingerprint, CompletableFuture<SubmissionResult> future) {
+            this.fingerprint = fingerprint;
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.hahaton.sqltrainer.service;
+
+import com.hahaton.config.SQLTrainerConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пул изолированных H2 баз-песочниц, заполненных из data.sql.
+ * Каждая проверка арендует свою песочницу, поэтому DML/DDL одного пользователя не видны другим,
+ * а проверки не сериализуются на общих таблицах. После аренды транзакция откатывается;
+ * если запрос мог изменить схему, песочница пересоздается из data.sql в фоне. Если пересоздать
+ * ее не удалось, замена повторяется с растущей паузой, чтобы пул не уменьшался.
+ */
+@Component
+@RequiredArgsConstructor
+public class SandboxPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(SandboxPool.class);
+
+    static final String FIXTURE_SCRIPT = "data.sql";
+
+    private final SQLTrainerConfig config;
+
+    private final BlockingQueue<Sandbox> ready = new LinkedBlockingQueue<>();
+    private final List<Sandbox> all = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService resetExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "sql-sandbox-reset");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private String fixtureVersion;
+
+    @PostConstruct
+    void init() throws SQLException, IOException {
+        fixtureVersion = hashFixture();
+        int size = Math.max(1, config.getSandboxPoolSize());
+        for (int i = 0; i < size; i++) {
+            Sandbox sandbox = createSandbox();
+            all.add(sandbox);
+            ready.add(sandbox);
+        }
+        logger.info("Подготовлено {} SQL песочниц", size);
+    }
+
+    /**
+     * Арендовать песочницу. Ее нужно вернуть через close() (try-with-resources)
+     */
+    public Sandbox lease() throws InterruptedException {
+        Sandbox sandbox = ready.poll(config.getSandboxLeaseTimeoutSeconds(), TimeUnit.SECONDS);
+        if (sandbox == null) {
+            throw new IllegalStateException("Все SQL песочницы заняты, попробуйте позже");
+        }
+        sandbox.dirty = false;
+        return sandbox;
+    }
+
+    /**
+     * Версия тестовых данных (хэш data.sql), от которой зависят результаты эталонных запросов
+     */
+    public String getFixtureVersion() {
+        return fixtureVersion;
+    }
+
+    /**
+     * Может ли запрос изменить песочницу так, что откат транзакции этого не исправит.
+     * Одиночные SELECT/WITH/VALUES считаются безопасными, все остальное (в том числе несколько
+     * операторов через ';') требует пересоздания песочницы.
+     */
+    public static boolean requiresReset(String query) {
+        if (query == null) {
+            return false;
+        }
+        String sql = query.strip();
+        while (sql.endsWith(";")) {
+            sql = sql.substring(0, sql.length() - 1).strip();
+        }
+        if (sql.contains(";")) {
+            return true;
+        }
+        String upper = sql.toUpperCase(Locale.ROOT);
+        return !(upper.startsWith("SELECT") || upper.startsWith("WITH")
+                || upper.startsWith("VALUES") || upper.startsWith("("));
+    }
+
+    private void release(Sandbox sandbox) {
+        try {
+            sandbox.connection.rollback();
+        } catch (SQLException e) {
+            logger.warn("Не удалось откатить транзакцию песочницы: {}", e.getMessage());
+            sandbox.dirty = true;
+        }
+        if (!sandbox.dirty) {
+            ready.add(sandbox);
+            return;
+        }
+        schedule(() -> reset(sandbox), 0);
+    }
+
+    private void reset(Sandbox sandbox) {
+        try {
+            sandbox.jdbc.execute("DROP ALL OBJECTS");
+            ScriptUtils.executeSqlScript(sandbox.connection, new ClassPathResource(FIXTURE_SCRIPT));
+            sandbox.connection.commit();
+            ready.add(sandbox);
+        } catch (Exception e) {
+            logger.warn("Не удалось сбросить песочницу, создаем новую: {}", e.getMessage());
+            all.remove(sandbox);
+            sandbox.destroy();
+            replace(1);
+        }
+    }
+
+    /**
+     * Создать песочницу взамен уничтоженной; при ошибке повторить позже с удвоенной паузой
+     */
+    private void replace(int attempt) {
+        try {
+            Sandbox fresh = createSandbox();
+            all.add(fresh);
+            ready.add(fresh);
+        } catch (Exception e) {
+            long delay = Math.min(config.getSandboxReplaceMaxDelayMs(),
+                    config.getSandboxReplaceDelayMs() << Math.min(attempt - 1, 16));
+            logger.error("Не удалось создать SQL песочницу (попытка {}), повтор через {} мс: {}",
+                    attempt, delay, e.getMessage());
+            schedule(() -> replace(attempt + 1), delay);
+        }
+    }
+
+    private void schedule(Runnable task, long delayMs) {
+        try {
+            resetExecutor.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Пул останавливается
+        }
+    }
+
+    /**
+     * Число песочниц в пуле, включая арендованные и ожидающие сброса
+     */
+    int size() {
+        return all.size();
+    }
+
+    Sandbox createSandbox() throws SQLException {
+        EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+                .generateUniqueName(true)
+                .setType(EmbeddedDatabaseType.H2)
+                .addScript(FIXTURE_SCRIPT)
+                .build();
+        Connection connection = database.getConnection();
+        connection.setAutoCommit(false);
+        return new Sandbox(database, connection);
+    }
+
+    private static String hashFixture() throws IOException {
+        try (InputStream in = new ClassPathResource(FIXTURE_SCRIPT).getInputStream()) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(in.readAllBytes()));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        resetExecutor.shutdownNow();
+        all.forEach(Sandbox::destroy);
+        all.clear();
+        ready.clear();
+    }
+
+    /**
+     * Арендованная песочница: отдельная in-memory база с одним соединением без автокоммита
+     */
+    public final class Sandbox implements AutoCloseable {
+
+        private final EmbeddedDatabase database;
+        private final Connection connection;
+        private final JdbcTemplate jdbc;
+        private volatile boolean dirty;
+
+        private Sandbox(EmbeddedDatabase database, Connection connection) {
+            this.database = database;
+            this.connection = connection;
+            this.jdbc = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+        }
+
+        public JdbcTemplate jdbc() {
+            return jdbc;
+        }
+
+        /**
+         * Отметить, что после аренды песочницу нужно пересоздать из data.sql
+         */
+        public void markDirty() {
+            dirty = true;
+        }
+
+        @Override
+        public void close() {
+            release(this);
+        }
+
+        private void destroy() {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                logger.debug("Ошибка при закрытии соединения песочницы: {}", e.getMessage());
+            }
+            database.shutdown();
+        }
+    }
+}
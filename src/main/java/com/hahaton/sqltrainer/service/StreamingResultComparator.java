@@ -0,0 +1,224 @@
+package com.hahaton.sqltrainer.service;
+
+import org.springframework.jdbc.core.ColumnMapRowMapper;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Потоковое сравнение результата пользователя с эталоном.
+ * Строки читаются из ResultSet по одной, их канонические хэши вычитаются из мультимножества
+ * хэшей эталона (и сверяются по позиции, если задача требует порядка строк).
+ * В память попадают только первые строки для ответа API: превью результата и разницы
+ * (недостающие и лишние строки), поэтому размер ответа не зависит от размера результата.
+ */
+public class StreamingResultComparator implements ResultSetExtractor<StreamingResultComparator.Outcome> {
+
+    private final ExpectedResult expected;
+    private final boolean ordered;
+    private final int maxCollectedRows;
+    private final int rowLimit;
+
+    /**
+     * @param maxCollectedRows сколько строк результата и разницы сохранить для ответа API
+     */
+    public StreamingResultComparator(ExpectedResult expected, boolean ordered, int maxCollectedRows) {
+        this(expected, ordered, maxCollectedRows, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param rowLimit сколько строк результата можно прочитать; следующая строка прерывает чтение
+     */
+    public StreamingResultComparator(ExpectedResult expected, boolean ordered, int maxCollectedRows, int rowLimit) {
+        this.expected = expected;
+        this.ordered = ordered;
+        this.maxCollectedRows = maxCollectedRows;
+        this.rowLimit = rowLimit;
+    }
+
+    @Override
+    public Outcome extractData(ResultSet rs) throws SQLException {
+        ResultSetMetaData meta = rs.getMetaData();
+        String[] labels = new String[meta.getColumnCount()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = JdbcUtils.lookupColumnName(meta, i + 1);
+        }
+        int[] columns = RowHasher.effectiveColumns(labels);
+
+        long[] expectedHashes = expected.getRowHashes();
+        long[] distinctHashes = expected.getDistinctHashes();
+        // Мультимножество нужно и для упорядоченных задач: по нему считается разница строк
+        int[] remaining = expected.getHashCounts().clone();
+        ColumnMapRowMapper mapper = new ColumnMapRowMapper();
+        List<Map<String, Object>> rows = new ArrayList<>();
+        List<Map<String, Object>> extraRows = new ArrayList<>();
+        int extraCount = 0;
+
+        boolean inOrder = true;
+        int rowCount = 0;
+        while (rs.next()) {
+            if (rowCount >= rowLimit) {
+                return new Outcome(false, rows, rowCount, List.of(), 0, List.of(), 0, true);
+            }
+            Map<String, Object> row = null;
+            if (rows.size() < maxCollectedRows) {
+                row = mapper.mapRow(rs, rowCount);
+                rows.add(row);
+            }
+            long hash = row != null ? RowHasher.hashRow(row) : RowHasher.hashRow(rs, labels, columns);
+            if (ordered && inOrder) {
+                inOrder = rowCount < expectedHashes.length && hash == expectedHashes[rowCount];
+            }
+            int index = Arrays.binarySearch(distinctHashes, hash);
+            if (index < 0 || remaining[index] == 0) {
+                extraCount++;
+                if (extraRows.size() < maxCollectedRows) {
+                    extraRows.add(row != null ? row : mapper.mapRow(rs, rowCount));
+                }
+            } else {
+                remaining[index]--;
+            }
+            rowCount++;
+        }
+        return missing(rows, rowCount, remaining, extraRows, extraCount, inOrder);
+    }
+
+    /**
+     * Итог сравнения, если запрос пользователя не удалось выполнить: пустой результат
+     */
+    public Outcome emptyOutcome() {
+        return missing(List.of(), 0, expected.getHashCounts().clone(), List.of(), 0, true);
+    }
+
+    /**
+     * Строки эталона, для которых не нашлось пары в результате пользователя, в порядке эталона
+     */
+    private Outcome missing(List<Map<String, Object>> rows, int rowCount, int[] remaining,
+                            List<Map<String, Object>> extraRows, int extraCount, boolean inOrder) {
+        long[] expectedHashes = expected.getRowHashes();
+        long[] distinctHashes = expected.getDistinctHashes();
+        List<Map<String, Object>> missingRows = new ArrayList<>();
+        int missingCount = 0;
+        for (int i = 0; i < expectedHashes.length; i++) {
+            int index = Arrays.binarySearch(distinctHashes, expectedHashes[i]);
+            if (remaining[index] > 0) {
+                remaining[index]--;
+                missingCount++;
+                if (missingRows.size() < maxCollectedRows) {
+                    missingRows.add(expected.getRows().get(i));
+                }
+            }
+        }
+        boolean match = missingCount == 0 && extraCount == 0 && (!ordered || inOrder);
+        return new Outcome(match, rows, rowCount, missingRows, missingCount, extraRows, extraCount, false);
+    }
+
+    /**
+     * Нужно ли учитывать порядок строк: в решении есть ORDER BY верхнего уровня
+     * (не внутри подзапроса или OVER (...))
+     */
+    public static boolean requiresOrdering(String solution) {
+        if (solution == null) {
+            return false;
+        }
+        String sql = solution.toUpperCase(Locale.ROOT);
+        int depth = 0;
+        boolean inString = false;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                inString = !inString;
+            } else if (!inString) {
+                if (c == '(') {
+                    depth++;
+                } else if (c == ')') {
+                    depth--;
+                } else if (depth == 0 && sql.startsWith("ORDER BY", i)
+                        && (i == 0 || !Character.isLetterOrDigit(sql.charAt(i - 1)))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public static final class Outcome {
+
+        private final boolean match;
+        private final List<Map<String, Object>> rows;
+        private final int rowCount;
+        private final List<Map<String, Object>> missingRows;
+        private final int missingCount;
+        private final List<Map<String, Object>> extraRows;
+        private final int extraCount;
+        private final boolean rowLimitExceeded;
+
+        private Outcome(boolean match, List<Map<String, Object>> rows, int rowCount,
+                        List<Map<String, Object>> missingRows, int missingCount,
+                        List<Map<String, Object>> extraRows, int extraCount, boolean rowLimitExceeded) {
+            this.match = match;
+            this.rows = rows;
+            this.rowCount = rowCount;
+            this.missingRows = missingRows;
+            this.missingCount = missingCount;
+            this.extraRows = extraRows;
+            this.extraCount = extraCount;
+            this.rowLimitExceeded = rowLimitExceeded;
+        }
+
+        public boolean isMatch() {
+            return match;
+        }
+
+        /**
+         * Первые строки результата пользователя (не больше maxCollectedRows)
+         */
+        public List<Map<String, Object>> getRows() {
+            return rows;
+        }
+
+        /**
+         * Сколько строк вернул запрос пользователя
+         */
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        /**
+         * Строки эталона, которых нет в результате пользователя (не больше maxCollectedRows)
+         */
+        public List<Map<String, Object>> getMissingRows() {
+            return missingRows;
+        }
+
+        public int getMissingCount() {
+            return missingCount;
+        }
+
+        /**
+         * Строки пользователя, которых нет в эталоне (не больше maxCollectedRows)
+         */
+        public List<Map<String, Object>> getExtraRows() {
+            return extraRows;
+        }
+
+        public int getExtraCount() {
+            return extraCount;
+        }
+
+        /**
+         * Результат оказался больше допустимого числа строк и был прочитан не полностью
+         */
+        public boolean isRowLimitExceeded() {
+            return rowLimitExceeded;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.hahaton.sqltrainer.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hahaton.sqltrainer.model.Progress;
+import com.hahaton.sqltrainer.model.Task;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Неизменяемый каталог задач SQL тренажера.
+ * Задачи лежат в массивах по уровню и номеру, поэтому поиск - это два обращения по индексу
+ * без строковых ключей. JSON каждой задачи и каждого уровня сериализуется один раз при сборке
+ * каталога и отдается вместе со строгим ETag. Каталог заменяется целиком, а не изменяется.
+ */
+public final class TaskCatalog {
+
+    private static final Json EMPTY_LEVEL = new Json("[]".getBytes(StandardCharsets.UTF_8));
+
+    private final Task[][] tasks;
+    private final List<List<Task>> levels;
+    private final Json[][] taskJson;
+    private final Json[] levelJson;
+    private final List<Task> all;
+
+    private TaskCatalog(Task[][] tasks, List<List<Task>> levels, Json[][] taskJson, Json[] levelJson, List<Task> all) {
+        this.tasks = tasks;
+        this.levels = levels;
+        this.taskJson = taskJson;
+        this.levelJson = levelJson;
+        this.all = all;
+    }
+
+    /**
+     * Собрать каталог
+     *
+     * @throws IllegalArgumentException если у задачи нет уровня или номера, задача не помещается
+     *                                  в маску прогресса, номер повторяется или задачу нельзя сериализовать
+     */
+    public static TaskCatalog of(Collection<Task> source, ObjectMapper objectMapper) {
+        int maxLevel = 0;
+        for (Task task : source) {
+            if (task.getLevel() == null || task.getLevel() < 1
+                    || task.getTaskNumber() == null || task.getTaskNumber() < 1) {
+                throw new IllegalArgumentException("У задачи \"" + task.getTitle() + "\" не задан уровень или номер");
+            }
+            if (Progress.bit(task.getLevel(), task.getTaskNumber()) < 0) {
+                throw new IllegalArgumentException("Задача " + task.getLevel() + "-" + task.getTaskNumber()
+                        + " вне " + Progress.LEVELS + " уровней по " + Progress.TASKS_PER_LEVEL + " задач");
+            }
+            maxLevel = Math.max(maxLevel, task.getLevel());
+        }
+
+        List<List<Task>> grouped = new ArrayList<>();
+        for (int level = 0; level <= maxLevel; level++) {
+            grouped.add(new ArrayList<>());
+        }
+        for (Task task : source) {
+            grouped.get(task.getLevel()).add(task);
+        }
+
+        Task[][] tasks = new Task[maxLevel + 1][];
+        Json[][] taskJson = new Json[maxLevel + 1][];
+        Json[] levelJson = new Json[maxLevel + 1];
+        List<List<Task>> levels = new ArrayList<>();
+        List<Task> all = new ArrayList<>();
+        for (int level = 0; level <= maxLevel; level++) {
+            List<Task> levelTasks = grouped.get(level);
+            levelTasks.sort(Comparator.comparing(Task::getTaskNumber));
+            int maxNumber = levelTasks.isEmpty() ? 0 : levelTasks.get(levelTasks.size() - 1).getTaskNumber();
+            tasks[level] = new Task[maxNumber + 1];
+            taskJson[level] = new Json[maxNumber + 1];
+            for (Task task : levelTasks) {
+                if (tasks[level][task.getTaskNumber()] != null) {
+                    throw new IllegalArgumentException("Задача " + level + "-" + task.getTaskNumber() + " задана дважды");
+                }
+                tasks[level][task.getTaskNumber()] = task;
+                taskJson[level][task.getTaskNumber()] = serialize(objectMapper, task);
+            }
+            levelJson[level] = levelTasks.isEmpty() ? EMPTY_LEVEL : serialize(objectMapper, levelTasks);
+            levels.add(Collections.unmodifiableList(levelTasks));
+            all.addAll(levelTasks);
+        }
+        return new TaskCatalog(tasks, Collections.unmodifiableList(levels), taskJson, levelJson,
+                Collections.unmodifiableList(all));
+    }
+
+    /**
+     * Задача или null
+     */
+    public Task get(int level, int taskNumber) {
+        return inRange(level, taskNumber) ? tasks[level][taskNumber] : null;
+    }
+
+    /**
+     * Задачи уровня по возрастанию номера; пустой список для неизвестного уровня
+     */
+    public List<Task> getLevel(int level) {
+        return level >= 1 && level < levels.size() ? levels.get(level) : List.of();
+    }
+
+    /**
+     * Готовый JSON задачи или null
+     */
+    public Json getTaskJson(int level, int taskNumber) {
+        return inRange(level, taskNumber) ? taskJson[level][taskNumber] : null;
+    }
+
+    /**
+     * Готовый JSON задач уровня; "[]" для неизвестного уровня
+     */
+    public Json getLevelJson(int level) {
+        return level >= 1 && level < levelJson.length ? levelJson[level] : EMPTY_LEVEL;
+    }
+
+    /**
+     * Все задачи по возрастанию уровня и номера
+     */
+    public List<Task> getAll() {
+        return all;
+    }
+
+    public int size() {
+        return all.size();
+    }
+
+    private boolean inRange(int level, int taskNumber) {
+        return level >= 1 && level < tasks.length && taskNumber >= 1 && taskNumber < tasks[level].length;
+    }
+
+    private static Json serialize(ObjectMapper objectMapper, Object value) {
+        try {
+            return new Json(objectMapper.writeValueAsBytes(value));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Не удалось сериализовать задачи: " + e.getOriginalMessage(), e);
+        }
+    }
+
+    /**
+     * Сериализованный ответ и его строгий ETag (хэш содержимого)
+     */
+    public static final class Json {
+
+        private final byte[] body;
+        private final String eTag;
+
+        private Json(byte[] body) {
+            this.body = body;
+            this.eTag = "\"" + HexFormat.of().formatHex(sha256(body), 0, 16) + "\"";
+        }
+
+        /**
+         * Тело ответа; массив общий, изменять его нельзя
+         */
+        public byte[] getBody() {
+            return body;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+
+        /**
+         * Совпадает ли ETag с заголовком If-None-Match (список через запятую, "*" или слабые W/"...")
+         */
+        public boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+                return false;
+            }
+            return Arrays.stream(ifNoneMatch.split(","))
+                    .map(String::strip)
+                    .map(tag -> tag.startsWith("W/") ? tag.substring(2) : tag)
+                    .anyMatch(tag -> tag.equals("*") || tag.equals(eTag));
+        }
+
+        private static byte[] sha256(byte[] body) {
+            try {
+                return MessageDigest.getInstance("SHA-256").digest(body);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.hahaton.ai;
+
+import com.hahaton.config.DJLConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.actuate.health.Status;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Тестирование прогрева DJL моделей при старте")
+class DJLModelWarmupTest {
+
+    @Mock
+    private DJLService djlService;
+
+    private DJLConfig djlConfig;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    @DisplayName("Инициализация тестового окружения")
+    void setUp() {
+        djlConfig = new DJLConfig();
+        djlConfig.setWarmupIterations(2);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    @DisplayName("Без моделей для предзагрузки экземпляр сразу готов")
+    void testNothingToPreload() {
+        // Given
+        DJLModelWarmup warmup = new DJLModelWarmup(djlService, djlConfig, meterRegistry);
+
+        // When
+        warmup.warmUpOnStartup();
+
+        // Then
+        assertThat(warmup.isFinished()).isTrue();
+        assertThat(new DJLWarmupHealthIndicator(warmup).health().getStatus()).isEqualTo(Status.UP);
+        verifyNoInteractions(djlService);
+    }
+
+    @Test
+    @DisplayName("Пока модели прогреваются, readiness сообщает OUT_OF_SERVICE")
+    void testNotReadyUntilWarmedUp() throws Exception {
+        // Given
+        djlConfig.setPreloadModels(List.of("resnet50-imagenet", " resnet50-coco ", "resnet50-imagenet"));
+        DJLModelWarmup warmup = new DJLModelWarmup(djlService, djlConfig, meterRegistry);
+        DJLWarmupHealthIndicator indicator = new DJLWarmupHealthIndicator(warmup);
+        assertThat(indicator.health().getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+
+        // When
+        warmup.run();
+
+        // Then
+        InOrder order = inOrder(djlService);
+        order.verify(djlService).warmUp("resnet50-imagenet", 2);
+        order.verify(djlService).warmUp("resnet50-coco", 2);
+        order.verifyNoMoreInteractions();
+        assertThat(indicator.health().getStatus()).isEqualTo(Status.UP);
+        assertThat(warmup.getStats()).containsOnlyKeys("resnet50-imagenet", "resnet50-coco");
+        assertThat(meterRegistry.get("djl.model.warmup").tag("result", "ready").timers()).hasSize(2);
+    }
+
+    @Test
+    @DisplayName("Ошибка прогрева одной модели не мешает остальным и не блокирует готовность")
+    void testFailedModelDoesNotBlockReadiness() throws Exception {
+        // Given
+        djlConfig.setPreloadModels(List.of("resnet50-imagenet", "resnet50-coco"));
+        doThrow(new IllegalStateException("модель не найдена в кэше"))
+                .when(djlService).warmUp("resnet50-imagenet", 2);
+        DJLModelWarmup warmup = new DJLModelWarmup(djlService, djlConfig, meterRegistry);
+
+        // When
+        warmup.run();
+
+        // Then
+        assertThat(warmup.isFinished()).isTrue();
+        assertThat(warmup.getStats().get("resnet50-imagenet").toString())
+                .startsWith("FAILED").contains("модель не найдена в кэше");
+        assertThat(warmup.getStats().get("resnet50-coco").toString()).startsWith("READY");
+        assertThat(meterRegistry.get("djl.model.warmup").tag("result", "failed").timer().count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,142 @@
+package com.hahaton.ai;
+
+import ai.djl.modality.Classifications;
+import ai.djl.modality.cv.Image;
+import com.hahaton.config.DJLConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Тестирование пакетной обработки изображений DJL")
+class DJLServiceTest {
+
+    @Mock
+    private DJLModelRegistry modelRegistry;
+
+    private DJLConfig djlConfig;
+    private DJLService djlService;
+    private final List<Integer> chunkSizes = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    @DisplayName("Инициализация тестового окружения")
+    void setUp() {
+        djlConfig = new DJLConfig();
+        djlConfig.setBatchChunkSize(2);
+        djlConfig.setBatchMaxWaitMs(1000);
+        djlConfig.setImageDecodeThreads(2);
+        djlConfig.setPredictorPoolSize(1);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        djlService = new DJLService(modelRegistry, djlConfig, new ImageLoader(djlConfig, meterRegistry), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        djlService.shutdown();
+    }
+
+    private void stubClassifier() throws Exception {
+        when(modelRegistry.batchPredict(eq(DJLService.CLASSIFICATION_MODEL), any(), anyList())).thenAnswer(invocation -> {
+            List<Image> images = invocation.getArgument(2);
+            chunkSizes.add(images.size());
+            List<Classifications> results = new ArrayList<>();
+            for (Image image : images) {
+                results.add(new Classifications(List.of("w" + image.getWidth()), List.of(1.0)));
+            }
+            return results;
+        });
+    }
+
+    private static byte[] png(int width) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, 8, BufferedImage.TYPE_INT_RGB), "png", out);
+        return out.toByteArray();
+    }
+
+    @Test
+    @DisplayName("Каждое изображение получает свою строку результата, последняя строка - итог")
+    void testClassifyBatchStreamsResultsAndSummary() throws Exception {
+        // Given
+        stubClassifier();
+        List<DJLService.BatchImage> images = List.of(
+                DJLService.BatchImage.ofUpload("a.png", png(10)),
+                DJLService.BatchImage.ofUpload("broken.png", "not an image".getBytes()),
+                DJLService.BatchImage.ofUpload("b.png", png(20)),
+                DJLService.BatchImage.ofUpload("c.png", png(30)));
+        List<Map<String, Object>> lines = new ArrayList<>();
+
+        // When
+        djlService.classifyBatch(images, lines::add);
+
+        // Then
+        assertThat(lines).hasSize(5);
+        Map<String, Object> summary = lines.get(4);
+        assertThat(summary).containsEntry("done", true)
+                .containsEntry("total", 4)
+                .containsEntry("succeeded", 3)
+                .containsEntry("failed", 1);
+        assertThat(lines.subList(0, 4)).extracting(line -> line.get("index")).containsExactlyInAnyOrder(0, 1, 2, 3);
+        assertThat(lines.subList(0, 4)).filteredOn(line -> line.get("index").equals(1)).singleElement()
+                .satisfies(line -> {
+                    assertThat(line).containsEntry("success", false).containsEntry("source", "broken.png");
+                    assertThat(line.get("error")).asString().contains("формат");
+                });
+        assertThat(lines.subList(0, 4)).filteredOn(line -> line.get("index").equals(2)).singleElement()
+                .satisfies(line -> assertThat(line.get("predictions").toString()).contains("w20"));
+    }
+
+    @Test
+    @DisplayName("Изображения передаются в batchPredict пакетами не больше djl.batch-chunk-size")
+    void testBatchPredictInChunks() throws Exception {
+        // Given
+        stubClassifier();
+        List<DJLService.BatchImage> images = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            images.add(DJLService.BatchImage.ofUpload(i + ".png", png(i)));
+        }
+
+        // When
+        djlService.classifyBatch(images, line -> { });
+
+        // Then
+        assertThat(chunkSizes).allMatch(size -> size <= 2);
+        assertThat(chunkSizes.stream().mapToInt(Integer::intValue).sum()).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("Ошибка предсказания помечает изображения пакета как неуспешные, но не прерывает поток")
+    void testFailedChunkReported() throws Exception {
+        // Given
+        when(modelRegistry.batchPredict(eq(DJLService.CLASSIFICATION_MODEL), any(), anyList()))
+                .thenThrow(new IllegalStateException("Нет свободного предиктора"));
+        List<Map<String, Object>> lines = new ArrayList<>();
+
+        // When
+        djlService.classifyBatch(List.of(DJLService.BatchImage.ofUpload("a.png", png(10))), lines::add);
+
+        // Then
+        assertThat(lines).hasSize(2);
+        assertThat(lines.get(0)).containsEntry("success", false).containsEntry("error", "Нет свободного предиктора");
+        assertThat(lines.get(1)).containsEntry("succeeded", 0).containsEntry("failed", 1);
+    }
+}
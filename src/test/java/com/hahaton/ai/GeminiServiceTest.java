@@ -1,6 +1,9 @@
 package com.hahaton.ai;
 
 import com.hahaton.config.GeminiConfig;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -8,7 +11,27 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -20,10 +43,379 @@ class GeminiServiceTest {
     
     private GeminiService geminiService;
     
+    private HttpServer stubServer;
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+    private volatile int stubStatus = 200;
+    private final AtomicInteger stubFailures = new AtomicInteger();
+    private volatile boolean stubStreamStalls;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    
     @BeforeEach
     @DisplayName("Инициализация тестового окружения")
     void setUp() {
-        geminiService = new GeminiService(geminiConfig);
+        geminiService = new GeminiService(geminiConfig, new SimpleMeterRegistry());
+    }
+    
+    @AfterEach
+    void tearDown() {
+        if (stubServer != null) {
+            stubServer.stop(0);
+        }
+    }
+    
+    /**
+     * Локальная заглушка Gemini API: отвечает с задержкой, чтобы одинаковые запросы пересекались.
+     * Сбои задаются через stubStatus (все ответы) и stubFailures (число ближайших ответов 503);
+     * при stubStreamStalls поток после первого фрагмента зависает.
+     * Повторы по умолчанию выключены, чтобы каждый вызов был ровно одним запросом к заглушке.
+     */
+    private GeminiService stubbedService() throws IOException {
+        return stubbedService(config -> { });
+    }
+    
+    private GeminiService stubbedService(long requestTimeoutMs) throws IOException {
+        return stubbedService(config -> config.setRequestTimeoutMs(requestTimeoutMs));
+    }
+    
+    private GeminiService stubbedService(Consumer<GeminiConfig> customizer) throws IOException {
+        stubServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stubServer.setExecutor(Executors.newCachedThreadPool());
+        stubServer.createContext("/v1beta/models/test:generateContent", exchange -> {
+            int call = upstreamCalls.incrementAndGet();
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = ("{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"Ответ " + call + "\"}]}}]}")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(stubFailures.getAndDecrement() > 0 ? 503 : stubStatus, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        stubServer.createContext("/v1beta/models/test:streamGenerateContent", exchange -> {
+            upstreamCalls.incrementAndGet();
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (String token : new String[]{"JOIN ", "объединяет ", "таблицы"}) {
+                    out.write(("data: {\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"" + token + "\"}]}}]}\n\n")
+                            .getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                    try {
+                        Thread.sleep(stubStreamStalls ? 10_000 : 150);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            } catch (IOException e) {
+                // Клиент закрыл соединение
+            }
+        });
+        stubServer.start();
+        
+        GeminiConfig config = new GeminiConfig();
+        config.setApiKey("test-key");
+        config.setApiUrl("http://127.0.0.1:" + stubServer.getAddress().getPort() + "/v1beta/models/test:generateContent");
+        config.setMaxTokens(100);
+        config.setTemperature(0.5);
+        config.setConnectTimeoutMs(1000);
+        config.setMaxRetries(0);
+        customizer.accept(config);
+        return new GeminiService(config, meterRegistry);
+    }
+    
+    @Test
+    @DisplayName("Должен отправлять один запрос для одновременных одинаковых вопросов")
+    void shouldCoalesceConcurrentIdenticalQuestions() throws Exception {
+        // Given
+        GeminiService service = stubbedService();
+        int clients = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        CountDownLatch start = new CountDownLatch(1);
+        
+        // When
+        List<Future<String>> answers = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            String question = i % 2 == 0 ? "Что такое JOIN?" : "  что такое   join ";
+            answers.add(executor.submit(() -> {
+                start.await();
+                return service.generateResponse(question);
+            }));
+        }
+        start.countDown();
+        
+        // Then
+        for (Future<String> answer : answers) {
+            assertThat(answer.get(10, TimeUnit.SECONDS)).isEqualTo("Ответ 1");
+        }
+        executor.shutdown();
+        assertThat(upstreamCalls.get()).isEqualTo(1);
+        
+        // Повторный вопрос отвечается из кэша
+        assertThat(service.generateResponse("что такое join?")).isEqualTo("Ответ 1");
+        assertThat(upstreamCalls.get()).isEqualTo(1);
+    }
+    
+    @Test
+    @DisplayName("Не должен блокировать вызывающий поток на время ответа API")
+    void shouldAnswerWithoutBlockingCaller() throws Exception {
+        // Given
+        GeminiService service = stubbedService();
+        
+        // When
+        CompletableFuture<String> answer = service.generateResponseAsync("Что такое VIEW?");
+        
+        // Then
+        assertThat(answer).isNotDone();
+        assertThat(answer.get(5, TimeUnit.SECONDS)).isEqualTo("Ответ 1");
+        assertThat(meterRegistry.get("gemini.http.latency").tag("outcome", "200").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("gemini.http.in_flight").gauge().value()).isZero();
+    }
+    
+    @Test
+    @DisplayName("Должен прерывать вызов по дедлайну из конфигурации")
+    void shouldAbortCallAfterDeadline() throws Exception {
+        // Given
+        GeminiService service = stubbedService(50);
+        
+        // When
+        String answer = service.generateResponseAsync("Что такое триггер?").get(5, TimeUnit.SECONDS);
+        
+        // Then
+        assertThat(answer).startsWith("Извините");
+        assertThat(service.getResponseCache().size()).isZero();
+        assertThat(meterRegistry.get("gemini.http.latency").tag("outcome", "error").timer().count()).isEqualTo(1);
+    }
+    
+    @Test
+    @DisplayName("Должен передавать фрагменты потокового ответа по мере прихода")
+    void shouldStreamChunksAsTheyArrive() throws Exception {
+        // Given
+        GeminiService service = stubbedService();
+        List<String> chunks = new CopyOnWriteArrayList<>();
+        AtomicLong firstChunkAt = new AtomicLong();
+        long start = System.nanoTime();
+        
+        // When
+        service.streamResponse("Что такое JOIN?", chunk -> {
+            firstChunkAt.compareAndSet(0, System.nanoTime());
+            chunks.add(chunk);
+        }).get(5, TimeUnit.SECONDS);
+        long finishedAt = System.nanoTime();
+        
+        // Then
+        assertThat(chunks).containsExactly("JOIN ", "объединяет ", "таблицы");
+        assertThat(TimeUnit.NANOSECONDS.toMillis(firstChunkAt.get() - start))
+                .isLessThan(TimeUnit.NANOSECONDS.toMillis(finishedAt - start) - 200);
+        
+        // Собранный ответ попадает в кэш и доступен обычному запросу
+        assertThat(service.generateResponse("что такое join")).isEqualTo("JOIN объединяет таблицы");
+        assertThat(upstreamCalls.get()).isEqualTo(1);
+    }
+    
+    @Test
+    @DisplayName("Должен прерывать зависший поток по дедлайну между фрагментами и освобождать слот")
+    void shouldAbortStalledStreamAfterIdleTimeout() throws Exception {
+        // Given
+        stubStreamStalls = true;
+        GeminiService service = stubbedService(config -> {
+            config.setStreamIdleTimeoutMs(300);
+            config.setMaxConcurrentCalls(1);
+        });
+        List<String> chunks = new CopyOnWriteArrayList<>();
+        
+        // When
+        CompletableFuture<Void> stream = service.streamResponse("Что такое JOIN?", chunks::add);
+        
+        // Then
+        assertThatThrownBy(() -> stream.get(3, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(TimeoutException.class);
+        assertThat(chunks).containsExactly("JOIN ");
+        assertThat(service.getResilienceStats()).containsEntry("bulkheadAvailable", 1);
+        assertThat(service.getResponseCache().getIfPresent("Что такое JOIN?")).isNull();
+        service.shutdown();
+    }
+    
+    @Test
+    @DisplayName("Должен закрывать поток Gemini при отмене вызывающим")
+    void shouldCloseStreamWhenCancelled() throws Exception {
+        // Given
+        stubStreamStalls = true;
+        GeminiService service = stubbedService(config -> config.setMaxConcurrentCalls(1));
+        CountDownLatch firstChunk = new CountDownLatch(1);
+        CompletableFuture<Void> stream = service.streamResponse("Что такое JOIN?", chunk -> firstChunk.countDown());
+        assertThat(firstChunk.await(3, TimeUnit.SECONDS)).isTrue();
+        
+        // When
+        stream.cancel(true);
+        
+        // Then: слот bulkhead освобождается, как только чтение прервано
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(3);
+        while (!Integer.valueOf(1).equals(service.getResilienceStats().get("bulkheadAvailable"))
+                && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(service.getResilienceStats()).containsEntry("bulkheadAvailable", 1);
+        assertThat(service.getCircuitState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        service.shutdown();
+    }
+    
+    @Test
+    @DisplayName("Не должен кэшировать ошибки Gemini API")
+    void shouldNotCacheFailedResponses() throws Exception {
+        // Given
+        GeminiService service = stubbedService();
+        stubStatus = 500;
+        
+        // When
+        String failed = service.generateResponse("Что такое индекс?");
+        stubStatus = 200;
+        String answered = service.generateResponse("Что такое индекс?");
+        
+        // Then
+        assertThat(failed).startsWith("Извините");
+        assertThat(answered).isEqualTo("Ответ 2");
+        assertThat(upstreamCalls.get()).isEqualTo(2);
+    }
+    
+    @Test
+    @DisplayName("Должен размыкать цепь после серии сбоев и отказывать без обращения к API")
+    void shouldOpenCircuitAfterConsecutiveFailures() throws Exception {
+        // Given
+        GeminiService service = stubbedService(config -> {
+            config.setCircuitFailureThreshold(3);
+            config.setCircuitOpenMs(60000);
+        });
+        stubStatus = 500;
+        
+        // When
+        for (int i = 0; i < 3; i++) {
+            service.generateResponse("Что такое индекс?");
+        }
+        String rejected = service.generateResponse("Что такое индекс?");
+        
+        // Then
+        assertThat(upstreamCalls.get()).isEqualTo(3);
+        assertThat(rejected).contains("временно недоступен");
+        assertThat(service.getCircuitState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(service.isAvailable()).isFalse();
+        assertThat(meterRegistry.get("gemini.rejected").tag("reason", "circuit_open").counter().count()).isEqualTo(1);
+        assertThat(new GeminiHealthIndicator(service).health().getStatus()).isEqualTo(GeminiHealthIndicator.DEGRADED);
+    }
+    
+    @Test
+    @DisplayName("Должен замыкать цепь после успешного пробного вызова")
+    void shouldCloseCircuitAfterSuccessfulTrial() throws Exception {
+        // Given
+        GeminiService service = stubbedService(config -> {
+            config.setCircuitFailureThreshold(1);
+            config.setCircuitOpenMs(100);
+        });
+        stubStatus = 500;
+        service.generateResponse("Что такое индекс?");
+        assertThat(service.getCircuitState()).isEqualTo(CircuitBreaker.State.OPEN);
+        
+        // When
+        Thread.sleep(150);
+        stubStatus = 200;
+        String answer = service.generateResponse("Что такое индекс?");
+        
+        // Then
+        assertThat(answer).isEqualTo("Ответ 2");
+        assertThat(service.getCircuitState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+    
+    @Test
+    @DisplayName("Должен повторять временные сбои только в пределах бюджета повторов")
+    void shouldRetryTransientFailuresWithinBudget() throws Exception {
+        // Given
+        GeminiService service = stubbedService(config -> {
+            config.setMaxRetries(2);
+            config.setRetryBaseDelayMs(10);
+            config.setRetryBudgetRatio(0);
+            config.setRetryBudgetMaxTokens(1);
+        });
+        stubFailures.set(1);
+        
+        // When
+        String recovered = service.generateResponse("Что такое индекс?");
+        stubStatus = 500;
+        String failed = service.generateResponse("Что такое курсор?");
+        
+        // Then
+        assertThat(recovered).isEqualTo("Ответ 2");
+        assertThat(failed).startsWith("Извините");
+        // Второй вопрос не повторялся: единственный токен бюджета потрачен на первый
+        assertThat(upstreamCalls.get()).isEqualTo(3);
+        assertThat(meterRegistry.get("gemini.retries").counter().count()).isEqualTo(1);
+    }
+    
+    @Test
+    @DisplayName("Должен прекращать повторы, когда истек общий дедлайн вызова")
+    void shouldStopRetryingAfterOverallDeadline() throws Exception {
+        // Given
+        GeminiService service = stubbedService(config -> {
+            config.setRequestTimeoutMs(700);
+            config.setMaxRetries(10);
+            config.setRetryBaseDelayMs(1);
+            config.setRetryBudgetMaxTokens(100);
+        });
+        // Первый запрос холодного HttpClient заметно дольше, прогреваем его до замера
+        service.generateResponse("Что такое схема?");
+        upstreamCalls.set(0);
+        stubStatus = 503;
+        long start = System.nanoTime();
+
+        // When
+        String answer = service.generateResponseAsync("Что такое представление?").get(5, TimeUnit.SECONDS);
+
+        // Then
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertThat(answer).startsWith("Извините");
+        // Заглушка отвечает за 200 мс, поэтому в 700 мс укладываются не больше четырех попыток, а не все одиннадцать
+        assertThat(upstreamCalls.get()).isBetween(2, 4);
+        assertThat(elapsedMs).isLessThan(1500);
+    }
+
+    @Test
+    @DisplayName("Должен отклонять вызовы сверх лимита одновременных запросов")
+    void shouldRejectCallsBeyondBulkhead() throws Exception {
+        // Given
+        GeminiService service = stubbedService(config -> config.setMaxConcurrentCalls(1));
+        
+        // When
+        CompletableFuture<String> first = service.generateResponseAsync("Что такое индекс?");
+        String second = service.generateResponseAsync("Что такое курсор?").get(1, TimeUnit.SECONDS);
+        
+        // Then
+        assertThat(second).contains("временно недоступен");
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("Ответ 1");
+        assertThat(upstreamCalls.get()).isEqualTo(1);
+        assertThat(service.getCircuitState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+    
+    @Test
+    @DisplayName("Должен вытеснять давние ответы при переполнении кэша")
+    void shouldEvictLeastRecentlyUsedAnswers() {
+        // Given
+        GeminiResponseCache cache = new GeminiResponseCache(2, 3600, new SimpleMeterRegistry());
+        AtomicInteger loads = new AtomicInteger();
+        
+        // When
+        cache.get("a", q -> CompletableFuture.completedFuture("A" + loads.incrementAndGet())).join();
+        cache.get("b", q -> CompletableFuture.completedFuture("B" + loads.incrementAndGet())).join();
+        cache.get("c", q -> CompletableFuture.completedFuture("C" + loads.incrementAndGet())).join();
+        String reloaded = cache.get("a", q -> CompletableFuture.completedFuture("A" + loads.incrementAndGet())).join();
+        
+        // Then
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(reloaded).isEqualTo("A4");
+        assertThat(GeminiResponseCache.normalize("  Что   такое JOIN?!")).isEqualTo("что такое join");
     }
     
     @Test
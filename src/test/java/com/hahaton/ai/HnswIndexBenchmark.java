@@ -0,0 +1,104 @@
+package com.hahaton.ai;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Задержка поиска в HNSW индексе против полного перебора на векторах размерности модели эмбеддингов.
+ * Полнота (recall@10) при выбранном efSearch печатается при подготовке состояния.
+ * Запуск: mvn test-compile, затем main этого класса с тестовым classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HnswIndexBenchmark {
+
+    private static final int DIMENSION = 384;
+
+    @Param({"1000", "10000"})
+    private int size;
+
+    @Param({"32", "64"})
+    private int efSearch;
+
+    private HnswIndex index;
+    private float[][] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(7);
+        index = new HnswIndex(DIMENSION, 16, 200, efSearch);
+        for (int i = 0; i < size; i++) {
+            index.add(randomVector(random));
+        }
+        queries = new float[256][];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = randomVector(random);
+        }
+
+        int found = 0;
+        for (float[] query : queries) {
+            Set<Integer> exact = new HashSet<>();
+            index.exactSearch(query, 10).forEach(neighbor -> exact.add(neighbor.getId()));
+            for (HnswIndex.Neighbor neighbor : index.search(query, 10)) {
+                if (exact.contains(neighbor.getId())) {
+                    found++;
+                }
+            }
+        }
+        System.out.printf("%nsize=%d efSearch=%d recall@10=%.3f%n", size, efSearch, (double) found / (queries.length * 10));
+    }
+
+    @Benchmark
+    public List<HnswIndex.Neighbor> hnsw() {
+        return index.search(nextQuery(), 10);
+    }
+
+    @Benchmark
+    public List<HnswIndex.Neighbor> bruteForce() {
+        return index.exactSearch(nextQuery(), 10);
+    }
+
+    private float[] nextQuery() {
+        next = (next + 1) % queries.length;
+        return queries[next];
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSION];
+        for (int d = 0; d < DIMENSION; d++) {
+            vector[d] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(HnswIndexBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
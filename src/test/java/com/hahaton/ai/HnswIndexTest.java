@@ -0,0 +1,158 @@
+package com.hahaton.ai;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Тестирование HNSW индекса")
+class HnswIndexTest {
+
+    private static final int DIMENSION = 32;
+
+    @TempDir
+    Path tempDir;
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSION];
+        for (int d = 0; d < DIMENSION; d++) {
+            vector[d] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static HnswIndex randomIndex(Random random, int size) {
+        HnswIndex index = new HnswIndex(DIMENSION, 16, 100, 64);
+        for (int i = 0; i < size; i++) {
+            assertThat(index.add(randomVector(random))).isEqualTo(i);
+        }
+        return index;
+    }
+
+    private static double recallAt10(HnswIndex index, Random random, int queries) {
+        int found = 0;
+        for (int q = 0; q < queries; q++) {
+            float[] query = randomVector(random);
+            Set<Integer> exact = new HashSet<>();
+            index.exactSearch(query, 10).forEach(neighbor -> exact.add(neighbor.getId()));
+            for (HnswIndex.Neighbor neighbor : index.search(query, 10)) {
+                if (exact.contains(neighbor.getId())) {
+                    found++;
+                }
+            }
+        }
+        return (double) found / (queries * 10);
+    }
+
+    @Test
+    @DisplayName("Должен находить почти всех точных ближайших соседей")
+    void shouldReachHighRecall() {
+        // Given
+        Random random = new Random(1);
+        HnswIndex index = randomIndex(random, 2000);
+
+        // When
+        double recall = recallAt10(index, random, 100);
+
+        // Then
+        assertThat(recall).isGreaterThan(0.95);
+    }
+
+    @Test
+    @DisplayName("Должен возвращать соседей по убыванию сходства")
+    void shouldReturnNeighborsOrderedBySimilarity() {
+        // Given
+        Random random = new Random(2);
+        HnswIndex index = randomIndex(random, 500);
+        float[] query = randomVector(random);
+
+        // When
+        List<HnswIndex.Neighbor> neighbors = index.search(query, 5);
+
+        // Then
+        assertThat(neighbors).hasSize(5);
+        for (int i = 1; i < neighbors.size(); i++) {
+            assertThat(neighbors.get(i).getScore()).isLessThanOrEqualTo(neighbors.get(i - 1).getScore());
+        }
+        assertThat(neighbors.get(0).getId()).isEqualTo(index.exactSearch(query, 1).get(0).getId());
+    }
+
+    @Test
+    @DisplayName("Должен сохранять индекс в файл и дополнять загруженный индекс")
+    void shouldPersistAndExtendIndex() throws IOException {
+        // Given
+        Random random = new Random(3);
+        HnswIndex index = randomIndex(random, 1000);
+        float[] query = randomVector(random);
+        Path file = tempDir.resolve("index/knowledge.hnsw");
+
+        // When
+        index.save(file);
+        HnswIndex loaded = HnswIndex.load(file, 64);
+
+        // Then
+        assertThat(Files.exists(file.resolveSibling("knowledge.hnsw.tmp"))).isFalse();
+        assertThat(loaded.getDimension()).isEqualTo(DIMENSION);
+        assertThat(loaded.size()).isEqualTo(1000);
+        assertThat(loaded.search(query, 10))
+                .extracting(HnswIndex.Neighbor::getId)
+                .containsExactlyElementsOf(index.search(query, 10).stream().map(HnswIndex.Neighbor::getId).toList());
+
+        // Загруженный индекс принимает новые векторы
+        assertThat(loaded.add(query)).isEqualTo(1000);
+        assertThat(loaded.search(query, 1).get(0).getId()).isEqualTo(1000);
+    }
+
+    @Test
+    @DisplayName("Должен отклонять векторы другой размерности и чужие файлы")
+    void shouldRejectInvalidInput() throws IOException {
+        // Given
+        HnswIndex index = new HnswIndex(DIMENSION, 16, 100, 64);
+        Path file = Files.writeString(tempDir.resolve("broken.hnsw"), "not an index, just some text");
+
+        // When & Then
+        assertThatThrownBy(() -> index.add(new float[DIMENSION + 1])).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> HnswIndex.load(file, 64)).isInstanceOf(IOException.class);
+        assertThat(index.search(new float[DIMENSION], 3)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Должен отклонять обрезанный или поврежденный файл индекса через IOException")
+    void shouldRejectCorruptIndexFile() throws IOException {
+        // Given
+        Path file = tempDir.resolve("knowledge.hnsw");
+        randomIndex(new Random(4), 50).save(file);
+        byte[] saved = Files.readAllBytes(file);
+        int firstNeighbor = 8 * Integer.BYTES + 50 * DIMENSION * Float.BYTES + 2 * Integer.BYTES;
+
+        Path truncated = Files.write(tempDir.resolve("truncated.hnsw"), Arrays.copyOf(saved, saved.length - 100));
+        Path hugeSize = Files.write(tempDir.resolve("size.hnsw"), patched(saved, 5 * Integer.BYTES, Integer.MAX_VALUE));
+        Path badEntry = Files.write(tempDir.resolve("entry.hnsw"), patched(saved, 6 * Integer.BYTES, 50));
+        Path badLink = Files.write(tempDir.resolve("link.hnsw"), patched(saved, firstNeighbor, 9999));
+
+        // When & Then
+        for (Path corrupt : List.of(truncated, hugeSize, badEntry, badLink)) {
+            assertThatThrownBy(() -> HnswIndex.load(corrupt, 64)).as(corrupt.getFileName().toString())
+                    .isInstanceOf(IOException.class);
+        }
+        assertThat(HnswIndex.load(file, 64).size()).isEqualTo(50);
+    }
+
+    private static byte[] patched(byte[] content, int offset, int value) {
+        byte[] copy = content.clone();
+        ByteBuffer.wrap(copy).putInt(offset, value);
+        return copy;
+    }
+}
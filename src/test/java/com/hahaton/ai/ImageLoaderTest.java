@@ -0,0 +1,241 @@
+package com.hahaton.ai;
+
+import ai.djl.modality.cv.Image;
+import com.hahaton.config.DJLConfig;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Тестирование загрузки изображений для DJL")
+class ImageLoaderTest {
+
+    private DJLConfig djlConfig;
+    private SimpleMeterRegistry meterRegistry;
+    private HttpServer server;
+    private final AtomicInteger imageRequests = new AtomicInteger();
+
+    @TempDir
+    Path imageRoot;
+
+    @TempDir
+    Path outside;
+
+    @BeforeEach
+    @DisplayName("Инициализация тестового окружения")
+    void setUp() throws IOException {
+        djlConfig = new DJLConfig();
+        djlConfig.setImageFileRoot(imageRoot.toString());
+        djlConfig.setImageDownloadTimeoutMs(500);
+        meterRegistry = new SimpleMeterRegistry();
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/image.png", exchange -> {
+            imageRequests.incrementAndGet();
+            byte[] png = png(32, 32);
+            exchange.sendResponseHeaders(200, png.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(png);
+            }
+        });
+        server.createContext("/chunked.png", exchange -> {
+            // Без Content-Length: лимит должен сработать при чтении тела
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(new byte[4096]);
+            }
+        });
+        server.createContext("/slow.png", exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(new byte[16]);
+                out.flush();
+                Thread.sleep(3000);
+            } catch (InterruptedException | IOException ignored) {
+                // Клиент закрыл соединение по таймауту
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    private ImageLoader newLoader() {
+        return new ImageLoader(djlConfig, meterRegistry);
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, 0xFF0000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private Path writePng(Path dir, String name, int width, int height) throws IOException {
+        return Files.write(dir.resolve(name), png(width, height));
+    }
+
+    @Test
+    @DisplayName("Повторное изображение берется из кэша по содержимому, а не декодируется заново")
+    void testDecodedImageCachedByContent() throws IOException {
+        // Given
+        ImageLoader loader = newLoader();
+        Path file = writePng(imageRoot, "cat.png", 32, 32);
+
+        // When
+        Image fromFile = loader.load(file.toUri().toString());
+        Image fromUpload = loader.load(Files.readAllBytes(file));
+        Image fromUrl = loader.load(url("/image.png"));
+
+        // Then
+        assertThat(fromFile.getWidth()).isEqualTo(32);
+        assertThat(fromUpload).isSameAs(fromFile);
+        assertThat(fromUrl).isSameAs(fromFile);
+        assertThat(loader.cacheSize()).isEqualTo(1);
+        assertThat(meterRegistry.get("djl.image.cache").tag("result", "hit").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Повторный URL в пределах djl.image-url-cache-ttl-seconds отдается без новой загрузки")
+    void testRepeatedUrlServedWithoutDownload() {
+        // Given
+        ImageLoader loader = newLoader();
+
+        // When
+        Image first = loader.load(url("/image.png"));
+        Image second = loader.load(url("/image.png"));
+
+        // Then
+        assertThat(second).isSameAs(first);
+        assertThat(imageRequests.get()).isEqualTo(1);
+        assertThat(meterRegistry.get("djl.image.download").timer().count()).isEqualTo(1);
+
+        // Без срока годности URL каждый раз загружается заново
+        djlConfig.setImageUrlCacheTtlSeconds(0);
+        ImageLoader uncached = newLoader();
+        uncached.load(url("/image.png"));
+        uncached.load(url("/image.png"));
+        assertThat(imageRequests.get()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Большое изображение уменьшается до djl.image-max-side с сохранением пропорций")
+    void testLargeImageDownscaled() throws IOException {
+        // Given
+        djlConfig.setImageMaxSide(100);
+        ImageLoader loader = newLoader();
+
+        // When
+        Image image = loader.load(png(400, 200));
+
+        // Then
+        assertThat(image.getWidth()).isEqualTo(100);
+        assertThat(image.getHeight()).isEqualTo(50);
+    }
+
+    @Test
+    @DisplayName("Изображение с числом пикселей сверх лимита отклоняется до декодирования")
+    void testTooManyPixelsRejected() throws IOException {
+        // Given
+        djlConfig.setImageMaxPixels(100 * 100);
+        ImageLoader loader = newLoader();
+
+        // When & Then
+        assertThatThrownBy(() -> loader.load(png(200, 200)))
+                .isInstanceOf(ImageRejectedException.class)
+                .hasMessageContaining("200x200");
+        assertThat(meterRegistry.get("djl.image.rejected").tag("reason", "too_many_pixels").counter().count())
+                .isEqualTo(1);
+        assertThat(loader.cacheSize()).isZero();
+    }
+
+    @Test
+    @DisplayName("Ответ больше лимита отклоняется и по Content-Length, и при потоковом чтении")
+    void testDownloadSizeLimit() {
+        // Given
+        djlConfig.setImageMaxBytes(32);
+        ImageLoader loader = newLoader();
+
+        // When & Then
+        assertThatThrownBy(() -> loader.load(url("/image.png")))
+                .isInstanceOf(ImageRejectedException.class);
+        assertThatThrownBy(() -> loader.load(url("/chunked.png")))
+                .isInstanceOf(ImageRejectedException.class);
+        assertThat(meterRegistry.get("djl.image.rejected").tag("reason", "too_large").counter().count())
+                .isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Зависшая загрузка прерывается по djl.image-download-timeout-ms")
+    void testSlowDownloadTimesOut() {
+        // Given
+        ImageLoader loader = newLoader();
+        long start = System.nanoTime();
+
+        // When & Then
+        assertThatThrownBy(() -> loader.load(url("/slow.png")))
+                .isInstanceOf(ImageRejectedException.class)
+                .hasMessageContaining("время");
+        assertThat(System.nanoTime() - start).isLessThan(2_000_000_000L);
+    }
+
+    @Test
+    @DisplayName("Файлы вне djl.image-file-root и прочие схемы отклоняются")
+    void testSourceRestrictions() throws IOException {
+        // Given
+        Path foreign = writePng(outside, "secret.png", 8, 8);
+        ImageLoader loader = newLoader();
+
+        // When & Then
+        assertThatThrownBy(() -> loader.load(foreign.toUri().toString()))
+                .isInstanceOf(ImageRejectedException.class);
+        assertThatThrownBy(() -> loader.load(imageRoot.resolve("../" + outside.getFileName() + "/secret.png").toUri().toString()))
+                .isInstanceOf(ImageRejectedException.class);
+        assertThatThrownBy(() -> loader.load("ftp://example.com/image.png"))
+                .isInstanceOf(ImageRejectedException.class);
+
+        djlConfig.setImageFileRoot("");
+        Path inside = writePng(imageRoot, "ok.png", 8, 8);
+        assertThatThrownBy(() -> newLoader().load(inside.toUri().toString()))
+                .isInstanceOf(ImageRejectedException.class)
+                .hasMessageContaining("отключена");
+    }
+
+    @Test
+    @DisplayName("Пустой файл и не-изображение отклоняются")
+    void testInvalidContentRejected() {
+        // Given
+        ImageLoader loader = newLoader();
+
+        // When & Then
+        assertThatThrownBy(() -> loader.load(new byte[0]))
+                .isInstanceOf(ImageRejectedException.class);
+        assertThatThrownBy(() -> loader.load("not an image".getBytes()))
+                .isInstanceOf(ImageRejectedException.class)
+                .hasMessageContaining("формат");
+    }
+}
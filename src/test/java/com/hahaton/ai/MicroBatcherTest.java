@@ -0,0 +1,80 @@
+package com.hahaton.ai;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Тестирование микро-батчинга")
+class MicroBatcherTest {
+
+    private final List<Integer> processed = new CopyOnWriteArrayList<>();
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private MicroBatcher<Integer, Integer> batcher;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        batcher.close();
+    }
+
+    private void createBatcher(int queueCapacity) {
+        // Обработчик держит первый пакет, пока тест не отпустит его
+        batcher = new MicroBatcher<>("test", inputs -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            processed.addAll(inputs);
+            return inputs;
+        }, 1, 0, 1, queueCapacity, new SimpleMeterRegistry());
+    }
+
+    @Test
+    @DisplayName("При заполненной очереди запрос сразу отклоняется")
+    void shouldRejectWhenQueueIsFull() throws Exception {
+        // Given
+        createBatcher(1);
+        batcher.submit(1);
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        batcher.submit(2);
+
+        // When
+        CompletableFuture<Integer> overflow = batcher.submit(3);
+
+        // Then
+        assertThatThrownBy(() -> overflow.get(1, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(RejectedExecutionException.class);
+    }
+
+    @Test
+    @DisplayName("Отмененный запрос не попадает в пакет")
+    void shouldSkipCancelledRequests() throws Exception {
+        // Given
+        createBatcher(8);
+        CompletableFuture<Integer> first = batcher.submit(1);
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<Integer> abandoned = batcher.submit(2);
+        CompletableFuture<Integer> waiting = batcher.submit(3);
+
+        // When
+        abandoned.cancel(false);
+        release.countDown();
+
+        // Then
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+        assertThat(waiting.get(5, TimeUnit.SECONDS)).isEqualTo(3);
+        assertThat(processed).containsExactly(1, 3);
+    }
+}
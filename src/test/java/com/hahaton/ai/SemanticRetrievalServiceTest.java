@@ -0,0 +1,177 @@
+package com.hahaton.ai;
+
+import com.hahaton.config.DJLConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Тестирование семантического поиска по базе знаний")
+class SemanticRetrievalServiceTest {
+
+    private final AtomicInteger embeddedTexts = new AtomicInteger();
+    private DJLConfig djlConfig;
+    private SemanticRetrievalService service;
+
+    @TempDir
+    Path indexDir;
+
+    /**
+     * Заглушка модели эмбеддингов: мешок слов, захэшированный в 64 измерения
+     */
+    private List<float[]> embed(List<String> texts) {
+        List<float[]> vectors = new ArrayList<>();
+        for (String text : texts) {
+            embeddedTexts.incrementAndGet();
+            float[] vector = new float[64];
+            for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+                if (!word.isEmpty()) {
+                    vector[Math.floorMod(word.hashCode(), vector.length)] += 1;
+                }
+            }
+            vectors.add(vector);
+        }
+        return vectors;
+    }
+
+    @BeforeEach
+    @DisplayName("Инициализация тестового окружения")
+    void setUp() {
+        djlConfig = new DJLConfig();
+        djlConfig.setSemanticRetrievalEnabled(true);
+        djlConfig.setSemanticMinScore(0.3);
+        djlConfig.setSemanticIndexDir(indexDir.toString());
+        service = newService();
+    }
+
+    private SemanticRetrievalService newService() {
+        SemanticRetrievalService created = new SemanticRetrievalService(this::embed, () -> List.of(
+                new KnowledgeEntry("docker/1/1", "docker", "собрать образ из dockerfile командой build", "docker build -t app ."),
+                new KnowledgeEntry("sql/2/1", "sql", "объединить таблицы по ключу через join", "Используйте JOIN ... ON")
+        ), djlConfig, new SimpleMeterRegistry());
+        created.register(List.of(new KnowledgeEntry("ai/git", "ai", "git система контроля версий", "Git - это система контроля версий")));
+        return created;
+    }
+
+    @Test
+    @DisplayName("Должен находить ближайшую запись базы знаний")
+    void shouldFindNearestEntry() throws Exception {
+        // Given
+        service.rebuild();
+
+        // When
+        List<SemanticRetrievalService.Match> matches = service.search("Как собрать образ?", 2);
+
+        // Then
+        assertThat(matches).hasSize(2);
+        assertThat(matches.get(0).getEntry().getSource()).isEqualTo("docker");
+        assertThat(matches.get(0).getScore()).isGreaterThan(matches.get(1).getScore());
+        assertThat(service.findBest("что такое система контроля версий")).get()
+                .extracting(match -> match.getEntry().getAnswer())
+                .isEqualTo("Git - это система контроля версий");
+        assertThat(service.findBest("погода на завтра")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Должен кэшировать эмбеддинги повторных вопросов")
+    void shouldCacheQueryEmbeddings() throws Exception {
+        // Given
+        service.rebuild();
+        int indexed = embeddedTexts.get();
+
+        // When
+        service.findBest("Как объединить таблицы?");
+        service.findBest("  как объединить   таблицы ");
+
+        // Then
+        assertThat(indexed).isEqualTo(3);
+        assertThat(embeddedTexts.get()).isEqualTo(indexed + 1);
+        assertThat(service.getStats()).containsEntry("cached_queries", 1);
+    }
+
+    @Test
+    @DisplayName("Должен загружать сохраненный индекс без повторного вычисления эмбеддингов")
+    void shouldLoadSavedIndexOnRestart() throws Exception {
+        // Given
+        service.rebuild();
+        int indexed = embeddedTexts.get();
+
+        // When
+        SemanticRetrievalService restarted = newService();
+        restarted.rebuild();
+
+        // Then
+        assertThat(embeddedTexts.get()).isEqualTo(indexed);
+        assertThat(restarted.search("Как собрать образ?", 1)).singleElement()
+                .extracting(match -> match.getEntry().getId())
+                .isEqualTo("docker/1/1");
+    }
+
+    @Test
+    @DisplayName("Должен пересчитывать эмбеддинги, если сохраненный индекс поврежден")
+    void shouldRebuildWhenSavedIndexIsCorrupt() throws Exception {
+        // Given
+        service.rebuild();
+        int indexed = embeddedTexts.get();
+        try (Stream<Path> files = Files.list(indexDir)) {
+            for (Path file : files.toList()) {
+                byte[] content = Files.readAllBytes(file);
+                Files.write(file, Arrays.copyOf(content, content.length / 2));
+            }
+        }
+
+        // When
+        SemanticRetrievalService restarted = newService();
+        restarted.rebuild();
+
+        // Then
+        assertThat(embeddedTexts.get()).isEqualTo(indexed * 2);
+        assertThat(restarted.search("Как собрать образ?", 1)).singleElement()
+                .extracting(match -> match.getEntry().getId())
+                .isEqualTo("docker/1/1");
+    }
+
+    @Test
+    @DisplayName("Должен добавлять записи в построенный индекс и фильтровать по источнику")
+    void shouldAddEntriesIncrementally() throws Exception {
+        // Given
+        service.rebuild();
+
+        // When
+        service.add(new KnowledgeEntry("sql/3/1", "sql", "собрать строки в группы через group by", "Используйте GROUP BY"));
+
+        // Then
+        assertThat(service.getStats()).containsEntry("entries", 4);
+        assertThat(service.search("как собрать строки в группы", 1, "sql")).singleElement()
+                .extracting(match -> match.getEntry().getId())
+                .isEqualTo("sql/3/1");
+        assertThat(service.search("как собрать образ", 1, "ai")).singleElement()
+                .extracting(match -> match.getEntry().getSource())
+                .isEqualTo("ai");
+    }
+
+    @Test
+    @DisplayName("Не должен искать, пока индекс не построен или режим выключен")
+    void shouldNotSearchWhenNotReady() throws Exception {
+        // When & Then
+        assertThat(service.isReady()).isFalse();
+        assertThat(service.search("Как собрать образ?", 1)).isEmpty();
+
+        service.rebuild();
+        djlConfig.setSemanticRetrievalEnabled(false);
+        assertThat(service.search("Как собрать образ?", 1)).isEmpty();
+        assertThat(embeddedTexts.get()).isEqualTo(3);
+    }
+}
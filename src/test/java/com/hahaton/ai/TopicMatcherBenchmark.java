@@ -0,0 +1,92 @@
+package com.hahaton.ai;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение автомата тем с прежней цепочкой String.contains.
+ * Запуск: mvn test-compile, затем main этого класса с тестовым classpath
+ * (в surefire бенчмарк не попадает).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TopicMatcherBenchmark {
+
+    @Param({
+        "как работает kubernetes",
+        "расскажи, как в докере собрать образ для приложения на python с базой данных postgres",
+        "подскажите, пожалуйста, с чего начать изучение программирования, если раньше никогда не писал код"
+    })
+    private String question;
+
+    private TopicMatcher matcher;
+
+    @Setup
+    public void setUp() {
+        matcher = new TopicMatcher(AIAgent.TOPIC_KEYWORDS);
+        question = question.toLowerCase();
+    }
+
+    @Benchmark
+    public String automaton() {
+        return matcher.bestMatch(question);
+    }
+
+    @Benchmark
+    public String containsChain() {
+        return legacyDetermineTopic(question);
+    }
+
+    /**
+     * Прежняя реализация AIAgent.determineTopic
+     */
+    private static String legacyDetermineTopic(String question) {
+        if (question.contains("java") || question.contains("джава")) return "java";
+        if (question.contains("spring") || question.contains("спринг")) return "spring";
+        if (question.contains("react") || question.contains("реакт")) return "react";
+        if (question.contains("maven") || question.contains("мавен")) return "maven";
+        if (question.contains("git") || question.contains("гит")) return "git";
+        if (question.contains("docker") || question.contains("докер")) return "docker";
+        if (question.contains("sql") || question.contains("база данных")) return "sql";
+        if (question.contains("api") || question.contains("веб")) return "api";
+        if (question.contains("html") || question.contains("хтмл")) return "html";
+        if (question.contains("css") || question.contains("стили")) return "css";
+        if (question.contains("python") || question.contains("питон")) return "python";
+        if (question.contains("javascript") || question.contains("джаваскрипт")) return "javascript";
+        if (question.contains("typescript")) return "typescript";
+        if (question.contains("node") || question.contains("нод")) return "node";
+        if (question.contains("database") || question.contains("база")) return "database";
+        if (question.contains("algorithm") || question.contains("алгоритм")) return "algorithm";
+        if (question.contains("framework") || question.contains("фреймворк")) return "framework";
+        if (question.contains("library") || question.contains("библиотека")) return "library";
+        if (question.contains("bash") || question.contains("баш")) return "bash";
+        if (question.contains("linux") || question.contains("линукс")) return "linux";
+        if (question.contains("kubernetes") || question.contains("кубернетис") || question.contains("k8s")) return "kubernetes";
+        return null;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TopicMatcherBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
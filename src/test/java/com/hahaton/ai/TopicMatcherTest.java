@@ -0,0 +1,39 @@
+package com.hahaton.ai;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Тестирование определения тем вопроса")
+class TopicMatcherTest {
+
+    private final TopicMatcher matcher = new TopicMatcher(AIAgent.TOPIC_KEYWORDS);
+
+    @Test
+    @DisplayName("Не должен засчитывать ключевое слово внутри другого слова")
+    void shouldMatchWholeWordsOnly() {
+        // When & Then
+        assertThat(matcher.bestMatch("что такое javascript?")).isEqualTo("javascript");
+        assertThat(matcher.bestMatch("rapid prototyping")).isNull();
+        assertThat(matcher.bestMatch("как сделать REST API?")).isEqualTo("api");
+    }
+
+    @Test
+    @DisplayName("Должен распознавать русские формы слов по основе")
+    void shouldMatchRussianWordForms() {
+        // When & Then
+        assertThat(matcher.bestMatch("Как запустить приложение в докере?")).isEqualTo("docker");
+        assertThat(matcher.bestMatch("зачем нужны алгоритмы")).isEqualTo("algorithm");
+        assertThat(matcher.bestMatch("какие есть библиотеки")).isEqualTo("library");
+    }
+
+    @Test
+    @DisplayName("Должен упорядочивать найденные темы по весу")
+    void shouldRankMultipleTopics() {
+        // When & Then
+        assertThat(matcher.match("Как подключить базу данных к Spring?")).containsExactly("sql", "spring", "database");
+        assertThat(matcher.match("Почему k8s, а не docker?")).containsExactly("docker", "kubernetes");
+        assertThat(matcher.match("Как дела?")).isEmpty();
+    }
+}
@@ -0,0 +1,131 @@
+package com.hahaton.catalog;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hahaton.ai.SemanticRetrievalService;
+import com.hahaton.config.CatalogConfig;
+import com.hahaton.dockertrainer.model.DockerTask;
+import com.hahaton.dockertrainer.service.DockerTrainerService;
+import com.hahaton.sqltrainer.model.Task;
+import com.hahaton.sqltrainer.service.SQLTrainerService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@DisplayName("Тестирование загрузки каталогов задач")
+class TaskCatalogLoaderTest {
+
+    private static final String SQL_TASK = """
+            {"version": 1, "tasks": [{"level": 1, "taskNumber": 1, "title": "Новая задача",
+              "question": "Вопрос", "solution": "SELECT name FROM citizens ORDER BY name", "hint": "Подсказка"}]}
+            """;
+
+    @TempDir
+    Path directory;
+
+    private CatalogConfig config;
+    private TaskCatalogLoader loader;
+
+    @BeforeEach
+    @DisplayName("Инициализация тестового окружения")
+    void setUp() {
+        config = new CatalogConfig();
+        config.setDir(directory.toString());
+        loader = new TaskCatalogLoader(config, new ObjectMapper());
+    }
+
+    @Test
+    @DisplayName("Каталоги из ресурсов приложения загружаются при старте")
+    void shouldLoadBundledCatalogs() {
+        // When
+        List<Task> sqlTasks = loader.getInitialSqlTasks();
+        List<DockerTask> dockerTasks = loader.getInitialDockerTasks();
+
+        // Then
+        assertThat(sqlTasks).hasSize(17);
+        assertThat(sqlTasks.get(0).getId()).isEqualTo(101L);
+        assertThat(sqlTasks.get(0).getOrderSensitive()).isTrue();
+        assertThat(dockerTasks).hasSize(9);
+        assertThat(dockerTasks).extracting(DockerTask::getLevel).contains(1, 6);
+        assertThat(new DockerTrainerService().getTotalLevels()).isEqualTo(6);
+    }
+
+    @Test
+    @DisplayName("Файл из catalog.dir заменяет каталог из ресурсов")
+    void shouldPreferFileFromDirectory() throws IOException {
+        // Given
+        Files.writeString(directory.resolve(TaskCatalogLoader.SQL_CATALOG), SQL_TASK);
+
+        // When
+        List<Task> tasks = loader.readSqlTasks();
+
+        // Then
+        assertThat(tasks).singleElement().satisfies(task -> {
+            assertThat(task.getTitle()).isEqualTo("Новая задача");
+            assertThat(task.getOrderSensitive()).isTrue();
+        });
+    }
+
+    @Test
+    @DisplayName("Каталог с неизвестной версией, опечаткой в поле, задачей вне маски прогресса или повтором id отклоняется")
+    void shouldRejectInvalidCatalogs() throws IOException {
+        // Given & When & Then
+        Files.writeString(directory.resolve(TaskCatalogLoader.SQL_CATALOG), SQL_TASK.replace("\"version\": 1", "\"version\": 2"));
+        assertThatThrownBy(() -> loader.readSqlTasks())
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("версия");
+
+        Files.writeString(directory.resolve(TaskCatalogLoader.SQL_CATALOG), SQL_TASK.replace("\"hint\"", "\"hitn\""));
+        assertThatThrownBy(() -> loader.readSqlTasks()).hasMessageContaining("hitn");
+
+        Files.writeString(directory.resolve(TaskCatalogLoader.SQL_CATALOG), SQL_TASK.replace("\"level\": 1", "\"level\": 7"));
+        assertThatThrownBy(() -> loader.readSqlTasks()).hasMessageContaining("7-1");
+
+        Files.writeString(directory.resolve(TaskCatalogLoader.SQL_CATALOG), SQL_TASK.replace("\"taskNumber\": 1", "\"taskNumber\": 11"));
+        assertThatThrownBy(() -> loader.readSqlTasks()).hasMessageContaining("1-11");
+
+        Files.writeString(directory.resolve(TaskCatalogLoader.DOCKER_CATALOG), """
+                {"version": 1, "tasks": [
+                  {"id": 1, "level": 1, "title": "A", "correctCommand": "docker ps", "hints": ["ps"]},
+                  {"id": 1, "level": 2, "title": "B", "correctCommand": "docker images", "hints": ["images"]}]}
+                """);
+        assertThatThrownBy(() -> loader.readDockerTasks())
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("id");
+    }
+
+    @Test
+    @DisplayName("Некорректный файл не применяется при перезагрузке, корректный - применяется и перестраивает базу знаний")
+    void shouldApplyOnlyValidCatalogOnReload() throws IOException {
+        // Given
+        SQLTrainerService sqlTrainerService = mock(SQLTrainerService.class);
+        DockerTrainerService dockerTrainerService = mock(DockerTrainerService.class);
+        SemanticRetrievalService semanticRetrieval = mock(SemanticRetrievalService.class);
+        TaskCatalogWatcher watcher = new TaskCatalogWatcher(config, loader, sqlTrainerService, dockerTrainerService,
+                semanticRetrieval, new SimpleMeterRegistry());
+
+        // When & Then
+        Files.writeString(directory.resolve(TaskCatalogLoader.SQL_CATALOG), "{\"version\": 1, \"tasks\": [");
+        assertThat(watcher.reload(TaskCatalogLoader.SQL_CATALOG)).isFalse();
+        verify(sqlTrainerService, never()).replaceTasks(any());
+        verify(semanticRetrieval, never()).rebuildInBackground();
+
+        Files.writeString(directory.resolve(TaskCatalogLoader.SQL_CATALOG), SQL_TASK);
+        assertThat(watcher.reload(TaskCatalogLoader.SQL_CATALOG)).isTrue();
+        verify(sqlTrainerService).replaceTasks(any());
+        verify(semanticRetrieval).rebuildInBackground();
+    }
+}
@@ -0,0 +1,57 @@
+package com.hahaton.config;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.PropertiesPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Тестирование привязки djl.* из application.properties")
+class DJLConfigBindingTest {
+
+    private DJLConfig bind(Map<String, Object> env) throws IOException {
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("env", env));
+        environment.getPropertySources().addLast(new PropertiesPropertySource("application",
+                PropertiesLoaderUtils.loadProperties(new ClassPathResource("application.properties"))));
+        return Binder.get(environment).bindOrCreate("djl", Bindable.of(DJLConfig.class));
+    }
+
+    @Test
+    @DisplayName("Размер пакета задается через DJL_DEFAULT_BATCH_SIZE")
+    void shouldBindDefaultBatchSizeFromEnvironment() throws IOException {
+        // When
+        DJLConfig config = bind(Map.of("DJL_DEFAULT_BATCH_SIZE", "8"));
+
+        // Then
+        assertThat(config.getDefaultBatchSize()).isEqualTo(8);
+    }
+
+    @Test
+    @DisplayName("Настройки кэша, GPU, движка и таймаута загрузки задаются через переменные окружения")
+    void shouldBindModelSettingsFromEnvironment() throws IOException {
+        // When
+        DJLConfig config = bind(Map.of(
+                "DJL_MODEL_CACHE_DIR", "/models",
+                "DJL_MAX_MODELS_IN_MEMORY", "2",
+                "DJL_USE_GPU", "false",
+                "DJL_PREFERRED_ENGINE", "onnxruntime",
+                "DJL_MODEL_LOAD_TIMEOUT", "60"));
+
+        // Then
+        assertThat(config.getModelCacheDir()).isEqualTo("/models");
+        assertThat(config.getMaxModelsInMemory()).isEqualTo(2);
+        assertThat(config.isUseGpu()).isFalse();
+        assertThat(config.getPreferredEngine()).isEqualTo("onnxruntime");
+        assertThat(config.getModelLoadTimeout()).isEqualTo(60);
+    }
+}
@@ -0,0 +1,75 @@
+package com.hahaton.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Тестирование передачи настроек djl.* в системные свойства DJL")
+class DJLEnvironmentPostProcessorTest {
+
+    private String savedCacheDir;
+    private String savedOffline;
+
+    @BeforeEach
+    @DisplayName("Сохранение системных свойств DJL")
+    void setUp() {
+        savedCacheDir = System.clearProperty(DJLEnvironmentPostProcessor.CACHE_DIR_PROPERTY);
+        savedOffline = System.clearProperty(DJLEnvironmentPostProcessor.OFFLINE_PROPERTY);
+    }
+
+    @AfterEach
+    @DisplayName("Восстановление системных свойств DJL")
+    void tearDown() {
+        restore(DJLEnvironmentPostProcessor.CACHE_DIR_PROPERTY, savedCacheDir);
+        restore(DJLEnvironmentPostProcessor.OFFLINE_PROPERTY, savedOffline);
+    }
+
+    @Test
+    @DisplayName("Каталог моделей и офлайн-режим задаются из djl.model-cache-dir и djl.offline")
+    void shouldSetDjlSystemProperties() {
+        // When
+        postProcess(Map.of("djl.model-cache-dir", "models", "djl.offline", "true"));
+
+        // Then
+        assertThat(System.getProperty(DJLEnvironmentPostProcessor.CACHE_DIR_PROPERTY))
+                .isEqualTo(Path.of("models").toAbsolutePath().toString());
+        assertThat(System.getProperty(DJLEnvironmentPostProcessor.OFFLINE_PROPERTY)).isEqualTo("true");
+    }
+
+    @Test
+    @DisplayName("Явно заданные системные свойства не перезаписываются")
+    void shouldKeepExplicitSystemProperties() {
+        // Given
+        System.setProperty(DJLEnvironmentPostProcessor.CACHE_DIR_PROPERTY, "/opt/djl");
+
+        // When
+        postProcess(Map.of("djl.model-cache-dir", "models"));
+
+        // Then
+        assertThat(System.getProperty(DJLEnvironmentPostProcessor.CACHE_DIR_PROPERTY)).isEqualTo("/opt/djl");
+        assertThat(System.getProperty(DJLEnvironmentPostProcessor.OFFLINE_PROPERTY)).isNull();
+    }
+
+    private void postProcess(Map<String, Object> properties) {
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("test", properties));
+        new DJLEnvironmentPostProcessor().postProcessEnvironment(environment, new SpringApplication());
+    }
+
+    private static void restore(String key, String value) {
+        if (value == null) {
+            System.clearProperty(key);
+        } else {
+            System.setProperty(key, value);
+        }
+    }
+}
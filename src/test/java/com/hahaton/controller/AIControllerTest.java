@@ -0,0 +1,133 @@
+package com.hahaton.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hahaton.ai.AIAgent;
+import com.hahaton.ai.DJLService;
+import com.hahaton.ai.GeminiService;
+import com.hahaton.ai.SemanticRetrievalService;
+import com.hahaton.config.GeminiConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Тестирование потокового чата AI помощника")
+class AIControllerTest {
+
+    @Mock
+    private GeminiService geminiService;
+
+    @Mock
+    private DJLService djlService;
+
+    @Mock
+    private SemanticRetrievalService semanticRetrieval;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private AIAgent aiAgent;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    @DisplayName("Инициализация тестового окружения")
+    void setUp() {
+        aiAgent = new AIAgent(geminiService, djlService, semanticRetrieval);
+        mockMvc = MockMvcBuilders.standaloneSetup(new AIController(aiAgent, new GeminiConfig())).build();
+    }
+
+    /**
+     * Выполнить запрос к /api/ai/chat/stream и вернуть события SSE в порядке прихода
+     */
+    private List<String[]> stream(String question) throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/ai/chat/stream")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.TEXT_EVENT_STREAM)
+                        .content(objectMapper.writeValueAsString(Map.of("question", question))))
+                .andExpect(request().asyncStarted())
+                .andExpect(status().isOk())
+                .andReturn();
+        result.getAsyncResult(5000);
+
+        List<String[]> events = new ArrayList<>();
+        for (String block : result.getResponse().getContentAsString(StandardCharsets.UTF_8).split("\n\n")) {
+            String name = null;
+            String data = "";
+            for (String line : block.split("\n")) {
+                if (line.startsWith("event:")) {
+                    name = line.substring(6);
+                } else if (line.startsWith("data:")) {
+                    data = line.substring(5);
+                }
+            }
+            if (name != null) {
+                events.add(new String[]{name, data});
+            }
+        }
+        return events;
+    }
+
+    private String chunksText(List<String[]> events) throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (String[] event : events) {
+            if (event[0].equals("chunk")) {
+                text.append(objectMapper.readTree(event[1]).get("text").asText());
+            }
+        }
+        return text.toString();
+    }
+
+    @Test
+    @DisplayName("Вопрос по известной теме отдается событиями chunk и завершается done без обращения к Gemini")
+    void shouldStreamLocalTopicAsChunksThenDone() throws Exception {
+        // When
+        List<String[]> events = stream("Что такое Java?");
+
+        // Then
+        assertThat(events).hasSizeGreaterThan(2);
+        assertThat(events.subList(0, events.size() - 1)).allSatisfy(event -> assertThat(event[0]).isEqualTo("chunk"));
+        assertThat(events.get(events.size() - 1)[0]).isEqualTo("done");
+        assertThat(chunksText(events)).isEqualTo(aiAgent.getResponse("Что такое Java?"));
+        verify(geminiService, never()).streamResponse(anyString(), any());
+    }
+
+    @Test
+    @DisplayName("Сбой Gemini до первого фрагмента - ответ отдается локально, а не событием error")
+    void shouldFallBackToLocalStreamWhenGeminiFailsBeforeFirstChunk() throws Exception {
+        // Given
+        String question = "Как устроен квантовый компьютер?";
+        when(geminiService.isAvailable()).thenReturn(true);
+        when(geminiService.streamResponse(anyString(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new IOException("Соединение сброшено")));
+
+        // When
+        List<String[]> events = stream(question);
+
+        // Then
+        assertThat(events).extracting(event -> event[0]).doesNotContain("error").endsWith("done");
+        assertThat(chunksText(events)).isNotEmpty();
+        verify(geminiService).streamResponse(anyString(), any());
+    }
+}
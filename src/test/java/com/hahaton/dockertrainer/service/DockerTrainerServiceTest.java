@@ -5,9 +5,17 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @DisplayName("Тестирование сервиса Docker тренажера")
 class DockerTrainerServiceTest {
@@ -83,4 +91,65 @@ class DockerTrainerServiceTest {
         // Then
         assertThat(totalLevels).isEqualTo(6);
     }
+    
+    @Test
+    @DisplayName("Не должен терять обновления прогресса при параллельных решениях")
+    void shouldNotLoseProgressUpdatesUnderConcurrentSubmissions() throws Exception {
+        // Given: уровень с единственной задачей, чтобы верная команда была известна заранее
+        int level = IntStream.rangeClosed(1, dockerTrainerService.getTotalLevels())
+                .filter(l -> dockerTrainerService.getTasksForLevel(l).size() == 1)
+                .findFirst()
+                .orElseThrow();
+        String command = dockerTrainerService.getTasksForLevel(level).get(0).getCorrectCommand();
+        int threads = 8;
+        int submissionsPerThread = 2000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        
+        // When
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String otherUser = "user-" + t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < submissionsPerThread; i++) {
+                    dockerTrainerService.checkCommand(new CommandSubmission(level, command, "shared-user"));
+                    dockerTrainerService.checkCommand(new CommandSubmission(level, command, otherUser));
+                    dockerTrainerService.getUserProgress("shared-user");
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        
+        // Then
+        DockerProgress shared = dockerTrainerService.getUserProgress("shared-user");
+        assertThat(shared.getTotalScore()).isEqualTo(threads * submissionsPerThread * 100);
+        assertThat(shared.getCompletedLevels()).containsExactly(level);
+        for (int t = 0; t < threads; t++) {
+            assertThat(dockerTrainerService.getUserProgress("user-" + t).getTotalScore())
+                    .isEqualTo(submissionsPerThread * 100);
+        }
+    }
+    
+    @Test
+    @DisplayName("Должен отдавать неизменяемый снимок прогресса")
+    void shouldReturnImmutableProgressSnapshot() {
+        // Given
+        int level = 1;
+        DockerProgress before = dockerTrainerService.getUserProgress("snapshot-user");
+        
+        // When & Then
+        assertThatThrownBy(() -> before.getCompletedLevels().add(level))
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> before.getLevelScores().put(level, 100))
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThat(DockerProgress.class.getMethods())
+                .extracting(java.lang.reflect.Method::getName)
+                .noneMatch(name -> name.startsWith("set"));
+    }
 }
@@ -10,6 +10,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.WebApplicationContext;
 
@@ -83,9 +84,14 @@ class HahatonIntegrationTest {
                 }
                 """;
 
-        mockMvc.perform(post("/api/sql-trainer/check")
+        // Проверка выполняется асинхронно, ответ приходит после async dispatch
+        MvcResult asyncResult = mockMvc.perform(post("/api/sql-trainer/check")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(requestBody))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(asyncResult))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.message").exists());
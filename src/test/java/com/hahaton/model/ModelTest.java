@@ -4,12 +4,17 @@ import com.hahaton.dockertrainer.model.CommandResult;
 import com.hahaton.dockertrainer.model.CommandSubmission;
 import com.hahaton.dockertrainer.model.DockerProgress;
 import com.hahaton.dockertrainer.model.DockerTask;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hahaton.sqltrainer.model.Progress;
+import com.hahaton.sqltrainer.model.ResultDiff;
 import com.hahaton.sqltrainer.model.Task;
 import com.hahaton.sqltrainer.model.TaskResult;
 import com.hahaton.sqltrainer.model.TaskSubmission;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -91,6 +96,44 @@ class ModelTest {
         assertThat(result.getErrorMessage()).isNull();
     }
 
+    @Test
+    @DisplayName("TaskResult пишется в JSON компактно: заголовок колонок, строки-массивы и разница")
+    void shouldSerializeTaskResultCompactly() {
+        // Given
+        Map<String, Object> anna = new LinkedHashMap<>();
+        anna.put("NAME", "Anna");
+        anna.put("AGE", 30);
+        Map<String, Object> boris = new LinkedHashMap<>();
+        boris.put("NAME", "Boris");
+        boris.put("AGE", null);
+        TaskResult result = TaskResult.builder()
+                .isCorrect(false)
+                .message("Неверно")
+                .expectedResult(List.of(anna))
+                .expectedRowCount(40)
+                .actualResult(List.of(boris))
+                .diff(ResultDiff.builder()
+                        .missingRows(List.of(anna)).missingCount(39)
+                        .extraRows(List.of(boris)).extraCount(1)
+                        .build())
+                .build();
+
+        // When
+        JsonNode json = new ObjectMapper().valueToTree(result);
+
+        // Then
+        assertThat(json.get("isCorrect").asBoolean()).isFalse();
+        assertThat(json.has("expectedResult")).isFalse();
+        assertThat(json.get("expected").get("columns").toString()).isEqualTo("[\"NAME\",\"AGE\"]");
+        assertThat(json.get("expected").get("rows").toString()).isEqualTo("[[\"Anna\",30]]");
+        assertThat(json.get("expected").get("totalRows").asInt()).isEqualTo(40);
+        assertThat(json.get("expected").get("truncated").asBoolean()).isTrue();
+        assertThat(json.get("actual").get("rows").toString()).isEqualTo("[[\"Boris\",null]]");
+        assertThat(json.get("actual").get("truncated").asBoolean()).isFalse();
+        assertThat(json.get("diff").get("missing").get("totalRows").asInt()).isEqualTo(39);
+        assertThat(json.get("diff").get("extra").get("rows")).hasSize(1);
+    }
+
     @Test
     @DisplayName("Должен создавать DockerTask с помощью Builder")
     void shouldCreateDockerTaskWithBuilder() {
@@ -183,6 +226,40 @@ class ModelTest {
         assertThat(progress.getLastActivityTime()).isGreaterThan(0);
     }
 
+    @Test
+    @DisplayName("Должен хранить решенные задачи Progress в битовой маске")
+    void shouldTrackProgressCompletionsInBitmask() throws Exception {
+        // Given
+        Progress progress = Progress.builder()
+                .userId("test-user")
+                .currentLevel(1)
+                .currentTask(1)
+                .build();
+
+        // When
+        progress.markCompleted(1, 1);
+        progress.markCompleted(1, 10);
+        progress.markCompleted(6, 10);
+        progress.markCompleted(1, 1);
+        boolean outOfRange = progress.markCompleted(7, 1);
+
+        // Then
+        assertThat(outOfRange).isFalse();
+        assertThat(progress.isCompleted(1, 10)).isTrue();
+        assertThat(progress.isCompleted(2, 1)).isFalse();
+        assertThat(progress.getCompletedCount(1)).isEqualTo(2);
+        assertThat(progress.getCompletedCount(6)).isEqualTo(1);
+        assertThat(progress.getCompletedCount()).isEqualTo(3);
+        assertThat(progress.getCompletedTasks()).containsExactly("1-1", "1-10", "6-10");
+
+        // JSON сохраняет прежний вид: список ключей "level-taskNumber" без маски
+        JsonNode json = new ObjectMapper().valueToTree(progress);
+        assertThat(json.has("completedMask")).isFalse();
+        assertThat(json.has("completedCount")).isFalse();
+        assertThat(json.get("completedTasks").isArray()).isTrue();
+        assertThat(json.get("completedTasks")).hasSize(3);
+    }
+
     @Test
     @DisplayName("Должен корректно работать equals и hashCode для Task")
     void shouldWorkEqualsAndHashCodeForTask() {
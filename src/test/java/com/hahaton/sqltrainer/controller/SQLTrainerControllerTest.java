@@ -1,24 +1,39 @@
 package com.hahaton.sqltrainer.controller;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hahaton.config.SQLTrainerConfig;
+import com.hahaton.sqltrainer.model.SubmissionResult;
 import com.hahaton.sqltrainer.model.Task;
 import com.hahaton.sqltrainer.model.TaskResult;
 import com.hahaton.sqltrainer.model.TaskSubmission;
+import com.hahaton.sqltrainer.service.QueryCancellation;
+import com.hahaton.sqltrainer.service.ProgressService;
+import com.hahaton.sqltrainer.service.SQLCheckDispatcher;
+import com.hahaton.sqltrainer.service.SQLSubmissionService;
 import com.hahaton.sqltrainer.service.SQLTrainerService;
+import com.hahaton.sqltrainer.service.TaskCatalog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -28,16 +43,27 @@ class SQLTrainerControllerTest {
     @Mock
     private SQLTrainerService sqlTrainerService;
     
-    @InjectMocks
+    @Mock
+    private ProgressService progressService;
+    
+    private SQLTrainerConfig sqlTrainerConfig;
+    private SQLCheckDispatcher checkDispatcher;
     private SQLTrainerController sqlTrainerController;
     
     private Task mockTask;
     private TaskSubmission mockSubmission;
     private TaskResult mockResult;
+    private final ObjectMapper objectMapper = new ObjectMapper();
     
     @BeforeEach
     @DisplayName("Инициализация тестового окружения")
     void setUp() {
+        sqlTrainerConfig = new SQLTrainerConfig();
+        sqlTrainerConfig.setSandboxPoolSize(2);
+        checkDispatcher = new SQLCheckDispatcher(sqlTrainerService, sqlTrainerConfig, new SimpleMeterRegistry());
+        sqlTrainerController = new SQLTrainerController(sqlTrainerService, checkDispatcher, sqlTrainerConfig,
+                new SQLSubmissionService(checkDispatcher, progressService, sqlTrainerConfig, new SimpleMeterRegistry()));
+        
         mockTask = Task.builder()
                 .id(101L)
                 .level(1)
@@ -63,31 +89,59 @@ class SQLTrainerControllerTest {
                 .build();
     }
     
+    @AfterEach
+    void tearDown() {
+        checkDispatcher.shutdown();
+    }
+    
+    private void givenCatalog(Task... tasks) {
+        when(sqlTrainerService.getCatalog()).thenReturn(TaskCatalog.of(List.of(tasks), objectMapper));
+    }
+    
+    private Task task(ResponseEntity<byte[]> response) throws IOException {
+        assertThat(response.getBody()).isNotNull();
+        return objectMapper.readValue(response.getBody(), Task.class);
+    }
+    
+    private List<Task> tasks(ResponseEntity<byte[]> response) throws IOException {
+        assertThat(response.getBody()).isNotNull();
+        return objectMapper.readValue(response.getBody(), new TypeReference<List<Task>>() { });
+    }
+    
+    @SuppressWarnings("unchecked")
+    private ResponseEntity<TaskResult> check(TaskSubmission submission) throws InterruptedException {
+        DeferredResult<ResponseEntity<TaskResult>> deferred = sqlTrainerController.checkTask(submission);
+        CountDownLatch done = new CountDownLatch(1);
+        deferred.setResultHandler(result -> done.countDown());
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        return (ResponseEntity<TaskResult>) deferred.getResult();
+    }
+    
     @Test
     @DisplayName("Должен возвращать задачу по уровню и номеру")
-    void shouldReturnTaskByLevelAndNumber() {
+    void shouldReturnTaskByLevelAndNumber() throws IOException {
         // Given
-        when(sqlTrainerService.getTask(1, 1)).thenReturn(mockTask);
+        givenCatalog(mockTask);
         
         // When
-        ResponseEntity<Task> response = sqlTrainerController.getTask(1, 1);
+        ResponseEntity<byte[]> response = sqlTrainerController.getTask(1, 1, null);
         
         // Then
         assertThat(response).isNotNull();
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
-        assertThat(response.getBody()).isNotNull();
-        assertThat(response.getBody().getId()).isEqualTo(101L);
-        assertThat(response.getBody().getTitle()).isEqualTo("Тестовая задача");
+        Task task = task(response);
+        assertThat(task.getId()).isEqualTo(101L);
+        assertThat(task.getTitle()).isEqualTo("Тестовая задача");
     }
     
     @Test
     @DisplayName("Должен возвращать 404 для несуществующей задачи")
     void shouldReturn404ForNonExistentTask() {
         // Given
-        when(sqlTrainerService.getTask(999, 999)).thenReturn(null);
+        givenCatalog(mockTask);
         
         // When
-        ResponseEntity<Task> response = sqlTrainerController.getTask(999, 999);
+        ResponseEntity<byte[]> response = sqlTrainerController.getTask(999, 999, null);
         
         // Then
         assertThat(response).isNotNull();
@@ -97,46 +151,44 @@ class SQLTrainerControllerTest {
     
     @Test
     @DisplayName("Должен возвращать список задач для уровня")
-    void shouldReturnTasksForLevel() {
+    void shouldReturnTasksForLevel() throws IOException {
         // Given
-        List<Task> tasks = List.of(mockTask);
-        when(sqlTrainerService.getLevelTasks(1)).thenReturn(tasks);
+        givenCatalog(mockTask);
         
         // When
-        ResponseEntity<List<Task>> response = sqlTrainerController.getLevelTasks(1);
+        ResponseEntity<byte[]> response = sqlTrainerController.getLevelTasks(1, null);
         
         // Then
         assertThat(response).isNotNull();
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
-        assertThat(response.getBody()).isNotNull();
-        assertThat(response.getBody()).hasSize(1);
-        assertThat(response.getBody().get(0).getLevel()).isEqualTo(1);
+        List<Task> tasks = tasks(response);
+        assertThat(tasks).hasSize(1);
+        assertThat(tasks.get(0).getLevel()).isEqualTo(1);
     }
     
     @Test
     @DisplayName("Должен возвращать пустой список для несуществующего уровня")
-    void shouldReturnEmptyListForNonExistentLevel() {
+    void shouldReturnEmptyListForNonExistentLevel() throws IOException {
         // Given
-        when(sqlTrainerService.getLevelTasks(999)).thenReturn(List.of());
+        givenCatalog(mockTask);
         
         // When
-        ResponseEntity<List<Task>> response = sqlTrainerController.getLevelTasks(999);
+        ResponseEntity<byte[]> response = sqlTrainerController.getLevelTasks(999, null);
         
         // Then
         assertThat(response).isNotNull();
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
-        assertThat(response.getBody()).isNotNull();
-        assertThat(response.getBody()).isEmpty();
+        assertThat(tasks(response)).isEmpty();
     }
     
     @Test
     @DisplayName("Должен корректно проверять SQL запрос")
-    void shouldCheckSqlQuery() {
+    void shouldCheckSqlQuery() throws InterruptedException {
         // Given
-        when(sqlTrainerService.checkTask(any(TaskSubmission.class))).thenReturn(mockResult);
+        when(sqlTrainerService.checkTask(any(TaskSubmission.class), any(QueryCancellation.class))).thenReturn(mockResult);
         
         // When
-        ResponseEntity<TaskResult> response = sqlTrainerController.checkTask(mockSubmission);
+        ResponseEntity<TaskResult> response = check(mockSubmission);
         
         // Then
         assertThat(response).isNotNull();
@@ -148,17 +200,17 @@ class SQLTrainerControllerTest {
     
     @Test
     @DisplayName("Должен возвращать ошибку для некорректного запроса")
-    void shouldReturnErrorForIncorrectQuery() {
+    void shouldReturnErrorForIncorrectQuery() throws InterruptedException {
         // Given
         TaskResult errorResult = TaskResult.builder()
                 .isCorrect(false)
                 .message("Ошибка в SQL запросе")
                 .errorMessage("Table not found")
                 .build();
-        when(sqlTrainerService.checkTask(any(TaskSubmission.class))).thenReturn(errorResult);
+        when(sqlTrainerService.checkTask(any(TaskSubmission.class), any(QueryCancellation.class))).thenReturn(errorResult);
         
         // When
-        ResponseEntity<TaskResult> response = sqlTrainerController.checkTask(mockSubmission);
+        ResponseEntity<TaskResult> response = check(mockSubmission);
         
         // Then
         assertThat(response).isNotNull();
@@ -171,17 +223,17 @@ class SQLTrainerControllerTest {
     
     @Test
     @DisplayName("Должен возвращать подсказку при неправильном результате")
-    void shouldReturnHintForWrongResult() {
+    void shouldReturnHintForWrongResult() throws InterruptedException {
         // Given
         TaskResult hintResult = TaskResult.builder()
                 .isCorrect(false)
                 .message("Запрос выполнен, но результат не совпадает с ожидаемым")
                 .hint("Используйте правильные поля в SELECT")
                 .build();
-        when(sqlTrainerService.checkTask(any(TaskSubmission.class))).thenReturn(hintResult);
+        when(sqlTrainerService.checkTask(any(TaskSubmission.class), any(QueryCancellation.class))).thenReturn(hintResult);
         
         // When
-        ResponseEntity<TaskResult> response = sqlTrainerController.checkTask(mockSubmission);
+        ResponseEntity<TaskResult> response = check(mockSubmission);
         
         // Then
         assertThat(response).isNotNull();
@@ -193,12 +245,12 @@ class SQLTrainerControllerTest {
     
     @Test
     @DisplayName("Должен корректно обрабатывать null submission")
-    void shouldHandleNullSubmission() {
+    void shouldHandleNullSubmission() throws InterruptedException {
         // Given
-        when(sqlTrainerService.checkTask(null)).thenReturn(mockResult);
+        when(sqlTrainerService.checkTask(isNull(), any(QueryCancellation.class))).thenReturn(mockResult);
         
         // When
-        ResponseEntity<TaskResult> response = sqlTrainerController.checkTask(null);
+        ResponseEntity<TaskResult> response = check(null);
         
         // Then
         assertThat(response).isNotNull();
@@ -208,17 +260,17 @@ class SQLTrainerControllerTest {
     
     @Test
     @DisplayName("Должен возвращать задачу с полной информацией")
-    void shouldReturnTaskWithFullInformation() {
+    void shouldReturnTaskWithFullInformation() throws IOException {
         // Given
-        when(sqlTrainerService.getTask(1, 1)).thenReturn(mockTask);
+        givenCatalog(mockTask);
         
         // When
-        ResponseEntity<Task> response = sqlTrainerController.getTask(1, 1);
+        ResponseEntity<byte[]> response = sqlTrainerController.getTask(1, 1, null);
         
         // Then
         assertThat(response).isNotNull();
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
-        Task task = response.getBody();
+        Task task = task(response);
         assertThat(task).isNotNull();
         assertThat(task.getId()).isEqualTo(101L);
         assertThat(task.getLevel()).isEqualTo(1);
@@ -234,23 +286,96 @@ class SQLTrainerControllerTest {
     
     @Test
     @DisplayName("Должен возвращать отсортированный список задач")
-    void shouldReturnSortedTaskList() {
+    void shouldReturnSortedTaskList() throws IOException {
         // Given
         Task task1 = Task.builder().id(101L).level(1).taskNumber(1).title("Задача 1").build();
         Task task2 = Task.builder().id(102L).level(1).taskNumber(2).title("Задача 2").build();
-        List<Task> tasks = List.of(task1, task2);
-        when(sqlTrainerService.getLevelTasks(1)).thenReturn(tasks);
+        givenCatalog(task2, task1);
         
         // When
-        ResponseEntity<List<Task>> response = sqlTrainerController.getLevelTasks(1);
+        ResponseEntity<byte[]> response = sqlTrainerController.getLevelTasks(1, null);
         
         // Then
         assertThat(response).isNotNull();
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
-        List<Task> responseTasks = response.getBody();
+        List<Task> responseTasks = tasks(response);
         assertThat(responseTasks).isNotNull();
         assertThat(responseTasks).hasSize(2);
         assertThat(responseTasks.get(0).getTaskNumber()).isEqualTo(1);
         assertThat(responseTasks.get(1).getTaskNumber()).isEqualTo(2);
     }
+    
+    @Test
+    @DisplayName("Повторный запрос задачи с тем же ETag получает 304 без тела")
+    void shouldReturnNotModifiedForMatchingETag() {
+        // Given
+        givenCatalog(mockTask);
+        ResponseEntity<byte[]> first = sqlTrainerController.getTask(1, 1, null);
+        String eTag = first.getHeaders().getETag();
+        
+        // When
+        ResponseEntity<byte[]> repeated = sqlTrainerController.getTask(1, 1, eTag);
+        ResponseEntity<byte[]> level = sqlTrainerController.getLevelTasks(1, eTag);
+        
+        // Then
+        assertThat(eTag).startsWith("\"");
+        assertThat(first.getHeaders().getCacheControl()).isEqualTo("no-cache");
+        assertThat(repeated.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(repeated.getBody()).isNull();
+        assertThat(repeated.getHeaders().getETag()).isEqualTo(eTag);
+        assertThat(level.getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+    
+    @Test
+    @DisplayName("Должен возвращать 429 с Retry-After при переполнении очереди проверок")
+    void shouldRejectChecksWhenQueueIsFull() throws InterruptedException {
+        // Given
+        sqlTrainerConfig.setSandboxPoolSize(1);
+        sqlTrainerConfig.setCheckQueueCapacity(1);
+        checkDispatcher.shutdown();
+        checkDispatcher = new SQLCheckDispatcher(sqlTrainerService, sqlTrainerConfig, new SimpleMeterRegistry());
+        sqlTrainerController = new SQLTrainerController(sqlTrainerService, checkDispatcher, sqlTrainerConfig,
+                new SQLSubmissionService(checkDispatcher, progressService, sqlTrainerConfig, new SimpleMeterRegistry()));
+        
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(sqlTrainerService.checkTask(any(TaskSubmission.class), any(QueryCancellation.class))).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return mockResult;
+        });
+        
+        // When
+        DeferredResult<ResponseEntity<TaskResult>> running = sqlTrainerController.checkTask(mockSubmission);
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        DeferredResult<ResponseEntity<TaskResult>> queued = sqlTrainerController.checkTask(mockSubmission);
+        DeferredResult<ResponseEntity<TaskResult>> rejected = sqlTrainerController.checkTask(mockSubmission);
+        
+        // Then
+        assertThat(rejected.hasResult()).isTrue();
+        @SuppressWarnings("unchecked")
+        ResponseEntity<TaskResult> response = (ResponseEntity<TaskResult>) rejected.getResult();
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("5");
+        assertThat(queued.hasResult()).isFalse();
+        
+        release.countDown();
+        CountDownLatch done = new CountDownLatch(1);
+        running.setResultHandler(result -> done.countDown());
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+    
+    @Test
+    @DisplayName("Должен отклонять отправку решения без userId")
+    void shouldRejectSubmitWithoutUser() {
+        // When
+        DeferredResult<ResponseEntity<SubmissionResult>> deferred = sqlTrainerController.submitTask(mockSubmission, "key-1");
+        
+        // Then
+        assertThat(deferred.hasResult()).isTrue();
+        @SuppressWarnings("unchecked")
+        ResponseEntity<SubmissionResult> response = (ResponseEntity<SubmissionResult>) deferred.getResult();
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(response.getBody().getResult().isCorrect()).isFalse();
+    }
 }
@@ -0,0 +1,143 @@
+package com.hahaton.sqltrainer.service;
+
+import com.hahaton.config.SQLTrainerConfig;
+import com.hahaton.sqltrainer.model.Task;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@DisplayName("Тестирование кэша эталонных результатов")
+class ExpectedResultCacheTest {
+
+    private static final String SOLUTION = "SELECT name FROM citizens WHERE is_alien = TRUE ORDER BY name";
+
+    private SQLTrainerConfig config;
+    private SandboxPool pool;
+    private String fixtureVersion;
+    private ExpectedResultCache cache;
+    private SandboxPool.Sandbox sandbox;
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    @DisplayName("Инициализация кэша поверх пула из одной песочницы")
+    void setUp() throws SQLException, IOException, InterruptedException {
+        config = new SQLTrainerConfig();
+        config.setSandboxPoolSize(1);
+        config.setSandboxLeaseTimeoutSeconds(5);
+        pool = new SandboxPool(config) {
+            @Override
+            public String getFixtureVersion() {
+                // Подмена версии имитирует изменение data.sql без пересоздания пула
+                return fixtureVersion != null ? fixtureVersion : super.getFixtureVersion();
+            }
+        };
+        pool.init();
+        cache = new ExpectedResultCache(pool, config);
+        sandbox = pool.lease();
+        // Настоящая песочница, в которой считаются обращения к базе
+        jdbc = spy(sandbox.jdbc());
+    }
+
+    @AfterEach
+    void tearDown() {
+        sandbox.close();
+        pool.shutdown();
+    }
+
+    private static Task task(String solution) {
+        return Task.builder().level(1).taskNumber(1).solution(solution).build();
+    }
+
+    @Test
+    @DisplayName("Повторная проверка берет эталон из кэша без второго запроса")
+    void shouldServeCachedResultWithoutSecondQuery() {
+        // When
+        ExpectedResult first = cache.get("1-1", task(SOLUTION), jdbc);
+        ExpectedResult second = cache.get("1-1", task(SOLUTION), jdbc);
+
+        // Then
+        assertThat(first.getRows()).extracting(row -> row.get("NAME")).containsExactly("Bob Johnson", "Charlie Wilson");
+        assertThat(second).isSameAs(first);
+        verify(jdbc, times(1)).queryForList(anyString());
+    }
+
+    @Test
+    @DisplayName("Измененное решение задачи пересчитывает эталон")
+    void shouldRecomputeWhenSolutionChanges() {
+        // Given
+        ExpectedResult first = cache.get("1-1", task(SOLUTION), jdbc);
+
+        // When
+        ExpectedResult second = cache.get("1-1", task("SELECT name FROM citizens WHERE is_alien = FALSE"), jdbc);
+
+        // Then
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getRows()).hasSize(3);
+        verify(jdbc, times(2)).queryForList(anyString());
+    }
+
+    @Test
+    @DisplayName("Новая версия тестовых данных пересчитывает эталон")
+    void shouldRecomputeWhenFixtureVersionChanges() {
+        // Given
+        ExpectedResult first = cache.get("1-1", task(SOLUTION), jdbc);
+
+        // When
+        fixtureVersion = "changed-data-sql";
+        ExpectedResult second = cache.get("1-1", task(SOLUTION), jdbc);
+        ExpectedResult third = cache.get("1-1", task(SOLUTION), jdbc);
+
+        // Then
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getFixtureVersion()).isEqualTo("changed-data-sql");
+        assertThat(third).isSameAs(second);
+        verify(jdbc, times(2)).queryForList(anyString());
+    }
+
+    @Test
+    @DisplayName("Эталон с NOW() или RAND() живет не дольше sql.trainer.volatile-expected-ttl-seconds")
+    void shouldExpireVolatileSolutionAfterTtl() {
+        // Given
+        String volatileSolution = "SELECT name, RAND() AS r FROM citizens WHERE last_seen < NOW()";
+        ExpectedResult cached = cache.get("1-2", task(volatileSolution), jdbc);
+        assertThat(cache.get("1-2", task(volatileSolution), jdbc)).isSameAs(cached);
+        assertThat(cached.getExpiresAt()).isLessThan(Long.MAX_VALUE);
+
+        // When
+        config.setVolatileExpectedTtlSeconds(0);
+        cache.invalidate("1-2");
+        ExpectedResult expiring = cache.get("1-2", task(volatileSolution), jdbc);
+        ExpectedResult recomputed = cache.get("1-2", task(volatileSolution), jdbc);
+
+        // Then
+        assertThat(recomputed).isNotSameAs(expiring);
+        verify(jdbc, times(3)).queryForList(anyString());
+    }
+
+    @Test
+    @DisplayName("Неисполнимый эталон дает пустой результат и не кэшируется")
+    void shouldNotCacheFailingSolution() {
+        // Given
+        String broken = "SELECT name FROM missing_table";
+
+        // When
+        ExpectedResult first = cache.get("1-3", task(broken), jdbc);
+        ExpectedResult second = cache.get("1-3", task(broken), jdbc);
+
+        // Then
+        assertThat(first.getRows()).isEmpty();
+        assertThat(second).isNotSameAs(first);
+        verify(jdbc, times(2)).queryForList(anyString());
+    }
+}
@@ -0,0 +1,229 @@
+package com.hahaton.sqltrainer.service;
+
+import com.hahaton.config.ProgressStoreConfig;
+import com.hahaton.sqltrainer.model.Progress;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Тестирование хранилища прогресса")
+class ProgressStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ProgressStoreConfig config;
+    private SimpleMeterRegistry meterRegistry;
+    private ProgressStore store;
+
+    @BeforeEach
+    @DisplayName("Инициализация хранилища в файловой H2")
+    void setUp() {
+        config = new ProgressStoreConfig();
+        config.setUrl("jdbc:h2:file:" + tempDir.resolve("progress").toAbsolutePath());
+        // Фоновый сброс не должен мешать проверкам: сбрасываем вручную
+        config.setFlushIntervalMs(60_000);
+        config.setBatchSize(1000);
+        config.setHotCacheSize(2);
+        meterRegistry = new SimpleMeterRegistry();
+        store = open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.shutdown();
+    }
+
+    private ProgressStore open() {
+        ProgressStore opened = new ProgressStore(config, meterRegistry);
+        opened.init();
+        return opened;
+    }
+
+    @Test
+    @DisplayName("Должен создавать пустой прогресс для нового пользователя")
+    void shouldCreateEmptyProgressForNewUser() {
+        // When
+        Progress progress = store.get("new-user");
+
+        // Then
+        assertThat(progress.getCompletedTasks()).isEmpty();
+        assertThat(progress.getCurrentLevel()).isEqualTo(1);
+        assertThat(progress.getCurrentTask()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Должен копить изменения и сохранять их пакетом")
+    void shouldBatchWritesUntilFlush() {
+        // Given
+        store.recordCompletion("user", "1-1", 1, 2);
+        store.recordCompletion("user", "1-2", 1, 3);
+        assertThat(store.getPendingCount()).isEqualTo(2);
+
+        // When
+        store.flush();
+
+        // Then
+        assertThat(store.getPendingCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Должен восстанавливать прогресс после перезапуска")
+    void shouldRestoreProgressAfterRestart() {
+        // Given
+        store.recordCompletion("user", "1-1", 1, 2);
+        store.recordCompletion("user", "1-2", 1, 3);
+        store.recordCompletion("other", "1-1", 1, 2);
+        store.shutdown();
+
+        // When
+        store = open();
+        Progress progress = store.get("user");
+
+        // Then
+        assertThat(progress.getCompletedTasks()).containsExactlyInAnyOrder("1-1", "1-2");
+        assertThat(progress.getCurrentTask()).isEqualTo(3);
+        assertThat(store.get("other").getCompletedTasks()).containsExactly("1-1");
+    }
+
+    @Test
+    @DisplayName("Должен подгружать вытесненного пользователя вместе с несохраненными изменениями")
+    void shouldColdLoadEvictedUserWithPendingWrites() {
+        // Given
+        Progress progress = store.get("user");
+        progress.markCompleted(2, 1);
+        store.recordCompletion("user", "2-1", 2, 2);
+
+        // When
+        store.get("a");
+        store.get("b");
+        Progress reloaded = store.get("user");
+
+        // Then
+        assertThat(reloaded).isNotSameAs(progress);
+        assertThat(reloaded.getCompletedTasks()).containsExactly("2-1");
+        assertThat(reloaded.getCurrentLevel()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Должен отдавать несохраненные изменения без сброса, даже если база недоступна")
+    void shouldServePendingWritesWhenDatabaseFails() throws SQLException {
+        // Given
+        store.get("user");
+        store.recordCompletion("user", "2-1", 2, 2);
+        store.get("a");
+        store.get("b");
+        dropTable("user_progress");
+
+        // When
+        Progress progress = store.get("user");
+
+        // Then
+        assertThat(progress.getCompletedTasks()).containsExactly("2-1");
+        assertThat(progress.getCurrentLevel()).isEqualTo(2);
+        assertThat(store.getPendingCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Должен отклонять записи сверх емкости очереди и отбрасывать пакет после исчерпания попыток")
+    void shouldBoundQueueAndRetries() throws SQLException {
+        // Given
+        store.shutdown();
+        config.setQueueCapacity(2);
+        config.setMaxFlushRetries(2);
+        store = open();
+        store.recordCompletion("user", "1-1", 1, 2);
+        store.recordCompletion("user", "1-2", 1, 3);
+        store.recordCompletion("user", "1-3", 1, 4);
+        dropTable("completed_tasks");
+
+        // When & Then
+        assertThat(store.getPendingCount()).isEqualTo(2);
+        assertThatThrownBy(() -> store.flush()).isInstanceOf(RuntimeException.class);
+        assertThat(store.getPendingCount()).isEqualTo(2);
+        store.flush();
+        assertThat(store.getPendingCount()).isZero();
+        assertThat(meterRegistry.get("progress.store.dropped").tag("reason", "queue_full").counter().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("progress.store.dropped").tag("reason", "retries_exhausted").counter().count())
+                .isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Должен удалять прогресс пользователя")
+    void shouldDeleteProgress() {
+        // Given
+        store.recordCompletion("user", "1-1", 1, 2);
+        store.flush();
+
+        // When
+        store.delete("user");
+        store.flush();
+
+        // Then
+        assertThat(store.get("user").getCompletedTasks()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Холодная загрузка, идущая параллельно с удалением, не должна вернуть удаленный прогресс в кэш")
+    void shouldNotResurrectProgressDeletedDuringColdLoad() throws Exception {
+        // Given
+        config.setHotCacheSize(1000);
+        store.shutdown();
+        store = open();
+        int users = 300;
+        for (int i = 0; i < users; i++) {
+            store.recordCompletion("user-" + i, "1-1", 1, 2);
+        }
+        store.flush();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            for (int i = 0; i < users; i++) {
+                // When
+                String userId = "user-" + i;
+                CyclicBarrier start = new CyclicBarrier(2);
+                Future<?> load = executor.submit(() -> {
+                    start.await();
+                    return store.get(userId);
+                });
+                Future<?> delete = executor.submit(() -> {
+                    start.await();
+                    store.delete(userId);
+                    return null;
+                });
+                load.get(5, TimeUnit.SECONDS);
+                delete.get(5, TimeUnit.SECONDS);
+
+                // Then
+                assertThat(store.get(userId).getCompletedTasks()).as(userId).isEmpty();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void dropTable(String table) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(config.getUrl(), config.getUsername(), config.getPassword());
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE " + table);
+        }
+    }
+}
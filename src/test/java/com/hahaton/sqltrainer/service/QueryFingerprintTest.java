@@ -0,0 +1,34 @@
+package com.hahaton.sqltrainer.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Тестирование нормализации SQL запросов")
+class QueryFingerprintTest {
+
+    @Test
+    @DisplayName("Пробелы, регистр, комментарии и завершающая ';' не меняют отпечаток")
+    void shouldIgnoreFormatting() {
+        // Given
+        String original = "SELECT name FROM users WHERE age > 18;";
+
+        // When & Then
+        assertThat(QueryFingerprint.of("  select  name\n from Users where age>18 ;; ")).isEqualTo(QueryFingerprint.of(original));
+        assertThat(QueryFingerprint.of("SELECT name FROM users -- взрослые\nWHERE age > 18")).isEqualTo(QueryFingerprint.of(original));
+        assertThat(QueryFingerprint.of("SELECT name /* имя */ FROM users WHERE age > 18")).isEqualTo(QueryFingerprint.of(original));
+        assertThat(QueryFingerprint.canonicalize("select count( * ) from t")).isEqualTo("SELECT COUNT(*)FROM T");
+    }
+
+    @Test
+    @DisplayName("Строковые литералы и разделенные пробелом операторы сохраняются")
+    void shouldKeepLiteralsAndOperators() {
+        // When & Then
+        assertThat(QueryFingerprint.of("SELECT * FROM t WHERE n = 'Anna'"))
+                .isNotEqualTo(QueryFingerprint.of("SELECT * FROM t WHERE n = 'ANNA'"));
+        assertThat(QueryFingerprint.canonicalize("select 'it''s  -- ok' as s")).isEqualTo("SELECT 'it''s  -- ok' AS S");
+        assertThat(QueryFingerprint.of("SELECT a < = b")).isNotEqualTo(QueryFingerprint.of("SELECT a <= b"));
+        assertThat(QueryFingerprint.of("SELECT a FROM t")).isNotEqualTo(QueryFingerprint.of("SELECT b FROM t"));
+    }
+}
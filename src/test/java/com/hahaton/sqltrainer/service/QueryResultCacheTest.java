@@ -0,0 +1,102 @@
+package com.hahaton.sqltrainer.service;
+
+import com.hahaton.config.SQLTrainerConfig;
+import com.hahaton.sqltrainer.model.Task;
+import com.hahaton.sqltrainer.model.TaskResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Тестирование кэша результатов проверки")
+class QueryResultCacheTest {
+
+    @Mock
+    private SandboxPool sandboxPool;
+
+    private SQLTrainerConfig config;
+    private SimpleMeterRegistry meterRegistry;
+    private QueryResultCache cache;
+    private Task task;
+    private TaskResult result;
+
+    @BeforeEach
+    @DisplayName("Инициализация тестового окружения")
+    void setUp() {
+        config = new SQLTrainerConfig();
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new QueryResultCache(sandboxPool, config, meterRegistry);
+        lenient().when(sandboxPool.getFixtureVersion()).thenReturn("v1");
+        task = Task.builder().level(1).taskNumber(1).solution("SELECT name FROM users").build();
+        result = TaskResult.builder().isCorrect(true).message("Отлично!").build();
+    }
+
+    @Test
+    @DisplayName("Повторная отправка с другим форматированием берется из кэша")
+    void shouldHitForEquivalentQuery() {
+        // Given
+        assertThat(cache.get("1-1", task, "SELECT name FROM users;")).isNull();
+        cache.put("1-1", task, "SELECT name FROM users;", result);
+
+        // When
+        TaskResult cached = cache.get("1-1", task, "select name\n  from users");
+
+        // Then
+        assertThat(cached).isSameAs(result);
+        assertThat(cache.get("1-2", task, "select name from users")).isNull();
+        assertThat(meterRegistry.get("sql.result.cache.hit.ratio").gauge().value()).isEqualTo(1.0 / 3);
+    }
+
+    @Test
+    @DisplayName("Смена решения или тестовых данных делает запись недействительной")
+    void shouldMissAfterSolutionOrFixtureChange() {
+        // Given
+        cache.put("1-1", task, "SELECT name FROM users", result);
+        Task changed = Task.builder().level(1).taskNumber(1).solution("SELECT name FROM users ORDER BY name").build();
+
+        // When & Then
+        assertThat(cache.get("1-1", changed, "SELECT name FROM users")).isNull();
+
+        cache.put("1-1", task, "SELECT name FROM users", result);
+        when(sandboxPool.getFixtureVersion()).thenReturn("v2");
+        assertThat(cache.get("1-1", task, "SELECT name FROM users")).isNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("Запросы с текущим временем или случайными числами не кэшируются")
+    void shouldNotCacheVolatileQueries() {
+        // When
+        cache.put("1-1", task, "SELECT name, NOW() FROM users", result);
+
+        // Then
+        assertThat(cache.size()).isZero();
+        assertThat(cache.get("1-1", task, "SELECT name, NOW() FROM users")).isNull();
+    }
+
+    @Test
+    @DisplayName("Кэш ограничен sql.trainer.result-cache-size и вытесняет давно не использованные записи")
+    void shouldEvictLeastRecentlyUsed() {
+        // Given
+        config.setResultCacheSize(2);
+        cache.put("1-1", task, "SELECT 1", result);
+        cache.put("1-1", task, "SELECT 2", result);
+        cache.get("1-1", task, "SELECT 1");
+
+        // When
+        cache.put("1-1", task, "SELECT 3", result);
+
+        // Then
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.get("1-1", task, "SELECT 1")).isSameAs(result);
+        assertThat(cache.get("1-1", task, "SELECT 2")).isNull();
+    }
+}
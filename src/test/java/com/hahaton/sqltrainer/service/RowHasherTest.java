@@ -0,0 +1,41 @@
+package com.hahaton.sqltrainer.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Тестирование канонических хэшей строк")
+class RowHasherTest {
+
+    @Test
+    @DisplayName("Числа сравниваются по значению, порядок и регистр имен колонок не важны")
+    void shouldHashEqualRowsEqually() {
+        // Given
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("ID", 1);
+        row.put("NAME", "Анна");
+        Map<String, Object> reordered = new LinkedHashMap<>();
+        reordered.put("name", "Анна");
+        reordered.put("id", new BigDecimal("1.0"));
+
+        // When & Then
+        assertThat(RowHasher.hashRow(row)).isEqualTo(RowHasher.hashRow(reordered));
+    }
+
+    @Test
+    @DisplayName("Значения разных типов с одинаковой строковой записью различаются")
+    void shouldDistinguishValueTypes() {
+        // When & Then
+        assertThat(RowHasher.hashRow(Map.of("V", "1"))).isNotEqualTo(RowHasher.hashRow(Map.of("V", 1)));
+        assertThat(RowHasher.hashRow(Map.of("V", "2024-01-01")))
+                .isNotEqualTo(RowHasher.hashRow(Map.of("V", Date.valueOf("2024-01-01"))));
+        assertThat(RowHasher.hashRow(Map.of("V", "true"))).isNotEqualTo(RowHasher.hashRow(Map.of("V", true)));
+        assertThat(RowHasher.canonicalValue(null)).isNotEqualTo(RowHasher.canonicalValue("null"));
+    }
+}
@@ -0,0 +1,117 @@
+package com.hahaton.sqltrainer.service;
+
+import com.hahaton.config.SQLTrainerConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.concurrent.CancellationException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Тестирование ограничений выполнения SQL запросов")
+class SQLQueryExecutorTest {
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private SQLTrainerConfig config;
+    private SQLQueryExecutor executor;
+
+    @BeforeEach
+    @DisplayName("Инициализация тестовой базы из data.sql")
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .generateUniqueName(true)
+                .setType(EmbeddedDatabaseType.H2)
+                .addScript("data.sql")
+                .build();
+        jdbcTemplate = new JdbcTemplate(database);
+        config = new SQLTrainerConfig();
+        executor = new SQLQueryExecutor(config);
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    private ExpectedResult expected(String solution) {
+        return new ExpectedResult(jdbcTemplate.queryForList(solution), "solution", "fixture", Long.MAX_VALUE);
+    }
+
+    @Test
+    @DisplayName("Должен отклонять слишком длинный запрос до выполнения")
+    void shouldRejectTooLongQuery() {
+        // Given
+        config.setMaxQueryLength(20);
+
+        // When & Then
+        assertThatThrownBy(() -> executor.checkQuery("SELECT name FROM citizens"))
+                .isInstanceOf(QueryRejectedException.class)
+                .hasMessageContaining("слишком длинный");
+    }
+
+    @Test
+    @DisplayName("Должен отклонять результат сверх предела строк")
+    void shouldRejectResultOverRowCap() {
+        // Given
+        config.setMaxResultRows(2);
+        ExpectedResult expected = expected("SELECT name FROM citizens");
+
+        // When & Then
+        assertThatThrownBy(() -> executor.execute(jdbcTemplate, "SELECT name FROM citizens",
+                expected, false, new QueryCancellation()))
+                .isInstanceOf(QueryRejectedException.class)
+                .hasMessageContaining("2 строк");
+    }
+
+    @Test
+    @DisplayName("Должен прерывать запрос по таймауту")
+    void shouldAbortQueryOnTimeout() {
+        // Given
+        config.setTimeoutSeconds(1);
+        ExpectedResult expected = expected("SELECT COUNT(*) AS total FROM citizens");
+
+        // When & Then
+        assertThatThrownBy(() -> executor.execute(jdbcTemplate,
+                "SELECT COUNT(*) AS total FROM SYSTEM_RANGE(1, 100000) a, SYSTEM_RANGE(1, 100000) b",
+                expected, false, new QueryCancellation()))
+                .isInstanceOf(QueryRejectedException.class)
+                .hasMessageContaining("время выполнения");
+    }
+
+    @Test
+    @DisplayName("Не должен запускать уже отмененную проверку")
+    void shouldNotRunCancelledCheck() {
+        // Given
+        QueryCancellation cancellation = new QueryCancellation();
+        cancellation.cancel();
+        ExpectedResult expected = expected("SELECT name FROM citizens");
+
+        // When & Then
+        assertThatThrownBy(() -> executor.execute(jdbcTemplate, "SELECT name FROM citizens",
+                expected, false, cancellation))
+                .isInstanceOf(CancellationException.class);
+    }
+
+    @Test
+    @DisplayName("Должен засчитывать корректный запрос в пределах ограничений")
+    void shouldMatchQueryWithinLimits() {
+        // Given
+        ExpectedResult expected = expected("SELECT name FROM citizens");
+
+        // When
+        StreamingResultComparator.Outcome outcome = executor.execute(jdbcTemplate, "SELECT name FROM citizens",
+                expected, false, new QueryCancellation());
+
+        // Then
+        assertThat(outcome.isMatch()).isTrue();
+        assertThat(outcome.isRowLimitExceeded()).isFalse();
+    }
+}
@@ -0,0 +1,191 @@
+package com.hahaton.sqltrainer.service;
+
+import com.hahaton.config.SQLTrainerConfig;
+import com.hahaton.sqltrainer.model.Progress;
+import com.hahaton.sqltrainer.model.SubmissionResult;
+import com.hahaton.sqltrainer.model.TaskResult;
+import com.hahaton.sqltrainer.model.TaskSubmission;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Тестирование отправки решений с засчитыванием задачи")
+class SQLSubmissionServiceTest {
+
+    @Mock
+    private SQLTrainerService sqlTrainerService;
+
+    @Mock
+    private ProgressStore progressStore;
+
+    private SQLTrainerConfig config;
+    private SQLCheckDispatcher checkDispatcher;
+    private SQLSubmissionService submissionService;
+    private Progress progress;
+    private final AtomicInteger checks = new AtomicInteger();
+
+    @BeforeEach
+    @DisplayName("Инициализация тестового окружения")
+    void setUp() {
+        config = new SQLTrainerConfig();
+        config.setSandboxPoolSize(2);
+        checkDispatcher = new SQLCheckDispatcher(sqlTrainerService, config, new SimpleMeterRegistry());
+        submissionService = new SQLSubmissionService(checkDispatcher, new ProgressService(progressStore), config,
+                new SimpleMeterRegistry());
+        progress = Progress.builder().userId("user-1").currentLevel(1).currentTask(1).build();
+        when(progressStore.get("user-1")).thenReturn(progress);
+    }
+
+    @AfterEach
+    void tearDown() {
+        checkDispatcher.shutdown();
+    }
+
+    private TaskSubmission submission(String query) {
+        TaskSubmission submission = new TaskSubmission();
+        submission.setUserId("user-1");
+        submission.setLevel(1);
+        submission.setTaskNumber(1);
+        submission.setQuery(query);
+        return submission;
+    }
+
+    private void gradeAs(boolean correct) {
+        when(sqlTrainerService.checkTask(any(TaskSubmission.class), any(QueryCancellation.class))).thenAnswer(invocation -> {
+            checks.incrementAndGet();
+            return TaskResult.builder().isCorrect(correct).message(correct ? "Отлично!" : "Неверно").build();
+        });
+    }
+
+    private SubmissionResult await(CompletableFuture<SubmissionResult> future) throws Exception {
+        return future.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    @DisplayName("Верное решение засчитывается в том же запросе, а ответ содержит новый прогресс")
+    void shouldRecordCompletionForCorrectSolution() throws Exception {
+        // Given
+        gradeAs(true);
+
+        // When
+        SubmissionResult result = await(submissionService.submit(submission("SELECT 1"), null, new QueryCancellation()));
+
+        // Then
+        assertThat(result.getResult().isCorrect()).isTrue();
+        assertThat(result.isCompleted()).isTrue();
+        assertThat(result.isFirstCompletion()).isTrue();
+        assertThat(result.getCurrentTask()).isEqualTo(2);
+        assertThat(result.getTotalCompleted()).isEqualTo(1);
+        verify(progressStore).recordCompletion("user-1", "1-1", 1, 2);
+    }
+
+    @Test
+    @DisplayName("Неверное решение не засчитывается")
+    void shouldNotRecordIncorrectSolution() throws Exception {
+        // Given
+        gradeAs(false);
+
+        // When
+        SubmissionResult result = await(submissionService.submit(submission("SELECT 2"), "key-1", new QueryCancellation()));
+
+        // Then
+        assertThat(result.isCompleted()).isFalse();
+        assertThat(result.getCurrentTask()).isEqualTo(1);
+        verify(progressStore, never()).recordCompletion(anyString(), anyString(), anyInt(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Повтор с тем же ключом получает первый результат без повторной проверки и засчитывания")
+    void shouldReplaySubmissionWithSameKey() throws Exception {
+        // Given
+        CountDownLatch release = new CountDownLatch(1);
+        when(sqlTrainerService.checkTask(any(TaskSubmission.class), any(QueryCancellation.class))).thenAnswer(invocation -> {
+            checks.incrementAndGet();
+            release.await(5, TimeUnit.SECONDS);
+            return TaskResult.builder().isCorrect(true).message("Отлично!").build();
+        });
+
+        // When: ретрай приходит, пока первая проверка еще выполняется, и еще один - после нее
+        CompletableFuture<SubmissionResult> first = submissionService.submit(submission("SELECT 1"), "key-1", new QueryCancellation());
+        CompletableFuture<SubmissionResult> retry = submissionService.submit(submission("SELECT 1"), "key-1", new QueryCancellation());
+        release.countDown();
+        SubmissionResult firstResult = await(first);
+        SubmissionResult lateRetry = await(submissionService.submit(submission("SELECT 1"), "key-1", new QueryCancellation()));
+
+        // Then
+        assertThat(await(retry)).isSameAs(firstResult);
+        assertThat(lateRetry).isSameAs(firstResult);
+        assertThat(checks.get()).isEqualTo(1);
+        verify(progressStore, times(1)).recordCompletion(eq("user-1"), eq("1-1"), anyInt(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Ключ, использованный для другого запроса, отклоняется")
+    void shouldRejectKeyReusedForDifferentSubmission() throws Exception {
+        // Given
+        gradeAs(false);
+        await(submissionService.submit(submission("SELECT 1"), "key-1", new QueryCancellation()));
+
+        // When & Then
+        assertThatThrownBy(() -> submissionService.submit(submission("SELECT 2"), "key-1", new QueryCancellation()))
+                .isInstanceOf(IdempotencyConflictException.class);
+    }
+
+    @Test
+    @DisplayName("Неудачную отправку можно повторить с тем же ключом")
+    void shouldAllowRetryAfterFailure() throws Exception {
+        // Given
+        when(sqlTrainerService.checkTask(any(TaskSubmission.class), any(QueryCancellation.class)))
+                .thenThrow(new IllegalStateException("Песочница недоступна"))
+                .thenReturn(TaskResult.builder().isCorrect(true).message("Отлично!").build());
+        CompletableFuture<SubmissionResult> failed = submissionService.submit(submission("SELECT 1"), "key-1", new QueryCancellation());
+        assertThatThrownBy(() -> failed.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class);
+
+        // When
+        SubmissionResult result = await(submissionService.submit(submission("SELECT 1"), "key-1", new QueryCancellation()));
+
+        // Then
+        assertThat(result.isFirstCompletion()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Повторное засчитывание решенной задачи не сдвигает текущую позицию")
+    void shouldNotAdvanceOnRepeatedCompletion() throws Exception {
+        // Given
+        gradeAs(true);
+        await(submissionService.submit(submission("SELECT 1"), "key-1", new QueryCancellation()));
+        progress.setCurrentTask(5);
+
+        // When
+        SubmissionResult again = await(submissionService.submit(submission("SELECT 1"), "key-2", new QueryCancellation()));
+
+        // Then
+        assertThat(again.isCompleted()).isTrue();
+        assertThat(again.isFirstCompletion()).isFalse();
+        assertThat(again.getCurrentTask()).isEqualTo(5);
+        verify(progressStore, times(1)).recordCompletion(anyString(), anyString(), anyInt(), anyInt());
+    }
+}
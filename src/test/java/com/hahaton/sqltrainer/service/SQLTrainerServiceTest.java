@@ -1,5 +1,7 @@
 package com.hahaton.sqltrainer.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hahaton.catalog.TaskCatalogLoader;
 import com.hahaton.sqltrainer.model.Task;
 import com.hahaton.sqltrainer.model.TaskResult;
 import com.hahaton.sqltrainer.model.TaskSubmission;
@@ -9,13 +11,14 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.jdbc.core.JdbcTemplate;
 
 import java.util.List;
 import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -23,14 +26,27 @@ import static org.mockito.Mockito.when;
 class SQLTrainerServiceTest {
 
     @Mock
-    private JdbcTemplate jdbcTemplate;
+    private SandboxPool sandboxPool;
+    
+    @Mock
+    private ExpectedResultCache expectedResults;
+    
+    @Mock
+    private SQLQueryExecutor queryExecutor;
+    
+    @Mock
+    private QueryResultCache resultCache;
+    
+    @Mock
+    private TaskCatalogLoader taskLoader;
     
     private SQLTrainerService sqlTrainerService;
     
     @BeforeEach
     @DisplayName("Инициализация тестового окружения")
     void setUp() {
-        sqlTrainerService = new SQLTrainerService(jdbcTemplate);
+        sqlTrainerService = new SQLTrainerService(sandboxPool, expectedResults, queryExecutor, resultCache,
+                new ObjectMapper(), taskLoader);
     }
     
     @Test
@@ -70,4 +86,26 @@ class SQLTrainerServiceTest {
         assertThat(result.isCorrect()).isFalse();
         assertThat(result.getMessage()).isEqualTo("Задача не найдена");
     }
+    
+    @Test
+    @DisplayName("Замена каталога сбрасывает кэши только изменившихся задач")
+    void shouldInvalidateCachesOfChangedTasksOnReplace() {
+        // Given
+        Task first = Task.builder().level(1).taskNumber(1).title("Первая").solution("SELECT 1").build();
+        Task second = Task.builder().level(1).taskNumber(2).title("Вторая").solution("SELECT 2").build();
+        Task removed = Task.builder().level(2).taskNumber(1).title("Третья").solution("SELECT 3").build();
+        sqlTrainerService.replaceTasks(List.of(first, second, removed));
+        Task fixed = Task.builder().level(1).taskNumber(2).title("Вторая").solution("SELECT 22").build();
+        
+        // When
+        List<String> changed = sqlTrainerService.replaceTasks(List.of(first, fixed));
+        
+        // Then
+        assertThat(changed).containsExactly("1-2", "2-1");
+        assertThat(sqlTrainerService.getTask(1, 2).getSolution()).isEqualTo("SELECT 22");
+        assertThat(sqlTrainerService.getTask(2, 1)).isNull();
+        verify(expectedResults).invalidate("1-2");
+        verify(resultCache).invalidate("2-1");
+        verify(expectedResults, never()).invalidate("1-1");
+    }
 }
@@ -0,0 +1,63 @@
+package com.hahaton.sqltrainer.service;
+
+import com.hahaton.config.SQLTrainerConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Тестирование пула SQL песочниц")
+class SandboxPoolTest {
+
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+    private SandboxPool pool;
+
+    @BeforeEach
+    @DisplayName("Инициализация пула из одной песочницы")
+    void setUp() throws SQLException, IOException {
+        SQLTrainerConfig config = new SQLTrainerConfig();
+        config.setSandboxPoolSize(1);
+        config.setSandboxLeaseTimeoutSeconds(5);
+        config.setSandboxReplaceDelayMs(10);
+        pool = new SandboxPool(config) {
+            @Override
+            Sandbox createSandbox() throws SQLException {
+                if (failuresLeft.getAndDecrement() > 0) {
+                    throw new SQLException("H2 недоступна");
+                }
+                return super.createSandbox();
+            }
+        };
+        pool.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    @DisplayName("Должен повторять создание песочницы, пока пул не восстановит размер")
+    void shouldReplaceSandboxAfterFailedRecreation() throws InterruptedException {
+        // Given
+        failuresLeft.set(2);
+        try (SandboxPool.Sandbox sandbox = pool.lease()) {
+            // База песочницы уничтожена: ни откат, ни сброс из data.sql не пройдут
+            sandbox.jdbc().execute("SHUTDOWN");
+        }
+
+        // When
+        try (SandboxPool.Sandbox sandbox = pool.lease()) {
+            // Then
+            assertThat(sandbox.jdbc().queryForObject("SELECT COUNT(*) FROM citizens", Integer.class)).isPositive();
+        }
+        assertThat(failuresLeft.get()).isNegative();
+        assertThat(pool.size()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,156 @@
+package com.hahaton.sqltrainer.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Тестирование потокового сравнения результатов SQL")
+class StreamingResultComparatorTest {
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    @DisplayName("Инициализация тестовой базы из data.sql")
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .generateUniqueName(true)
+                .setType(EmbeddedDatabaseType.H2)
+                .addScript("data.sql")
+                .build();
+        jdbcTemplate = new JdbcTemplate(database);
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    private ExpectedResult expected(String solution) {
+        return new ExpectedResult(jdbcTemplate.queryForList(solution), "solution", "fixture", Long.MAX_VALUE);
+    }
+
+    private boolean matches(String solution, String query, boolean ordered) {
+        StreamingResultComparator comparator = new StreamingResultComparator(expected(solution), ordered, Integer.MAX_VALUE);
+        return jdbcTemplate.query(query, comparator).isMatch();
+    }
+
+    @Test
+    @DisplayName("Должен засчитывать тот же набор строк в другом порядке")
+    void shouldMatchSameRowsInDifferentOrder() {
+        // When & Then
+        assertThat(matches(
+                "SELECT name, last_seen FROM citizens ORDER BY last_seen DESC",
+                "SELECT last_seen, name FROM citizens ORDER BY name",
+                false)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Должен учитывать порядок строк, если задача его требует")
+    void shouldRespectOrderWhenRequired() {
+        // When & Then
+        assertThat(matches(
+                "SELECT name FROM citizens ORDER BY last_seen DESC",
+                "SELECT name FROM citizens ORDER BY last_seen ASC",
+                true)).isFalse();
+        assertThat(matches(
+                "SELECT name FROM citizens ORDER BY last_seen DESC",
+                "select name from citizens order by last_seen desc",
+                true)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Должен отклонять лишние и недостающие строки")
+    void shouldRejectExtraAndMissingRows() {
+        // When & Then
+        assertThat(matches(
+                "SELECT name FROM citizens WHERE is_alien = TRUE",
+                "SELECT name FROM citizens",
+                false)).isFalse();
+        assertThat(matches(
+                "SELECT name FROM citizens",
+                "SELECT name FROM citizens WHERE is_alien = TRUE",
+                false)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Должен учитывать повторяющиеся строки")
+    void shouldCountDuplicateRows() {
+        // When & Then
+        assertThat(matches(
+                "SELECT ip FROM access_logs",
+                "SELECT DISTINCT ip FROM access_logs",
+                false)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Должен сравнивать числа по значению и колонки по имени")
+    void shouldCompareNumbersByValueAndColumnsByName() {
+        // When & Then
+        assertThat(matches(
+                "SELECT COUNT(*) AS total FROM citizens",
+                "SELECT CAST(5 AS DECIMAL(10, 2)) AS total",
+                false)).isTrue();
+        assertThat(matches(
+                "SELECT COUNT(*) AS total FROM citizens",
+                "SELECT COUNT(*) AS other FROM citizens",
+                false)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Должен собирать недостающие и лишние строки не больше превью, но считать их полностью")
+    void shouldCollectDiffWithinPreview() {
+        // Given
+        StreamingResultComparator comparator = new StreamingResultComparator(
+                expected("SELECT name FROM citizens WHERE is_alien = TRUE"), false, 1);
+
+        // When
+        StreamingResultComparator.Outcome outcome = jdbcTemplate.query(
+                "SELECT name FROM citizens WHERE is_alien = FALSE", comparator);
+
+        // Then
+        int total = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM citizens", Integer.class);
+        int aliens = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM citizens WHERE is_alien = TRUE", Integer.class);
+        assertThat(outcome.isMatch()).isFalse();
+        assertThat(outcome.getRows()).hasSize(1);
+        assertThat(outcome.getRowCount()).isEqualTo(total - aliens);
+        assertThat(outcome.getMissingCount()).isEqualTo(aliens);
+        assertThat(outcome.getExtraCount()).isEqualTo(total - aliens);
+        assertThat(outcome.getMissingRows()).hasSize(1);
+        assertThat(outcome.getExtraRows()).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Неверный порядок тех же строк не дает разницы строк")
+    void shouldReportEmptyDiffForWrongOrder() {
+        // Given
+        StreamingResultComparator comparator = new StreamingResultComparator(
+                expected("SELECT name FROM citizens ORDER BY last_seen DESC"), true, Integer.MAX_VALUE);
+
+        // When
+        StreamingResultComparator.Outcome outcome = jdbcTemplate.query(
+                "SELECT name FROM citizens ORDER BY last_seen ASC", comparator);
+
+        // Then
+        assertThat(outcome.isMatch()).isFalse();
+        assertThat(outcome.getMissingCount()).isZero();
+        assertThat(outcome.getExtraCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Должен определять ORDER BY верхнего уровня")
+    void shouldDetectTopLevelOrderBy() {
+        // When & Then
+        assertThat(StreamingResultComparator.requiresOrdering("SELECT name FROM citizens ORDER BY name")).isTrue();
+        assertThat(StreamingResultComparator.requiresOrdering(
+                "SELECT name, RANK() OVER (ORDER BY last_seen DESC) FROM citizens LIMIT 3")).isFalse();
+        assertThat(StreamingResultComparator.requiresOrdering("SELECT 'ORDER BY' FROM citizens")).isFalse();
+    }
+}